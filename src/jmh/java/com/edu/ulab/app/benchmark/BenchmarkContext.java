@@ -0,0 +1,65 @@
+package com.edu.ulab.app.benchmark;
+
+import com.edu.ulab.app.AppApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Boots the application without the web layer and fills the embedded H2 {@code userbook} database.
+ */
+public final class BenchmarkContext {
+
+    private static final int SEED_BATCH_SIZE = 1_000;
+
+    private BenchmarkContext() {
+    }
+
+    public static ConfigurableApplicationContext start(String... properties) {
+        return new SpringApplicationBuilder(AppApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("logging.level.root=WARN")
+                .properties(properties)
+                .run();
+    }
+
+    /**
+     * Inserts {@code users} persons with {@code booksPerUser} books each and returns the generated user ids.
+     */
+    public static long[] seed(JdbcTemplate jdbcTemplate, int users, int booksPerUser) {
+        jdbcTemplate.update("DELETE FROM BOOK");
+        jdbcTemplate.update("DELETE FROM PERSON");
+
+        List<Object[]> persons = new ArrayList<>(SEED_BATCH_SIZE);
+        for (int i = 0; i < users; i++) {
+            persons.add(new Object[]{"user " + i, "reader", 18 + i % 60});
+            if (persons.size() == SEED_BATCH_SIZE || i == users - 1) {
+                jdbcTemplate.batchUpdate("INSERT INTO PERSON(ID, FULL_NAME, TITLE, AGE) VALUES (NEXT VALUE FOR PERSON_SEQ,?,?,?)", persons);
+                persons.clear();
+            }
+        }
+        long[] userIds = jdbcTemplate.queryForList("SELECT ID FROM PERSON ORDER BY ID", Long.class)
+                .stream()
+                .mapToLong(Long::longValue)
+                .toArray();
+
+        List<Object[]> books = new ArrayList<>(SEED_BATCH_SIZE);
+        for (long userId : userIds) {
+            for (int j = 0; j < booksPerUser; j++) {
+                books.add(new Object[]{"book " + j, "author " + j % 100, 100 + j, userId});
+                if (books.size() == SEED_BATCH_SIZE) {
+                    jdbcTemplate.batchUpdate("INSERT INTO BOOK(ID, TITLE, AUTHOR, PAGE_COUNT, USER_ID) VALUES (NEXT VALUE FOR BOOK_SEQ,?,?,?,?)", books);
+                    books.clear();
+                }
+            }
+        }
+        if (!books.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO BOOK(ID, TITLE, AUTHOR, PAGE_COUNT, USER_ID) VALUES (NEXT VALUE FOR BOOK_SEQ,?,?,?,?)", books);
+        }
+        return userIds;
+    }
+}
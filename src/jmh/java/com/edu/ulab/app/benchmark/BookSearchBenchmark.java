@@ -0,0 +1,148 @@
+package com.edu.ulab.app.benchmark;
+
+import com.edu.ulab.app.config.BookSearchProperties;
+import com.edu.ulab.app.dto.BookDto;
+import com.edu.ulab.app.search.BookSearchIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One search of the {@link BookSearchIndex} ({@code index}) against testing every book the way
+ * {@code LIKE '%word%'} does, without the database ({@code scan}). Titles and authors are drawn from a skewed
+ * vocabulary, so {@code common} matches a large share of the books and {@code rare} a handful; {@code prefix} and
+ * {@code infix} expand to many terms, {@code two-words} pairs the common and the rare word.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class BookSearchBenchmark {
+
+    private static final int LIMIT = 20;
+    private static final int VOCABULARY = 50_000;
+    private static final int AUTHORS = 10_000;
+
+    @Param({"100000", "1000000"})
+    private int books;
+
+    @Param({"rare", "common", "prefix", "infix", "two-words"})
+    private String query;
+
+    @Param({"index", "scan"})
+    private String search;
+
+    private BookSearchIndex index;
+    private String[] texts;
+    private String[] queryWords;
+    private String queryText;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        String[] words = new String[VOCABULARY];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = randomWord(random);
+        }
+        String[] authors = new String[AUTHORS];
+        for (int i = 0; i < authors.length; i++) {
+            authors[i] = randomWord(random) + " " + randomWord(random);
+        }
+
+        BookSearchIndex bookSearchIndex = "index".equals(search)
+                ? new BookSearchIndex(new BookSearchProperties(), new SimpleMeterRegistry())
+                : null;
+        texts = "scan".equals(search) ? new String[books] : null;
+        List<BookDto> chunk = new ArrayList<>();
+        for (int i = 0; i < books; i++) {
+            StringBuilder title = new StringBuilder();
+            for (int w = 2 + random.nextInt(4); w > 0; w--) {
+                title.append(words[skewed(random, VOCABULARY)]).append(' ');
+            }
+            BookDto book = new BookDto();
+            book.setId(i + 1L);
+            book.setUserId(i / 10 + 1L);
+            book.setTitle(title.toString().trim());
+            book.setAuthor(authors[skewed(random, AUTHORS)]);
+            if (texts != null) {
+                texts[i] = (book.getTitle() + " " + book.getAuthor()).toLowerCase(Locale.ROOT);
+            } else {
+                chunk.add(book);
+                if (chunk.size() == 10_000) {
+                    bookSearchIndex.putAll(chunk);
+                    chunk.clear();
+                }
+            }
+        }
+        if (bookSearchIndex != null) {
+            bookSearchIndex.putAll(chunk);
+        }
+        index = bookSearchIndex;
+
+        String common = words[0];
+        String rare = words[VOCABULARY / 2];
+        queryText = switch (query) {
+            case "rare" -> rare;
+            case "common" -> common;
+            case "prefix" -> words[100].substring(0, 2);
+            case "infix" -> words[5_000].substring(1, 4);
+            case "two-words" -> common + " " + rare;
+            default -> throw new IllegalArgumentException(query);
+        };
+        queryWords = queryText.split(" ");
+    }
+
+    @Benchmark
+    public int search() {
+        if (index != null) {
+            return index.search(queryText, LIMIT).size();
+        }
+        int found = 0;
+        for (String text : texts) {
+            boolean matches = true;
+            for (String word : queryWords) {
+                if (!text.contains(word)) {
+                    matches = false;
+                    break;
+                }
+            }
+            if (matches && ++found == LIMIT) {
+                break;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Low indexes far more often than high ones, roughly like words in titles.
+     */
+    private static int skewed(Random random, int size) {
+        return (int) Math.min(size - 1, Math.floor(Math.pow(size, random.nextDouble())) - 1);
+    }
+
+    private static String randomWord(Random random) {
+        char[] letters = new char[4 + random.nextInt(7)];
+        for (int i = 0; i < letters.length; i++) {
+            letters[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(letters);
+    }
+}
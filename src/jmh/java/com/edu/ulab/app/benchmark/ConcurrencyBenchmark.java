@@ -0,0 +1,134 @@
+package com.edu.ulab.app.benchmark;
+
+import com.edu.ulab.app.dto.BookDto;
+import com.edu.ulab.app.dto.UserDto;
+import com.edu.ulab.app.exception.ServiceException;
+import com.edu.ulab.app.service.BookService;
+import com.edu.ulab.app.service.UserService;
+import com.edu.ulab.app.service.impl.BookServiceImpl;
+import com.edu.ulab.app.service.impl.BookServiceImplTemplate;
+import com.edu.ulab.app.service.impl.UserServiceImpl;
+import com.edu.ulab.app.service.impl.UserServiceImplTemplate;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writers updating a few hot users at once, with version checked updates retried on conflict against
+ * {@code SELECT ... FOR UPDATE}. With a single hot user every writer contends for the same rows, with 16 of them
+ * the conflicts mostly disappear and the lock-free path should pull ahead.
+ * Updates given up after the configured attempts are reported as the {@code exhausted} counter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class ConcurrencyBenchmark {
+
+    private static final int BOOKS_PER_USER = 10;
+
+    @Param({"optimistic", "pessimistic"})
+    private String mode;
+
+    @Param({"jpa", "jdbc"})
+    private String backend;
+
+    @Param({"1", "16"})
+    private int hotUsers;
+
+    private ConfigurableApplicationContext context;
+    private UserService userService;
+    private BookService bookService;
+    private long[] userIds;
+    private long[][] bookIds;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Outcome {
+        public long exhausted;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // Properties of the builder are only defaults, application.yaml would win over them.
+        System.setProperty("app.concurrency.mode", mode);
+        context = BenchmarkContext.start();
+        if ("jpa".equals(backend)) {
+            userService = context.getBean(UserServiceImpl.class);
+            bookService = context.getBean(BookServiceImpl.class);
+        } else {
+            userService = context.getBean(UserServiceImplTemplate.class);
+            bookService = context.getBean(BookServiceImplTemplate.class);
+        }
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        userIds = BenchmarkContext.seed(jdbcTemplate, hotUsers, BOOKS_PER_USER);
+        bookIds = new long[hotUsers][];
+        for (int i = 0; i < hotUsers; i++) {
+            bookIds[i] = jdbcTemplate.queryForList("SELECT ID FROM BOOK WHERE USER_ID = ?", Long.class, userIds[i])
+                    .stream()
+                    .mapToLong(Long::longValue)
+                    .toArray();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+        System.clearProperty("app.concurrency.mode");
+    }
+
+    @Benchmark
+    public UserDto updateUser(Outcome outcome) {
+        UserDto userDto = new UserDto();
+        userDto.setId(userIds[ThreadLocalRandom.current().nextInt(hotUsers)]);
+        userDto.setFullName("benchmark user");
+        userDto.setTitle("reader");
+        userDto.setAge(ThreadLocalRandom.current().nextInt(18, 80));
+        try {
+            return userService.updateUser(userDto);
+        } catch (ServiceException e) {
+            outcome.exhausted++;
+            return null;
+        }
+    }
+
+    /**
+     * Every writer changes one random book of a hot user through the diff update.
+     */
+    @Benchmark
+    public List<BookDto> updateBooks(Outcome outcome) {
+        int user = ThreadLocalRandom.current().nextInt(hotUsers);
+        BookDto bookDto = new BookDto();
+        bookDto.setId(bookIds[user][ThreadLocalRandom.current().nextInt(BOOKS_PER_USER)]);
+        bookDto.setTitle("benchmark book");
+        bookDto.setAuthor("benchmark author");
+        bookDto.setPageCount(ThreadLocalRandom.current().nextInt(50, 1000));
+        try {
+            return bookService.updateBooks(userIds[user], List.of(bookDto));
+        } catch (ServiceException e) {
+            outcome.exhausted++;
+            return null;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.edu.ulab.app.benchmark;
+
+import com.edu.ulab.app.facade.UserDataFacade;
+import com.edu.ulab.app.web.request.BookRequest;
+import com.edu.ulab.app.web.request.UserBookRequest;
+import com.edu.ulab.app.web.request.UserRequest;
+import com.edu.ulab.app.web.response.UserBookResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code createUserWithBooks} of 16 threads, each user committed on its own by the {@code jpa} and {@code jdbc}
+ * backends, against group commits waiting up to 0, 1 and 5 ms for a group. The throughput mode shows the commits
+ * saved, the sample mode the latency a caller pays for them.
+ * The embedded H2 does not sync its log on commit, a database that does gains more from fewer commits.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(16)
+public class GroupCommitBenchmark {
+
+    private static final int BOOKS_PER_USER = 5;
+    private static final String GROUP = "group-";
+
+    @Param({"jpa", "jdbc", "group-0ms", "group-1ms", "group-5ms"})
+    private String writer;
+
+    private final List<String> properties = new ArrayList<>();
+    private ConfigurableApplicationContext context;
+    private UserDataFacade userDataFacade;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // Properties of the builder are only defaults, application.yaml would win over them.
+        setProperty("app.cache.user-with-books.enabled", "false");
+        if (writer.startsWith(GROUP)) {
+            setProperty("app.group-commit.enabled", "true");
+            setProperty("app.group-commit.max-delay", writer.substring(GROUP.length()));
+        } else {
+            setProperty("app.backend.active", writer);
+        }
+        context = BenchmarkContext.start();
+        userDataFacade = context.getBean(UserDataFacade.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+        properties.forEach(System::clearProperty);
+    }
+
+    @Benchmark
+    public UserBookResponse createUserWithBooks() {
+        return userDataFacade.createUserWithBooks(userBookRequest());
+    }
+
+    private void setProperty(String key, String value) {
+        System.setProperty(key, value);
+        properties.add(key);
+    }
+
+    private static UserBookRequest userBookRequest() {
+        UserRequest userRequest = new UserRequest();
+        userRequest.setFullName("benchmark user");
+        userRequest.setTitle("reader");
+        userRequest.setAge(ThreadLocalRandom.current().nextInt(18, 80));
+        List<BookRequest> bookRequests = new ArrayList<>(BOOKS_PER_USER);
+        for (int i = 0; i < BOOKS_PER_USER; i++) {
+            BookRequest bookRequest = new BookRequest();
+            bookRequest.setTitle("book " + i);
+            bookRequest.setAuthor("author " + i);
+            bookRequest.setPageCount(100 + i);
+            bookRequests.add(bookRequest);
+        }
+        UserBookRequest userBookRequest = new UserBookRequest();
+        userBookRequest.setUserRequest(userRequest);
+        userBookRequest.setBookRequests(bookRequests);
+        return userBookRequest;
+    }
+}
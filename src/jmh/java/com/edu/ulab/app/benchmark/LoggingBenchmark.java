@@ -0,0 +1,113 @@
+package com.edu.ulab.app.benchmark;
+
+import com.edu.ulab.app.facade.UserDataFacade;
+import com.edu.ulab.app.web.request.BookRequest;
+import com.edu.ulab.app.web.request.UserBookRequest;
+import com.edu.ulab.app.web.request.UserRequest;
+import com.edu.ulab.app.web.response.UserBookResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Facade throughput with the application loggers at WARN ({@code off}), at INFO with every event kept ({@code on})
+ * and at INFO with the configured sampling rates ({@code sampled}).
+ * The console is redirected to a null stream, so the numbers show the cost paid by the request threads
+ * (formatting, MDC copy, async queue hand-off) and not the terminal speed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class LoggingBenchmark {
+
+    private static final int USERS = 1_000;
+    private static final int BOOKS_PER_USER = 10;
+    private static final String SAMPLING_PREFIX = "app.logging.sampling.rates.";
+
+    @Param({"off", "on", "sampled"})
+    private String logging;
+
+    private PrintStream console;
+    private ConfigurableApplicationContext context;
+    private UserDataFacade facade;
+    private long[] userIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        // system properties take precedence over application.yaml
+        System.setProperty("app.cache.user-with-books.enabled", "false");
+        if ("on".equals(logging)) {
+            System.setProperty(SAMPLING_PREFIX + "[com.edu.ulab.app.service]", "1.0");
+            System.setProperty(SAMPLING_PREFIX + "[com.edu.ulab.app.storage]", "1.0");
+        }
+        context = BenchmarkContext.start("logging.level.com.edu.ulab.app=" + ("off".equals(logging) ? "WARN" : "INFO"));
+        facade = context.getBean(UserDataFacade.class);
+        userIds = BenchmarkContext.seed(context.getBean(JdbcTemplate.class), USERS, BOOKS_PER_USER);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+        System.clearProperty("app.cache.user-with-books.enabled");
+        System.clearProperty(SAMPLING_PREFIX + "[com.edu.ulab.app.service]");
+        System.clearProperty(SAMPLING_PREFIX + "[com.edu.ulab.app.storage]");
+        System.setOut(console);
+    }
+
+    @Benchmark
+    public UserBookResponse getUserWithBooks() {
+        return facade.getUserWithBooks(userIds[ThreadLocalRandom.current().nextInt(userIds.length)]);
+    }
+
+    @Benchmark
+    public UserBookResponse createUserWithBooks() {
+        return facade.createUserWithBooks(request());
+    }
+
+    private static UserBookRequest request() {
+        UserRequest userRequest = new UserRequest();
+        userRequest.setFullName("bench user");
+        userRequest.setTitle("reader");
+        userRequest.setAge(30);
+
+        List<BookRequest> bookRequests = new ArrayList<>(3);
+        for (int i = 0; i < 3; i++) {
+            BookRequest bookRequest = new BookRequest();
+            bookRequest.setTitle("book " + i);
+            bookRequest.setAuthor("author " + i);
+            bookRequest.setPageCount(100 + i);
+            bookRequests.add(bookRequest);
+        }
+
+        UserBookRequest userBookRequest = new UserBookRequest();
+        userBookRequest.setUserRequest(userRequest);
+        userBookRequest.setBookRequests(bookRequests);
+        return userBookRequest;
+    }
+}
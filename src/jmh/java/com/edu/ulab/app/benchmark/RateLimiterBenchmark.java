@@ -0,0 +1,79 @@
+package com.edu.ulab.app.benchmark;
+
+import com.edu.ulab.app.config.RateLimitProperties;
+import com.edu.ulab.app.web.filter.ClientRateLimiter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one {@link ClientRateLimiter} check per request, for quotas that let everything through ({@code open})
+ * and that throttle nearly every request ({@code throttled}). With more clients than
+ * {@code app.rate-limit.max-clients} the untracked ones go through the overflow bucket.
+ * Single threaded by default, {@code -t} adds contention on the buckets; on fewer cores than threads the average
+ * time also counts the wait for a core.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class RateLimiterBenchmark {
+
+    private static final String PATH = "/api/v1/user/create";
+    private static final int MAX_CLIENTS = 10_000;
+
+    @Param({"1", "1000", "100000"})
+    private int clients;
+
+    @Param({"open", "throttled"})
+    private String quota;
+
+    private ClientRateLimiter rateLimiter;
+    private String[] clientIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        RateLimitProperties.Quota endpoint = new RateLimitProperties.Quota();
+        endpoint.setPath(PATH);
+        endpoint.setPermitsPerSecond("open".equals(quota) ? 1e9 : 1);
+        endpoint.setBurst(1);
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setEnabled(true);
+        properties.setEndpoints(List.of(endpoint));
+        properties.setMaxClients(MAX_CLIENTS);
+        rateLimiter = new ClientRateLimiter(properties, new SimpleMeterRegistry());
+        clientIds = new String[clients];
+        for (int i = 0; i < clients; i++) {
+            clientIds[i] = "client" + i;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        rateLimiter.destroy();
+    }
+
+    @Benchmark
+    public long acquire() {
+        return rateLimiter.acquire(clientIds[ThreadLocalRandom.current().nextInt(clients)], PATH);
+    }
+}
@@ -0,0 +1,97 @@
+package com.edu.ulab.app.benchmark;
+
+import com.edu.ulab.app.facade.UserDataFacade;
+import com.edu.ulab.app.web.response.UserBookResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code GET /get/{userId}} and its books page through entities, dtos and response objects serialized by Jackson,
+ * against the same JSON written straight from the result set. Both write to a discarding stream, compare
+ * {@code gc.alloc.rate.norm} of the gc profiler for the bytes allocated per request.
+ * The direct path does not depend on {@code backend}, it always reads the database with the JdbcTemplate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReadPathBenchmark {
+
+    private static final int USERS = 1_000;
+    private static final int PAGE_LIMIT = 50;
+
+    @Param({"jpa", "jdbc"})
+    private String backend;
+
+    @Param({"1", "10", "100"})
+    private int booksPerUser;
+
+    private ConfigurableApplicationContext context;
+    private UserDataFacade userDataFacade;
+    private ObjectMapper objectMapper;
+    private long[] userIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // Properties of the builder are only defaults, application.yaml would win over them.
+        System.setProperty("app.backend.active", backend);
+        System.setProperty("app.cache.user-with-books.enabled", "false");
+        context = BenchmarkContext.start();
+        userDataFacade = context.getBean(UserDataFacade.class);
+        objectMapper = context.getBean(ObjectMapper.class);
+        userIds = BenchmarkContext.seed(context.getBean(JdbcTemplate.class), USERS, booksPerUser);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+        System.clearProperty("app.backend.active");
+        System.clearProperty("app.cache.user-with-books.enabled");
+    }
+
+    @Benchmark
+    public void userWithBooksObjects() throws IOException {
+        UserBookResponse response = userDataFacade.getUserWithBooks(randomUserId());
+        objectMapper.writeValue(OutputStream.nullOutputStream(), response);
+    }
+
+    @Benchmark
+    public void userWithBooksDirect() throws IOException {
+        userDataFacade.writeUserWithBooks(randomUserId(), OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public void booksPageObjects() throws IOException {
+        objectMapper.writeValue(OutputStream.nullOutputStream(), userDataFacade.getUserBooksPage(randomUserId(), null, PAGE_LIMIT));
+    }
+
+    @Benchmark
+    public void booksPageDirect() throws IOException {
+        userDataFacade.writeUserBooksPage(randomUserId(), null, PAGE_LIMIT, OutputStream.nullOutputStream());
+    }
+
+    private long randomUserId() {
+        return userIds[ThreadLocalRandom.current().nextInt(userIds.length)];
+    }
+}
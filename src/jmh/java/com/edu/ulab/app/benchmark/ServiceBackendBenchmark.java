@@ -0,0 +1,191 @@
+package com.edu.ulab.app.benchmark;
+
+import com.edu.ulab.app.dto.BookDto;
+import com.edu.ulab.app.dto.UserDto;
+import com.edu.ulab.app.service.BookService;
+import com.edu.ulab.app.service.UserService;
+import com.edu.ulab.app.service.impl.BookServiceImpl;
+import com.edu.ulab.app.service.impl.BookServiceImplTemplate;
+import com.edu.ulab.app.service.impl.UserServiceImpl;
+import com.edu.ulab.app.service.impl.UserServiceImplTemplate;
+import com.edu.ulab.app.storage.Storage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spring Data/Hibernate services against the raw {@link JdbcTemplate} services on the same H2 database,
+ * with the in-memory {@link Storage} as the no round-trip baseline.
+ * Create benchmarks grow the tables during a trial, so compare them only between backends of the same run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ServiceBackendBenchmark {
+
+    private static final int BOOKS_PER_USER = 10;
+
+    @Param({"jpa", "jdbc", "storage"})
+    private String backend;
+
+    @Param({"100", "10000"})
+    private int datasetSize;
+
+    private ConfigurableApplicationContext context;
+    private UserService userService;
+    private BookService bookService;
+    private long[] userIds;
+    private long[] bookIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        if ("jpa".equals(backend)) {
+            userService = context.getBean(UserServiceImpl.class);
+            bookService = context.getBean(BookServiceImpl.class);
+        } else if ("jdbc".equals(backend)) {
+            userService = context.getBean(UserServiceImplTemplate.class);
+            bookService = context.getBean(BookServiceImplTemplate.class);
+        } else {
+            Storage storage = context.getBean(Storage.class);
+            userService = storage;
+            bookService = storage;
+        }
+        if (userService instanceof Storage) {
+            seedStorage();
+            return;
+        }
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        userIds = BenchmarkContext.seed(jdbcTemplate, datasetSize, BOOKS_PER_USER);
+        bookIds = jdbcTemplate.queryForList("SELECT ID FROM BOOK", Long.class)
+                .stream()
+                .mapToLong(Long::longValue)
+                .toArray();
+    }
+
+    private void seedStorage() {
+        userIds = new long[datasetSize];
+        bookIds = new long[datasetSize * BOOKS_PER_USER];
+        for (int i = 0; i < datasetSize; i++) {
+            userIds[i] = userService.createUser(newUser()).getId();
+            for (int j = 0; j < BOOKS_PER_USER; j++) {
+                bookIds[i * BOOKS_PER_USER + j] = bookService.createBook(newBook(userIds[i])).getId();
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public UserDto createUser() {
+        return userService.createUser(newUser());
+    }
+
+    @Benchmark
+    public BookDto createBook() {
+        return bookService.createBook(newBook(randomUserId()));
+    }
+
+    @Benchmark
+    public List<BookDto> createBooks() {
+        long userId = randomUserId();
+        List<BookDto> books = new ArrayList<>(BOOKS_PER_USER);
+        for (int i = 0; i < BOOKS_PER_USER; i++) {
+            books.add(newBook(userId));
+        }
+        return bookService.createBooks(books);
+    }
+
+    @Benchmark
+    public UserDto getUserById() {
+        return userService.getUserById(randomUserId());
+    }
+
+    @Benchmark
+    public BookDto getBookById() {
+        return bookService.getBookById(randomBookId());
+    }
+
+    @Benchmark
+    public List<BookDto> getBookByUserId() {
+        return bookService.getBookByUserId(randomUserId());
+    }
+
+    @Benchmark
+    public UserDto updateUser() {
+        UserDto userDto = newUser();
+        userDto.setId(randomUserId());
+        return userService.updateUser(userDto);
+    }
+
+    @Benchmark
+    public BookDto updateBook() {
+        long bookId = randomBookId();
+        BookDto bookDto = bookService.getBookById(bookId);
+        bookDto.setPageCount(bookDto.getPageCount() + 1);
+        return bookService.updateBook(bookDto);
+    }
+
+    /**
+     * Delete on its own would drain the dataset, so each invocation inserts the book it removes.
+     */
+    @Benchmark
+    public void createAndDeleteBook() {
+        BookDto created = bookService.createBook(newBook(randomUserId()));
+        bookService.deleteBookById(created.getId());
+    }
+
+    @Benchmark
+    public void createAndDeleteUser() {
+        UserDto created = userService.createUser(newUser());
+        userService.deleteUserById(created.getId());
+    }
+
+    private long randomUserId() {
+        return userIds[ThreadLocalRandom.current().nextInt(userIds.length)];
+    }
+
+    private long randomBookId() {
+        return bookIds[ThreadLocalRandom.current().nextInt(bookIds.length)];
+    }
+
+    private static UserDto newUser() {
+        UserDto userDto = new UserDto();
+        userDto.setFullName("benchmark user");
+        userDto.setTitle("reader");
+        userDto.setAge(ThreadLocalRandom.current().nextInt(18, 80));
+        return userDto;
+    }
+
+    private static BookDto newBook(long userId) {
+        BookDto bookDto = new BookDto();
+        bookDto.setUserId(userId);
+        bookDto.setTitle("benchmark book");
+        bookDto.setAuthor("benchmark author");
+        bookDto.setPageCount(ThreadLocalRandom.current().nextInt(50, 1000));
+        return bookDto;
+    }
+}
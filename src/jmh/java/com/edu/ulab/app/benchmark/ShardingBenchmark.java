@@ -0,0 +1,119 @@
+package com.edu.ulab.app.benchmark;
+
+import com.edu.ulab.app.facade.UserDataFacade;
+import com.edu.ulab.app.web.request.BookRequest;
+import com.edu.ulab.app.web.request.UserBookRequest;
+import com.edu.ulab.app.web.request.UserRequest;
+import com.edu.ulab.app.web.response.UserBookResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Facade writes and reads of 8 threads against 1, 2 and 4 embedded H2 shards. Every shard is its own database
+ * with its own pool, so the throughput should grow with the shard count as long as the database, not the
+ * application, is the bottleneck. Embedded shards share the cores of the benchmark JVM: on a single core only
+ * the relief on the database locks shows, separate database hosts are needed to see the full effect.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class ShardingBenchmark {
+
+    private static final int USERS = 1_000;
+    private static final int BOOKS_PER_USER = 5;
+
+    @Param({"1", "2", "4"})
+    private int shards;
+
+    @Param({"jpa", "jdbc"})
+    private String backend;
+
+    private final List<String> properties = new ArrayList<>();
+    private ConfigurableApplicationContext context;
+    private UserDataFacade userDataFacade;
+    private long[] userIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // Properties of the builder are only defaults, application.yaml would win over them.
+        setProperty("app.backend.active", backend);
+        setProperty("app.cache.user-with-books.enabled", "false");
+        setProperty("app.shards.enabled", "true");
+        for (int i = 0; i < shards; i++) {
+            String instance = "app.shards.instances[" + i + "].";
+            setProperty(instance + "name", "shard-" + (i + 1));
+            setProperty(instance + "url", "jdbc:h2:mem:benchmark-shard-" + (i + 1));
+            setProperty(instance + "username", "test");
+            setProperty(instance + "password", "test");
+        }
+        context = BenchmarkContext.start();
+        userDataFacade = context.getBean(UserDataFacade.class);
+        // Through the facade, so every user lands on its shard.
+        userIds = new long[USERS];
+        for (int i = 0; i < USERS; i++) {
+            userIds[i] = userDataFacade.createUserWithBooks(userBookRequest()).getUserId();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+        properties.forEach(System::clearProperty);
+    }
+
+    @Benchmark
+    public UserBookResponse createUserWithBooks() {
+        return userDataFacade.createUserWithBooks(userBookRequest());
+    }
+
+    @Benchmark
+    public UserBookResponse getUserWithBooks() {
+        return userDataFacade.getUserWithBooks(userIds[ThreadLocalRandom.current().nextInt(USERS)]);
+    }
+
+    private void setProperty(String key, String value) {
+        System.setProperty(key, value);
+        properties.add(key);
+    }
+
+    private static UserBookRequest userBookRequest() {
+        UserRequest userRequest = new UserRequest();
+        userRequest.setFullName("benchmark user");
+        userRequest.setTitle("reader");
+        userRequest.setAge(ThreadLocalRandom.current().nextInt(18, 80));
+        List<BookRequest> bookRequests = new ArrayList<>(BOOKS_PER_USER);
+        for (int i = 0; i < BOOKS_PER_USER; i++) {
+            BookRequest bookRequest = new BookRequest();
+            bookRequest.setTitle("book " + i);
+            bookRequest.setAuthor("author " + i);
+            bookRequest.setPageCount(100 + i);
+            bookRequests.add(bookRequest);
+        }
+        UserBookRequest userBookRequest = new UserBookRequest();
+        userBookRequest.setUserRequest(userRequest);
+        userBookRequest.setBookRequests(bookRequests);
+        return userBookRequest;
+    }
+}
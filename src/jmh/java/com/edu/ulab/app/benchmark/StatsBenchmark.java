@@ -0,0 +1,74 @@
+package com.edu.ulab.app.benchmark;
+
+import com.edu.ulab.app.facade.UserDataFacade;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The stats endpoint read from the counters ({@code counters}) against the {@code GROUP BY} queries dashboards ran
+ * on {@code PERSON} and {@code BOOK} ({@code group-by}). The rows are inserted behind the counters, which does not
+ * change what a read of them costs. H2 would answer a repeated query on unchanged tables from its last result, a
+ * dashboard next to writes does not get that.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class StatsBenchmark {
+
+    private static final int BOOKS_PER_USER = 5;
+    private static final String DATASOURCE_URL = "spring.datasource.url";
+
+    @Param({"10000", "100000"})
+    private int users;
+
+    @Param({"counters", "group-by"})
+    private String stats;
+
+    private ConfigurableApplicationContext context;
+    private UserDataFacade userDataFacade;
+    private JdbcTemplate jdbcTemplate;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // Properties of the builder are only defaults, application.yaml would win over them.
+        System.setProperty(DATASOURCE_URL, "jdbc:h2:mem:userbook;OPTIMIZE_REUSE_RESULTS=FALSE");
+        context = BenchmarkContext.start();
+        userDataFacade = context.getBean(UserDataFacade.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        BenchmarkContext.seed(jdbcTemplate, users, BOOKS_PER_USER);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+        System.clearProperty(DATASOURCE_URL);
+    }
+
+    @Benchmark
+    public Object read() {
+        if ("counters".equals(stats)) {
+            return userDataFacade.getLibraryStats();
+        }
+        jdbcTemplate.queryForList("SELECT COUNT(*), SUM(PAGE_COUNT) FROM BOOK");
+        jdbcTemplate.queryForList("SELECT AGE / 10, COUNT(*) FROM PERSON GROUP BY AGE / 10");
+        return jdbcTemplate.queryForList("SELECT AUTHOR, COUNT(*) AS BOOKS FROM BOOK GROUP BY AUTHOR ORDER BY BOOKS DESC LIMIT 10");
+    }
+}
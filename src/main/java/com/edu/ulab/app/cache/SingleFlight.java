@@ -0,0 +1,81 @@
+package com.edu.ulab.app.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Request coalescing: concurrent calls for the same key share the load of the first caller.
+ * The result, or the exception, of that load is handed to every waiter. Nothing is kept once the load is done.
+ * <p>
+ * Publishes {@code singleflight.calls} tagged {@code result=leader|coalesced}; the coalescing ratio is
+ * {@code coalesced / (leader + coalesced)}.
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final Counter leaderCalls;
+    private final Counter coalescedCalls;
+
+    public SingleFlight(String name, MeterRegistry meterRegistry) {
+        this.leaderCalls = counter(name, "leader", meterRegistry);
+        this.coalescedCalls = counter(name, "coalesced", meterRegistry);
+        meterRegistry.gauge("singleflight.inflight", Tags.of("name", name), inFlight, ConcurrentMap::size);
+    }
+
+    public V execute(K key, Supplier<V> loader) {
+        CompletableFuture<V> leader = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, leader);
+        if (existing != null) {
+            coalescedCalls.increment();
+            return await(existing);
+        }
+
+        leaderCalls.increment();
+        try {
+            V value = loader.get();
+            leader.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            leader.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, leader);
+        }
+    }
+
+    /**
+     * Later callers start a fresh load instead of joining the one in flight, which may predate a write.
+     */
+    public void forget(K key) {
+        inFlight.remove(key);
+    }
+
+    private V await(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static Counter counter(String name, String result, MeterRegistry meterRegistry) {
+        return Counter.builder("singleflight.calls")
+                .tag("name", name)
+                .tag("result", result)
+                .description("Loads started (leader) and calls that joined a load in flight (coalesced)")
+                .register(meterRegistry);
+    }
+}
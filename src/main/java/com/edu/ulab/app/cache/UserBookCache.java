@@ -0,0 +1,188 @@
+package com.edu.ulab.app.cache;
+
+import com.edu.ulab.app.config.UserBookCacheProperties;
+import com.edu.ulab.app.jdbc.ReplicaRouting;
+import com.edu.ulab.app.web.response.UserBookResponse;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * Bounded read-through cache of the user + book ids view built by {@code UserDataFacade#getUserWithBooks}.
+ * <p>
+ * Writers call {@link #invalidate(Long, Collection)} after their changes reached the database. Every invalidation
+ * takes a ticket from one clock and stamps it on the stripes of its user and of its books, and a load only
+ * populates the cache if neither the stripe of its user nor those of the books it read were stamped after it
+ * started, so a value read before a write can never be cached after it. A write only holds back loads of the
+ * users and books it touched, or those sharing a stripe with them. Cached entries also index their book ids, which
+ * lets a write that moves a book to another user evict the previous owner.
+ * Concurrent misses for the same user are coalesced by a {@link SingleFlight} into one load.
+ * A caller that already knows a newer change version of the user than the cached entry skips it, which closes the
+ * window between a commit and its invalidation for conditional requests. Loads may read a replica, one that is
+ * behind the change version of the user on the primary is returned but not cached.
+ * Hit, miss and eviction counters are published as {@code cache.*} metrics tagged {@code cache=userWithBooks}.
+ */
+@Slf4j
+@Component
+public class UserBookCache {
+
+    public static final String CACHE_NAME = "userWithBooks";
+    private static final int STAMP_STRIPES = 1024;
+
+    private final boolean enabled;
+    private final SingleFlight<Long, UserBookResponse> singleFlight;
+    private final Cache<Long, Entry> cache;
+    private final ConcurrentMap<Long, Entry> entriesByBookId = new ConcurrentHashMap<>();
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicLongArray userStamps = new AtomicLongArray(STAMP_STRIPES);
+    private final AtomicLongArray bookStamps = new AtomicLongArray(STAMP_STRIPES);
+
+    public UserBookCache(UserBookCacheProperties properties, MeterRegistry meterRegistry) {
+        this.enabled = properties.isEnabled();
+        this.singleFlight = properties.isCoalesce() ? new SingleFlight<>(CACHE_NAME, meterRegistry) : null;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getExpireAfterWrite())
+                .recordStats()
+                .<Long, Entry>removalListener((userId, entry, cause) -> {
+                    if (entry != null) {
+                        unindex(entry);
+                    }
+                })
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    public UserBookResponse get(Long userId, Supplier<UserBookResponse> loader) {
+        return get(userId, Long.MIN_VALUE, loader, null);
+    }
+
+    /**
+     * @param minChangeVersion     change version the response has to be at least at
+     * @param primaryChangeVersion change version of the user on the primary, asked after a load in the replica scope
+     *                             of {@link ReplicaRouting}; {@code null} caches every load
+     */
+    public UserBookResponse get(Long userId, long minChangeVersion, Supplier<UserBookResponse> loader,
+                                Supplier<Long> primaryChangeVersion) {
+        if (enabled) {
+            Entry cached = cache.getIfPresent(userId);
+            if (cached != null && isAtLeast(cached.response, minChangeVersion)) {
+                log.debug("User {} served from cache", userId);
+                return cached.response;
+            }
+        }
+        Supplier<UserBookResponse> load = enabled ? () -> loadAndCache(userId, loader, primaryChangeVersion) : loader;
+        return singleFlight == null ? load.get() : singleFlight.execute(userId, load);
+    }
+
+    private static boolean isAtLeast(UserBookResponse response, long minChangeVersion) {
+        return minChangeVersion == Long.MIN_VALUE
+                || response.getChangeVersion() != null && response.getChangeVersion() >= minChangeVersion;
+    }
+
+    private UserBookResponse loadAndCache(Long userId, Supplier<UserBookResponse> loader, Supplier<Long> primaryChangeVersion) {
+        long start = clock.get();
+        boolean replicaRead = ReplicaRouting.isReplicaRead();
+        Entry loaded = new Entry(loader.get());
+        if (replicaRead && primaryChangeVersion != null && !isCurrent(loaded.response, ReplicaRouting.onPrimary(primaryChangeVersion))) {
+            // The replica lags behind a write whose invalidation already passed, its view must not outlive the lag.
+            log.debug("User {} read from a lagging replica, not cached", userId);
+            return loaded.response;
+        }
+        index(loaded);
+        Entry stored = cache.asMap().compute(userId,
+                (key, current) -> isUnchangedSince(key, loaded, start) ? loaded : current);
+        if (stored != loaded) {
+            unindex(loaded);
+        }
+        return loaded.response;
+    }
+
+    private static boolean isCurrent(UserBookResponse response, Long primaryChangeVersion) {
+        return primaryChangeVersion != null && isAtLeast(response, primaryChangeVersion);
+    }
+
+    private boolean isUnchangedSince(Long userId, Entry loaded, long start) {
+        if (userStamps.get(stripe(userId)) > start) {
+            return false;
+        }
+        for (Long bookId : loaded.response.getBooksIdList()) {
+            if (bookStamps.get(stripe(bookId)) > start) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Evicts the user and every cached user that currently owns one of the given books. Loads in flight for those
+     * users are no longer joined, later callers start a fresh one.
+     */
+    public void invalidate(Long userId, Collection<Long> bookIds) {
+        if (!enabled) {
+            forget(userId);
+            return;
+        }
+        // Stamped before the evictions: a load that still passes the check is indexed already and evicted below.
+        long ticket = clock.incrementAndGet();
+        if (userId != null) {
+            userStamps.accumulateAndGet(stripe(userId), ticket, Math::max);
+        }
+        for (Long bookId : bookIds) {
+            if (bookId != null) {
+                bookStamps.accumulateAndGet(stripe(bookId), ticket, Math::max);
+            }
+        }
+        if (userId != null) {
+            forget(userId);
+            cache.invalidate(userId);
+        }
+        for (Long bookId : bookIds) {
+            Entry owner = bookId == null ? null : entriesByBookId.get(bookId);
+            if (owner != null) {
+                // A moved book changes its previous owner too, whose load may be in flight as well.
+                forget(owner.response.getUserId());
+                cache.invalidate(owner.response.getUserId());
+            }
+        }
+    }
+
+    private void forget(Long userId) {
+        if (singleFlight != null && userId != null) {
+            singleFlight.forget(userId);
+        }
+    }
+
+    private static int stripe(Long id) {
+        return Long.hashCode(id * 0x9E3779B97F4A7C15L) & (STAMP_STRIPES - 1);
+    }
+
+    private void index(Entry entry) {
+        entry.response.getBooksIdList().forEach(bookId -> entriesByBookId.put(bookId, entry));
+    }
+
+    private void unindex(Entry entry) {
+        entry.response.getBooksIdList().forEach(bookId -> entriesByBookId.remove(bookId, entry));
+    }
+
+    /**
+     * Identity-compared holder, so a reloaded value never unindexes the entry that replaced it.
+     */
+    private static final class Entry {
+        private final UserBookResponse response;
+
+        private Entry(UserBookResponse response) {
+            this.response = response;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.edu.ulab.app.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class AsyncConfig {
+
+    public static final String FACADE_EXECUTOR = "facadeExecutor";
+
+    /**
+     * Bounded pool with a bounded queue. Rejections are counted as {@code executor.rejected{name=facade}} and
+     * surface as {@link RejectedExecutionException}; pool, queue and task timings come from {@link ExecutorServiceMetrics}.
+     */
+    @Bean(name = FACADE_EXECUTOR, destroyMethod = "shutdown")
+    public ExecutorService facadeExecutor(AsyncProperties properties, MeterRegistry meterRegistry) {
+        Counter rejected = Counter.builder("executor.rejected")
+                .tag("name", "facade")
+                .description("Facade tasks rejected because the pool and its queue are full")
+                .register(meterRegistry);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                properties.getCorePoolSize(),
+                properties.getMaxPoolSize(),
+                properties.getKeepAlive().toMillis(), TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(properties.getQueueCapacity()),
+                new CustomizableThreadFactory("facade-"),
+                (task, pool) -> {
+                    rejected.increment();
+                    throw new RejectedExecutionException("Facade executor is saturated");
+                });
+        return ExecutorServiceMetrics.monitor(meterRegistry, executor, "facade");
+    }
+}
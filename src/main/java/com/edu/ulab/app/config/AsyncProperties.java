@@ -0,0 +1,25 @@
+package com.edu.ulab.app.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Executor running the facade calls of {@code UserController}, sized independently of the Tomcat connector threads.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.async")
+public class AsyncProperties {
+    /**
+     * When disabled the facade runs on the Tomcat worker thread as before.
+     */
+    private boolean enabled = true;
+    private int corePoolSize = 10;
+    private int maxPoolSize = 10;
+    /**
+     * Requests waiting for a facade thread. Beyond it requests are rejected with 503.
+     */
+    private int queueCapacity = 200;
+    private Duration keepAlive = Duration.ofSeconds(60);
+}
@@ -0,0 +1,34 @@
+package com.edu.ulab.app.config;
+
+import com.edu.ulab.app.service.backend.Backend;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "app.backend")
+public class BackendProperties {
+    /**
+     * Backend serving the facade: jpa, jdbc or memory.
+     */
+    private Backend active = Backend.JPA;
+    private Shadow shadow = new Shadow();
+
+    /**
+     * Mirrors a share of the reads to a second backend, compares the results and times both.
+     * The shadow backend has to read the same data, so memory only makes sense against memory.
+     */
+    @Data
+    public static class Shadow {
+        private boolean enabled = false;
+        private Backend backend = Backend.JDBC;
+        /**
+         * Share of the reads mirrored, from 0.0 to 1.0.
+         */
+        private double readFraction = 0.01;
+        private int poolSize = 2;
+        /**
+         * Mirrored reads waiting for a shadow thread. Beyond it they are dropped, never the primary read.
+         */
+        private int queueCapacity = 100;
+    }
+}
@@ -0,0 +1,21 @@
+package com.edu.ulab.app.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "app.books")
+public class BookQueryProperties {
+    private int pageDefaultLimit = 50;
+    private int pageMaxLimit = 1_000;
+    private int streamFetchSize = 500;
+    /**
+     * Update the books of a user from the diff against the stored books instead of book by book.
+     */
+    private boolean diffUpdate = true;
+    /**
+     * Write the user and book page reads straight from the result set instead of through entities and dtos.
+     * These reads then bypass the user-with-books cache; ignored on the memory backend.
+     */
+    private boolean directJson = false;
+}
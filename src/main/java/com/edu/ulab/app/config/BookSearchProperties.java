@@ -0,0 +1,30 @@
+package com.edu.ulab.app.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * In-memory inverted index over book titles and authors, loaded at startup and kept up to date by the writes of
+ * this node. Not used on the memory backend's data before the first write: it starts empty like the backend.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.search")
+public class BookSearchProperties {
+    private boolean enabled = true;
+    private int defaultLimit = 20;
+    private int maxLimit = 100;
+    /**
+     * Terms one query word may expand to by prefix or infix, a word matching more terms only finds books through
+     * the terms seen first.
+     */
+    private int maxExpansions = 10_000;
+    /**
+     * Query words at least this long also match inside terms, through an index of the term trigrams. 0 turns
+     * infix matching and the trigram index off.
+     */
+    private int minInfixLength = 3;
+    /**
+     * Rows read per round trip while the index is loaded at startup.
+     */
+    private int loadFetchSize = 1_000;
+}
@@ -0,0 +1,35 @@
+package com.edu.ulab.app.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * How concurrent updates of the same person or book are kept from overwriting each other.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.concurrency")
+public class ConcurrencyProperties {
+    private LockMode mode = LockMode.OPTIMISTIC;
+    /**
+     * Optimistic attempts, the first included, before the update fails with 409.
+     */
+    private int maxAttempts = 5;
+    /**
+     * Upper bound of the random pause before the second attempt, doubled for every further attempt.
+     */
+    private Duration initialBackoff = Duration.ofMillis(2);
+    private Duration maxBackoff = Duration.ofMillis(50);
+
+    public enum LockMode {
+        /**
+         * Read without locks, write with {@code WHERE VERSION = ?} and retry the whole transaction on a conflict.
+         */
+        OPTIMISTIC,
+        /**
+         * Read with {@code SELECT ... FOR UPDATE}, writers of the same rows wait for each other.
+         */
+        PESSIMISTIC
+    }
+}
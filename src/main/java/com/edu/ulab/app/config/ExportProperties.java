@@ -0,0 +1,17 @@
+package com.edu.ulab.app.config;
+
+import com.edu.ulab.app.export.ExportFormat;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "app.export")
+public class ExportProperties {
+    private int fetchSize = 5_000;
+    /**
+     * When set, {@code ExportCommandLineRunner} writes the export to this file on startup.
+     */
+    private String file;
+    private ExportFormat format = ExportFormat.NDJSON;
+    private boolean gzip;
+}
@@ -0,0 +1,28 @@
+package com.edu.ulab.app.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Users created with their books by concurrent requests are written together, in one transaction per group.
+ * A group holds at most the users waiting at once, so it is bounded by {@code app.async.max-pool-size} as well.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.group-commit")
+public class GroupCommitProperties {
+    private boolean enabled = false;
+    /**
+     * A group is written once it holds this many PERSON and BOOK rows.
+     */
+    private int maxRows = 500;
+    /**
+     * Longest a user waits for others to join its group, 0 writes whatever queued up during the previous commit.
+     */
+    private Duration maxDelay = Duration.ofMillis(2);
+    /**
+     * Users waiting for a group per database, callers block beyond it.
+     */
+    private int queueCapacity = 10_000;
+}
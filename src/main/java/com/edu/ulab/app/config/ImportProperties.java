@@ -0,0 +1,13 @@
+package com.edu.ulab.app.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "app.import")
+public class ImportProperties {
+    /**
+     * Records written per transaction. Also bounds how many parsed records are held in memory.
+     */
+    private int batchSize = 1_000;
+}
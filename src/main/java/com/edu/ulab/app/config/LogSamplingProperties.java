@@ -0,0 +1,17 @@
+package com.edu.ulab.app.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "app.logging.sampling")
+public class LogSamplingProperties {
+    /**
+     * Logger name prefix to the share of its TRACE..INFO events that is kept, from 0.0 to 1.0.
+     * The longest matching prefix wins, WARN and ERROR are never sampled.
+     */
+    private Map<String, Double> rates = new LinkedHashMap<>();
+}
@@ -0,0 +1,21 @@
+package com.edu.ulab.app.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Per-request JDBC statement profile, see {@code com.edu.ulab.app.jdbc.QueryProfiler}.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.jdbc.profiler")
+public class QueryProfilerProperties {
+    private boolean enabled = true;
+    /**
+     * A statement shape executed more often than this within one request is reported as N+1.
+     */
+    private int repeatThreshold = 5;
+    /**
+     * Distinct statement shapes tracked per request, further shapes are counted together.
+     */
+    private int maxShapes = 64;
+}
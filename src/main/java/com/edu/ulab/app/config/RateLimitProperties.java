@@ -0,0 +1,52 @@
+package com.edu.ulab.app.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Token buckets per client and endpoint in front of the controllers, actuator requests are never limited.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.rate-limit")
+public class RateLimitProperties {
+    private boolean enabled = false;
+    /**
+     * Header naming the client. Empty: the client is the rqid up to the first {@link #rqidSeparator},
+     * rqids without it share one anonymous client.
+     */
+    private String clientHeader = "";
+    private String rqidSeparator = "-";
+    /**
+     * Quota of the paths no endpoint quota matches, none when its rate is 0.
+     */
+    private Quota defaultQuota = new Quota();
+    /**
+     * The longest matching path prefix wins.
+     */
+    private List<Quota> endpoints = new ArrayList<>();
+    /**
+     * Clients tracked per quota. Beyond it new clients share one bucket until idle ones are evicted.
+     */
+    private int maxClients = 10_000;
+    /**
+     * A client with a full bucket for this long is dropped, it would start with a full bucket again anyway.
+     */
+    private Duration idleTimeout = Duration.ofMinutes(5);
+
+    @Data
+    public static class Quota {
+        /**
+         * Servlet path prefix, unused on the default quota.
+         */
+        private String path;
+        private double permitsPerSecond = 0;
+        /**
+         * Requests a client may send at once after being quiet.
+         */
+        private int burst = 1;
+    }
+}
@@ -0,0 +1,33 @@
+package com.edu.ulab.app.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Per-request flight recorder served by the {@code flightrecorder} actuator endpoint.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.recorder")
+public class RecorderProperties {
+    private boolean enabled = true;
+    /**
+     * Number of the slowest requests kept since start.
+     */
+    private int slowestSize = 20;
+    /**
+     * Requests at least this slow are kept in the slow ring, most recent first.
+     */
+    private Duration slowThreshold = Duration.ofMillis(500);
+    private int slowSize = 256;
+    /**
+     * Share of all requests kept in the rolling sample ring, from 0.0 to 1.0.
+     */
+    private double sampleRate = 0.01;
+    private int sampleSize = 256;
+    /**
+     * Facade and service steps kept per request, further steps are only counted.
+     */
+    private int maxSteps = 64;
+}
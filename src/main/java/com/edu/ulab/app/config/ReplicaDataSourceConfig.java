@@ -0,0 +1,95 @@
+package com.edu.ulab.app.config;
+
+import com.edu.ulab.app.jdbc.LocalReplication;
+import com.edu.ulab.app.jdbc.ReadWriteRoutingDataSource;
+import com.edu.ulab.app.jdbc.Replica;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.DatabasePopulatorUtils;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replaces the auto-configured pool with a {@link ReadWriteRoutingDataSource}: {@code spring.datasource} stays the
+ * primary, {@code app.replicas.instances} serve the replica reads. The primary is still initialized by
+ * {@code spring.sql.init}, with local replication its rows reach the replicas like any other write.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(prefix = "app.replicas", name = "enabled", havingValue = "true")
+public class ReplicaDataSourceConfig {
+
+    @Bean
+    public DataSource dataSource(DataSourceProperties dataSourceProperties, ReplicaProperties replicaProperties,
+                                 Environment environment) {
+        HikariDataSource primaryPool = dataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(primaryPool));
+        List<AutoCloseable> resources = new ArrayList<>();
+
+        ReplicaProperties.LocalReplication localReplication = replicaProperties.getLocalReplication();
+        // The replicas start empty, the replayed writes need the tables.
+        ResourceDatabasePopulator schema = new ResourceDatabasePopulator(new ClassPathResource("schema.sql"));
+        List<Replica> replicas = new ArrayList<>();
+        for (ReplicaProperties.Instance instance : replicaProperties.getInstances()) {
+            String name = "replica-" + (replicas.size() + 1);
+            HikariDataSource pool = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(instance.getUrl())
+                    .username(instance.getUsername())
+                    .password(instance.getPassword())
+                    .build();
+            pool.setPoolName(name);
+            pool.setMaximumPoolSize(instance.getMaximumPoolSize());
+            if (localReplication.isEnabled()) {
+                // On the pool itself, so the schema does not count as a query of the replica.
+                DatabasePopulatorUtils.execute(schema, pool);
+            }
+            replicas.add(new Replica(name, pool));
+            resources.add(pool);
+        }
+
+        DataSource primary = primaryPool;
+        if (localReplication.isEnabled()) {
+            LocalReplication replication = new LocalReplication(replicas, localReplication.getLag());
+            primary = replication.capture(primaryPool);
+            // Stopped before the pools it writes to.
+            resources.add(0, replication);
+        }
+        resources.add(primaryPool);
+
+        log.info("Data source : primary {} with {} replicas by {}, local replication {}",
+                dataSourceProperties.getUrl(), replicas.size(), replicaProperties.getSelection(),
+                localReplication.isEnabled() ? localReplication.getLag() : "off");
+        return new ReadWriteRoutingDataSource(primary, replicas, replicaProperties, resources);
+    }
+
+    /**
+     * The registry is not injected into the data source, the pool metrics already make it depend on the data source.
+     */
+    @Bean
+    public MeterBinder replicaMetrics(DataSource dataSource) {
+        return registry -> {
+            try {
+                dataSource.unwrap(ReadWriteRoutingDataSource.class).bindTo(registry);
+            } catch (SQLException e) {
+                throw new IllegalStateException("No routing data source to bind the replica metrics", e);
+            }
+        };
+    }
+}
@@ -0,0 +1,55 @@
+package com.edu.ulab.app.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read replicas next to {@code spring.datasource}, which stays the primary for every write.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.replicas")
+public class ReplicaProperties {
+    private boolean enabled = false;
+    private Selection selection = Selection.ROUND_ROBIN;
+    /**
+     * Reads carrying the rqid of a write go to the primary for this long after it, 0 turns it off.
+     * Should be longer than the replication lag.
+     */
+    private Duration readYourWritesWindow = Duration.ofSeconds(2);
+    /**
+     * Upper bound of the request ids remembered for the read-your-writes window.
+     */
+    private int readYourWritesSize = 100_000;
+    private List<Instance> instances = new ArrayList<>();
+    private LocalReplication localReplication = new LocalReplication();
+
+    public enum Selection {
+        ROUND_ROBIN,
+        /**
+         * The replica with the lowest average connection hold time, weighted by its connections in use.
+         */
+        LEAST_LATENCY
+    }
+
+    @Data
+    public static class Instance {
+        private String url;
+        private String username;
+        private String password;
+        private int maximumPoolSize = 10;
+    }
+
+    /**
+     * Stand-in for database replication when the replicas are local H2 instances: writes committed on the primary
+     * are replayed on every replica after {@code lag}. The replicas get their tables from {@code schema.sql}.
+     */
+    @Data
+    public static class LocalReplication {
+        private boolean enabled = false;
+        private Duration lag = Duration.ofMillis(100);
+    }
+}
@@ -0,0 +1,68 @@
+package com.edu.ulab.app.config;
+
+import com.edu.ulab.app.shard.ShardedDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.DatabasePopulatorUtils;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replaces the auto-configured pool with a {@link ShardedDataSource} over {@code app.shards.instances}.
+ * Every shard gets the tables of {@code schema.sql}; {@code spring.sql.init} still runs on the first shard, from
+ * where {@link com.edu.ulab.app.shard.ShardRebalancer} moves the seed rows to their owners.
+ * Not meant to be combined with {@code app.replicas}, both define the {@code dataSource} bean.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(prefix = "app.shards", name = "enabled", havingValue = "true")
+public class ShardDataSourceConfig {
+
+    @Bean
+    public DataSource dataSource(ShardProperties shardProperties) {
+        List<String> names = shardProperties.names();
+        ResourceDatabasePopulator schema = new ResourceDatabasePopulator(new ClassPathResource("schema.sql"));
+        List<DataSource> shards = new ArrayList<>();
+        List<AutoCloseable> resources = new ArrayList<>();
+        for (int i = 0; i < shardProperties.getInstances().size(); i++) {
+            ShardProperties.Instance instance = shardProperties.getInstances().get(i);
+            HikariDataSource pool = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(instance.getUrl())
+                    .username(instance.getUsername())
+                    .password(instance.getPassword())
+                    .build();
+            pool.setPoolName(names.get(i));
+            pool.setMaximumPoolSize(instance.getMaximumPoolSize());
+            DatabasePopulatorUtils.execute(schema, pool);
+            shards.add(pool);
+            resources.add(pool);
+        }
+        log.info("Data source : {} shards {}", shards.size(), names);
+        return new ShardedDataSource(names, shards, resources);
+    }
+
+    /**
+     * The registry is not injected into the data source, the pool metrics already make it depend on the data source.
+     */
+    @Bean
+    public MeterBinder shardMetrics(DataSource dataSource) {
+        return registry -> {
+            try {
+                dataSource.unwrap(ShardedDataSource.class).bindTo(registry);
+            } catch (SQLException e) {
+                throw new IllegalStateException("No sharded data source to bind the shard metrics", e);
+            }
+        };
+    }
+}
@@ -0,0 +1,49 @@
+package com.edu.ulab.app.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Databases PERSON and BOOK are split across by user, replacing {@code spring.datasource}.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.shards")
+public class ShardProperties {
+    private boolean enabled = false;
+    /**
+     * Points of every shard on the hash ring, more points spread the logical shards more evenly.
+     */
+    private int virtualNodes = 64;
+    /**
+     * Threads of the scatter-gather reads, one per shard of a running export.
+     */
+    private int gatherPoolSize = 8;
+    private List<Instance> instances = new ArrayList<>();
+
+    /**
+     * Ring names of the instances, {@code shard-<n>} when not set.
+     */
+    public List<String> names() {
+        List<String> names = new ArrayList<>(instances.size());
+        for (int i = 0; i < instances.size(); i++) {
+            String name = instances.get(i).getName();
+            names.add(name == null ? "shard-" + (i + 1) : name);
+        }
+        return names;
+    }
+
+    @Data
+    public static class Instance {
+        /**
+         * Places the shard on the ring, must not change while the shard holds data.
+         */
+        private String name;
+        private String url;
+        private String username;
+        private String password;
+        private int maximumPoolSize = 10;
+    }
+}
@@ -0,0 +1,29 @@
+package com.edu.ulab.app.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * User and book aggregates kept up to date by the writes of this node, checked against the database in the
+ * background.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.stats")
+public class StatsProperties {
+    private boolean enabled = true;
+    /**
+     * Authors in the response.
+     */
+    private int topAuthors = 10;
+    /**
+     * Authors tracked with a count. The more, the more accurate the top authors; an author counts exactly while
+     * the authors with more books fit.
+     */
+    private int authorCapacity = 1_000;
+    /**
+     * Pause between two checks against the database, the first one fills the aggregates at startup.
+     */
+    private Duration reconcileInterval = Duration.ofMinutes(10);
+}
@@ -0,0 +1,18 @@
+package com.edu.ulab.app.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "app.cache.user-with-books")
+public class UserBookCacheProperties {
+    private boolean enabled = true;
+    /**
+     * Concurrent misses for the same user share one load, also when the cache itself is disabled.
+     */
+    private boolean coalesce = true;
+    private long maximumSize = 10_000;
+    private Duration expireAfterWrite = Duration.ofMinutes(10);
+}
@@ -9,4 +9,8 @@ public class BookDto {
     private String title;
     private String author;
     private long pageCount;
+    /**
+     * Version the book was read at, for an update the version it is based on, {@code null} for any.
+     */
+    private Long version;
 }
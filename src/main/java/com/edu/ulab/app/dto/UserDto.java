@@ -10,5 +10,9 @@ public class UserDto {
     private String fullName;
     private String title;
     private int age;
+    /**
+     * Version the user was read at, for an update the version it is based on, {@code null} for any.
+     */
+    private Long version;
     private List<BookDto> books;
 }
@@ -1,14 +1,18 @@
 package com.edu.ulab.app.entity;
 
 
+import com.edu.ulab.app.utility.BlockSequenceGenerator;
+import com.edu.ulab.app.utility.IdGenerator;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Version;
 
 @Entity
 @Data
@@ -16,10 +20,17 @@ import javax.persistence.Id;
 @AllArgsConstructor
 public class Book {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "book-id")
+    @GenericGenerator(name = "book-id", strategy = "com.edu.ulab.app.utility.BlockSequenceGenerator",
+            parameters = @Parameter(name = BlockSequenceGenerator.SEQUENCE, value = IdGenerator.BOOK_SEQUENCE))
     private Long id;
     private Long userId;
     private String title;
     private String author;
     private long pageCount;
+    /**
+     * Bumped by every update, updates only apply to the version they read.
+     */
+    @Version
+    private long version;
 }
@@ -1,14 +1,18 @@
 package com.edu.ulab.app.entity;
 
 
+import com.edu.ulab.app.utility.BlockSequenceGenerator;
+import com.edu.ulab.app.utility.IdGenerator;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Version;
 
 
 @Entity
@@ -17,9 +21,16 @@ import javax.persistence.Id;
 @AllArgsConstructor
 public class Person {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "person-id")
+    @GenericGenerator(name = "person-id", strategy = "com.edu.ulab.app.utility.BlockSequenceGenerator",
+            parameters = @Parameter(name = BlockSequenceGenerator.SEQUENCE, value = IdGenerator.PERSON_SEQUENCE))
     private Long id;
     private String fullName;
     private String title;
     private int age;
+    /**
+     * Bumped by every update, updates only apply to the version they read.
+     */
+    @Version
+    private long version;
 }
@@ -0,0 +1,39 @@
+package com.edu.ulab.app.export;
+
+import com.edu.ulab.app.config.ExportProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Nightly export without the web layer:
+ * {@code java -jar app.jar --spring.main.web-application-type=none --app.export.file=users.ndjson.gz --app.export.gzip=true}
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "app.export", name = "file")
+public class ExportCommandLineRunner implements CommandLineRunner {
+
+    private final UserBookExporter userBookExporter;
+    private final ExportProperties exportProperties;
+
+    public ExportCommandLineRunner(UserBookExporter userBookExporter, ExportProperties exportProperties) {
+        this.userBookExporter = userBookExporter;
+        this.exportProperties = exportProperties;
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        Path file = Path.of(exportProperties.getFile());
+        log.info("Export users and books to {}", file.toAbsolutePath());
+        try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024)) {
+            userBookExporter.export(exportProperties.getFormat(), exportProperties.isGzip(), outputStream);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.edu.ulab.app.export;
+
+public enum ExportFormat {
+    /**
+     * One JSON object per user with his books nested.
+     */
+    NDJSON("ndjson", "application/x-ndjson"),
+    /**
+     * One line per user and book pair, users without books get empty book columns.
+     */
+    CSV("csv", "text/csv");
+
+    private final String extension;
+    private final String contentType;
+
+    ExportFormat(String extension, String contentType) {
+        this.extension = extension;
+        this.contentType = contentType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+}
@@ -0,0 +1,373 @@
+package com.edu.ulab.app.export;
+
+import com.edu.ulab.app.config.ExportProperties;
+import com.edu.ulab.app.shard.Sharding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams the PERSON x BOOK join to an output stream.
+ * <p>
+ * Rows come from a forward-only, read-only cursor with {@code app.export.fetch-size} and are written as soon as
+ * they are read, so memory use does not depend on the table sizes. The read-only transaction keeps the cursor
+ * open on databases that only stream results with auto-commit off.
+ * <p>
+ * With several shards the export is a scatter-gather: every shard streams its join on a gather thread into a
+ * small bounded queue, and the rows are merged by user id, so the output is the one of a single database.
+ * A user and its books live on one shard, the rows of a user stay together.
+ */
+@Slf4j
+@Component
+public class UserBookExporter {
+
+    private static final String EXPORT_SQL = """
+            SELECT P.ID AS USER_ID, P.FULL_NAME, P.TITLE AS USER_TITLE, P.AGE,
+                   B.ID AS BOOK_ID, B.TITLE AS BOOK_TITLE, B.AUTHOR, B.PAGE_COUNT
+            FROM PERSON P LEFT JOIN BOOK B ON B.USER_ID = P.ID
+            ORDER BY P.ID, B.ID""";
+    private static final String CSV_HEADER = "user_id,full_name,user_title,age,book_id,book_title,author,page_count\n";
+    private static final int GATHER_CHUNK_ROWS = 256;
+    private static final int GATHER_QUEUE_CHUNKS = 4;
+    private static final List<ExportRow> END_OF_SHARD = List.of();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final ExportProperties exportProperties;
+    private final TransactionTemplate readOnlyTransaction;
+    private final Sharding sharding;
+
+    public UserBookExporter(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper, ExportProperties exportProperties,
+                            PlatformTransactionManager transactionManager, Sharding sharding) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.exportProperties = exportProperties;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.sharding = sharding;
+    }
+
+    /**
+     * @return number of exported rows of the join
+     */
+    public long export(ExportFormat format, boolean gzip, OutputStream outputStream) throws IOException {
+        OutputStream target = gzip ? new GZIPOutputStream(outputStream, 64 * 1024) : outputStream;
+        long rows;
+        try {
+            rows = switch (format) {
+                case NDJSON -> exportNdJson(target);
+                case CSV -> exportCsv(target);
+            };
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if (gzip) {
+            ((GZIPOutputStream) target).finish();
+        }
+        target.flush();
+        log.info("Exported {} rows as {}{}", rows, format, gzip ? " gzip" : "");
+        return rows;
+    }
+
+    private long exportNdJson(OutputStream outputStream) throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+            NdJsonRowWriter rowWriter = new NdJsonRowWriter(generator);
+            long rows = forEachRow(rowWriter);
+            rowWriter.finish();
+            return rows;
+        }
+    }
+
+    private long exportCsv(OutputStream outputStream) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), 64 * 1024);
+        writer.write(CSV_HEADER);
+        long rows = forEachRow(row -> {
+            writer.write(Long.toString(row.userId));
+            writer.write(',');
+            writeCsvValue(writer, row.fullName);
+            writer.write(',');
+            writeCsvValue(writer, row.userTitle);
+            writer.write(',');
+            writer.write(Integer.toString(row.age));
+            writer.write(',');
+            if (row.hasBook) {
+                writer.write(Long.toString(row.bookId));
+                writer.write(',');
+                writeCsvValue(writer, row.bookTitle);
+                writer.write(',');
+                writeCsvValue(writer, row.author);
+                writer.write(',');
+                writer.write(Long.toString(row.pageCount));
+            } else {
+                writer.write(",,,");
+            }
+            writer.write('\n');
+        });
+        writer.flush();
+        return rows;
+    }
+
+    /**
+     * @return number of rows written
+     */
+    private long forEachRow(RowWriter rowWriter) throws IOException {
+        if (sharding.shardCount() > 1) {
+            return gather(rowWriter);
+        }
+        // One row object, refilled for every row of the cursor.
+        ExportRow row = new ExportRow();
+        long[] rows = {0};
+        query(rs -> {
+            row.read(rs);
+            try {
+                rowWriter.write(row);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            rows[0]++;
+        });
+        return rows[0];
+    }
+
+    private long gather(RowWriter rowWriter) throws IOException {
+        List<ShardCursor> cursors = new ArrayList<>();
+        List<Future<?>> producers = new ArrayList<>();
+        for (int shard = 0; shard < sharding.shardCount(); shard++) {
+            ShardCursor cursor = new ShardCursor();
+            cursors.add(cursor);
+            producers.add(sharding.submit(shard, () -> {
+                cursor.produce(this::query);
+                return null;
+            }));
+        }
+        try {
+            PriorityQueue<ShardCursor> heads = new PriorityQueue<>(Comparator.comparingLong(cursor -> cursor.head().userId));
+            for (ShardCursor cursor : cursors) {
+                if (cursor.advance()) {
+                    heads.add(cursor);
+                }
+            }
+            long rows = 0;
+            while (!heads.isEmpty()) {
+                ShardCursor cursor = heads.poll();
+                long userId = cursor.head().userId;
+                boolean more;
+                do {
+                    rowWriter.write(cursor.head());
+                    rows++;
+                    more = cursor.advance();
+                } while (more && cursor.head().userId == userId);
+                if (more) {
+                    heads.add(cursor);
+                }
+            }
+            return rows;
+        } finally {
+            // Stops the shards still streaming when the export fails.
+            producers.forEach(producer -> producer.cancel(true));
+        }
+    }
+
+    private void query(RowCallbackHandler handler) {
+        readOnlyTransaction.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(EXPORT_SQL,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(exportProperties.getFetchSize());
+            return ps;
+        }, handler));
+    }
+
+    private static void writeCsvValue(Writer writer, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        boolean quote = value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    private interface RowWriter {
+        void write(ExportRow row) throws IOException;
+    }
+
+    /**
+     * One row of the join.
+     */
+    private static final class ExportRow {
+        private long userId;
+        private String fullName;
+        private String userTitle;
+        private int age;
+        private boolean hasBook;
+        private long bookId;
+        private String bookTitle;
+        private String author;
+        private long pageCount;
+
+        void read(ResultSet rs) throws SQLException {
+            userId = rs.getLong("USER_ID");
+            fullName = rs.getString("FULL_NAME");
+            userTitle = rs.getString("USER_TITLE");
+            age = rs.getInt("AGE");
+            bookId = rs.getLong("BOOK_ID");
+            hasBook = !rs.wasNull();
+            bookTitle = rs.getString("BOOK_TITLE");
+            author = rs.getString("AUTHOR");
+            pageCount = rs.getLong("PAGE_COUNT");
+        }
+    }
+
+    /**
+     * Rows of one shard handed from its gather thread to the merging thread in chunks.
+     */
+    private static final class ShardCursor {
+        private final BlockingQueue<List<ExportRow>> chunks = new ArrayBlockingQueue<>(GATHER_QUEUE_CHUNKS);
+        private volatile RuntimeException failure;
+        private List<ExportRow> filling = new ArrayList<>(GATHER_CHUNK_ROWS);
+        private List<ExportRow> chunk = List.of();
+        private int index;
+
+        /**
+         * Runs on the gather thread, in the scope of the shard.
+         */
+        void produce(Consumer<RowCallbackHandler> query) {
+            try {
+                query.accept(rs -> {
+                    ExportRow row = new ExportRow();
+                    row.read(rs);
+                    filling.add(row);
+                    if (filling.size() == GATHER_CHUNK_ROWS) {
+                        put(filling);
+                        filling = new ArrayList<>(GATHER_CHUNK_ROWS);
+                    }
+                });
+                if (!filling.isEmpty()) {
+                    put(filling);
+                }
+            } catch (RuntimeException e) {
+                failure = e;
+            } finally {
+                try {
+                    chunks.put(END_OF_SHARD);
+                } catch (InterruptedException e) {
+                    // Cancelled, nobody reads any more.
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        private void put(List<ExportRow> rows) {
+            try {
+                chunks.put(rows);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Export cancelled", e);
+            }
+        }
+
+        /**
+         * @return whether there is a {@link #head()} row
+         */
+        boolean advance() {
+            if (++index < chunk.size()) {
+                return true;
+            }
+            try {
+                chunk = chunks.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Export interrupted", e);
+            }
+            index = 0;
+            if (chunk == END_OF_SHARD) {
+                if (failure != null) {
+                    throw failure;
+                }
+                return false;
+            }
+            return true;
+        }
+
+        ExportRow head() {
+            return chunk.get(index);
+        }
+    }
+
+    /**
+     * Rows arrive ordered by user, so a user object is closed as soon as the next user starts.
+     */
+    private static final class NdJsonRowWriter implements RowWriter {
+        private final JsonGenerator generator;
+        private long currentUserId;
+        private boolean userOpen;
+
+        private NdJsonRowWriter(JsonGenerator generator) {
+            this.generator = generator;
+        }
+
+        @Override
+        public void write(ExportRow row) throws IOException {
+            if (!userOpen || row.userId != currentUserId) {
+                finish();
+                generator.writeStartObject();
+                generator.writeNumberField("id", row.userId);
+                generator.writeStringField("fullName", row.fullName);
+                generator.writeStringField("title", row.userTitle);
+                generator.writeNumberField("age", row.age);
+                generator.writeArrayFieldStart("books");
+                currentUserId = row.userId;
+                userOpen = true;
+            }
+            if (row.hasBook) {
+                generator.writeStartObject();
+                generator.writeNumberField("id", row.bookId);
+                generator.writeStringField("title", row.bookTitle);
+                generator.writeStringField("author", row.author);
+                generator.writeNumberField("pageCount", row.pageCount);
+                generator.writeEndObject();
+            }
+        }
+
+        void finish() throws IOException {
+            if (userOpen) {
+                generator.writeEndArray();
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+                userOpen = false;
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.edu.ulab.app.export;
+
+import com.edu.ulab.app.shard.Sharding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Writes the responses of the user read endpoints straight from the result set, the way {@link UserBookExporter}
+ * writes the export. No entity, dto or response object is built per row, only the generator buffer is kept.
+ * <p>
+ * The output matches what Jackson writes for {@code UserBookResponse} and {@code BookPageResponse} with the same
+ * {@link ObjectMapper}: same field order, {@code null} fields written, books ordered by id.
+ */
+@Component
+public class UserBookJsonWriter {
+
+    private static final String USER_WITH_BOOK_IDS_SQL = """
+            SELECT P.ID AS USER_ID, P.VERSION, B.ID AS BOOK_ID
+            FROM PERSON P LEFT JOIN BOOK B ON B.USER_ID = P.ID
+            WHERE P.ID = ?
+            ORDER BY B.ID""";
+    private static final String BOOK_PAGE_SQL =
+            "SELECT ID, TITLE, AUTHOR, PAGE_COUNT, VERSION FROM BOOK WHERE USER_ID = ? AND ID > ? ORDER BY ID LIMIT ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final Sharding sharding;
+
+    public UserBookJsonWriter(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper, Sharding sharding) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.sharding = sharding;
+    }
+
+    /**
+     * Writes {@code {"userId":..,"version":..,"booksIdList":[..]}}. Nothing is written for an unknown user, so the caller can
+     * still answer with an error.
+     *
+     * @return whether the user exists
+     */
+    public boolean writeUserWithBooks(long userId, OutputStream outputStream) throws IOException {
+        try {
+            return Boolean.TRUE.equals(sharding.onUser(userId, () -> jdbcTemplate.query(USER_WITH_BOOK_IDS_SQL, rs -> {
+                if (!rs.next()) {
+                    return false;
+                }
+                try (JsonGenerator generator = createGenerator(outputStream)) {
+                    generator.writeStartObject();
+                    generator.writeNumberField("userId", rs.getLong("USER_ID"));
+                    generator.writeNumberField("version", rs.getLong("VERSION"));
+                    generator.writeArrayFieldStart("booksIdList");
+                    do {
+                        long bookId = rs.getLong("BOOK_ID");
+                        if (!rs.wasNull()) {
+                            generator.writeNumber(bookId);
+                        }
+                    } while (rs.next());
+                    generator.writeEndArray();
+                    generator.writeEndObject();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return true;
+            }, userId)));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Writes {@code {"userId":..,"books":[..],"nextAfterId":..}}, {@code nextAfterId} is {@code null} on a page
+     * shorter than {@code limit}.
+     */
+    public void writeBookPage(long userId, long afterId, int limit, OutputStream outputStream) throws IOException {
+        try (JsonGenerator generator = createGenerator(outputStream)) {
+            generator.writeStartObject();
+            generator.writeNumberField("userId", userId);
+            generator.writeArrayFieldStart("books");
+            long[] page = {0, 0};
+            sharding.onUser(userId, () -> {
+                jdbcTemplate.query(BOOK_PAGE_SQL, rs -> {
+                    page[1] = writeBook(generator, rs);
+                    page[0]++;
+                }, userId, afterId, limit);
+                return null;
+            });
+            generator.writeEndArray();
+            generator.writeFieldName("nextAfterId");
+            if (page[0] < limit) {
+                generator.writeNull();
+            } else {
+                generator.writeNumber(page[1]);
+            }
+            generator.writeEndObject();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * @return id of the written book
+     */
+    private static long writeBook(JsonGenerator generator, ResultSet rs) throws SQLException {
+        try {
+            long id = rs.getLong("ID");
+            generator.writeStartObject();
+            generator.writeNumberField("id", id);
+            generator.writeStringField("title", rs.getString("TITLE"));
+            generator.writeStringField("author", rs.getString("AUTHOR"));
+            generator.writeNumberField("pageCount", rs.getLong("PAGE_COUNT"));
+            generator.writeNumberField("version", rs.getLong("VERSION"));
+            generator.writeEndObject();
+            return id;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private JsonGenerator createGenerator(OutputStream outputStream) throws IOException {
+        return objectMapper.getFactory()
+                .createGenerator(outputStream)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+}
@@ -1,98 +1,295 @@
 package com.edu.ulab.app.facade;
 
+import com.edu.ulab.app.cache.UserBookCache;
+import com.edu.ulab.app.config.BookQueryProperties;
+import com.edu.ulab.app.config.BookSearchProperties;
+import com.edu.ulab.app.config.ImportProperties;
 import com.edu.ulab.app.dto.BookDto;
 import com.edu.ulab.app.dto.UserDto;
+import com.edu.ulab.app.exception.ServiceException;
+import com.edu.ulab.app.export.ExportFormat;
+import com.edu.ulab.app.export.UserBookExporter;
+import com.edu.ulab.app.export.UserBookJsonWriter;
+import com.edu.ulab.app.jdbc.ReplicaRead;
 import com.edu.ulab.app.mapper.BookMapper;
 import com.edu.ulab.app.mapper.UserMapper;
+import com.edu.ulab.app.metrics.Monitored;
+import com.edu.ulab.app.search.BookSearchIndex;
 import com.edu.ulab.app.service.BookService;
+import com.edu.ulab.app.service.GroupCommitWriter;
+import com.edu.ulab.app.service.ImportService;
 import com.edu.ulab.app.service.UserService;
-import com.edu.ulab.app.service.impl.BookServiceImpl;
-import com.edu.ulab.app.service.impl.BookServiceImplTemplate;
-import com.edu.ulab.app.service.impl.UserServiceImpl;
-import com.edu.ulab.app.service.impl.UserServiceImplTemplate;
+import com.edu.ulab.app.service.backend.ServiceBackends;
+import com.edu.ulab.app.shard.Sharding;
+import com.edu.ulab.app.stats.LibraryStats;
+import com.edu.ulab.app.utility.ExceptionUtility;
 import com.edu.ulab.app.web.request.UserBookRequest;
+import com.edu.ulab.app.web.response.AgeGroupResponse;
+import com.edu.ulab.app.web.response.AuthorStatsResponse;
+import com.edu.ulab.app.web.response.BookHitResponse;
+import com.edu.ulab.app.web.response.BookPageResponse;
+import com.edu.ulab.app.web.response.BookResponse;
+import com.edu.ulab.app.web.response.BookSearchResponse;
+import com.edu.ulab.app.web.response.ImportBatchResponse;
+import com.edu.ulab.app.web.response.ImportResponse;
+import com.edu.ulab.app.web.response.StatsResponse;
 import com.edu.ulab.app.web.response.UserBookResponse;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Component
+@Monitored(layer = Monitored.FACADE)
 public class UserDataFacade {
     private final UserService userService;
     private final BookService bookService;
     private final UserMapper userMapper;
     private final BookMapper bookMapper;
+    private final UserBookCache userBookCache;
+    private final BookQueryProperties bookQueryProperties;
+    private final ExceptionUtility exceptionUtility;
+    private final ImportService importService;
+    private final ImportProperties importProperties;
+    private final ObjectMapper objectMapper;
+    private final UserBookExporter userBookExporter;
+    private final UserBookJsonWriter userBookJsonWriter;
+    private final Sharding sharding;
+    private final GroupCommitWriter groupCommitWriter;
+    private final BookSearchIndex bookSearchIndex;
+    private final BookSearchProperties bookSearchProperties;
+    private final LibraryStats libraryStats;
+    private final TransactionTemplate readOnlyTransaction;
 
     public UserDataFacade(
-            UserServiceImpl userService,
-                          BookServiceImpl bookService,
-//            UserServiceImplTemplate userService,
-//            BookServiceImplTemplate bookService,
+            ServiceBackends serviceBackends,
             UserMapper userMapper,
-            BookMapper bookMapper) {
-        this.userService = userService;
-        this.bookService = bookService;
+            BookMapper bookMapper,
+            UserBookCache userBookCache,
+            BookQueryProperties bookQueryProperties,
+            ExceptionUtility exceptionUtility,
+            ImportProperties importProperties,
+            ObjectMapper objectMapper,
+            UserBookExporter userBookExporter,
+            UserBookJsonWriter userBookJsonWriter,
+            Sharding sharding,
+            GroupCommitWriter groupCommitWriter,
+            BookSearchIndex bookSearchIndex,
+            BookSearchProperties bookSearchProperties,
+            LibraryStats libraryStats,
+            PlatformTransactionManager transactionManager) {
+        this.userService = serviceBackends.userService();
+        this.bookService = serviceBackends.bookService();
         this.userMapper = userMapper;
         this.bookMapper = bookMapper;
+        this.userBookCache = userBookCache;
+        this.bookQueryProperties = bookQueryProperties;
+        this.exceptionUtility = exceptionUtility;
+        this.importService = serviceBackends.importService();
+        this.importProperties = importProperties;
+        this.objectMapper = objectMapper;
+        this.userBookExporter = userBookExporter;
+        this.userBookJsonWriter = userBookJsonWriter;
+        this.sharding = sharding;
+        this.groupCommitWriter = groupCommitWriter;
+        this.bookSearchIndex = bookSearchIndex;
+        this.bookSearchProperties = bookSearchProperties;
+        this.libraryStats = libraryStats;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.readOnlyTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
     }
 
     public UserBookResponse createUserWithBooks(UserBookRequest userBookRequest) {
-        log.info("Got user book create request: {}", userBookRequest);
+        log.debug("Got user book create request: {}", userBookRequest);
         UserDto userDto = userMapper.userRequestToUserDto(userBookRequest.getUserRequest());
-        log.info("Mapped user request: {}", userDto);
+        log.debug("Mapped user request: {}", userDto);
+        if (groupCommitWriter.isEnabled()) {
+            return createUserWithBooksGrouped(userDto, userBookRequest);
+        }
 
         UserDto createdUser = userService.createUser(userDto);
-        log.info("Created user: {}", createdUser);
+        log.info("Created user: {}", createdUser.getId());
 
-        List<Long> bookIdList = userBookRequest.getBookRequests()
+        List<BookDto> bookDtoList = userBookRequest.getBookRequests()
                 .stream()
                 .filter(Objects::nonNull)
                 .map(bookMapper::bookRequestToBookDto)
                 .peek(bookDto -> bookDto.setUserId(createdUser.getId()))
-                .peek(mappedBookDto -> log.info("mapped book: {}", mappedBookDto))
-                .map(bookService::createBook)
-                .peek(createdBook -> log.info("Created book: {}", createdBook))
+                .peek(mappedBookDto -> log.debug("mapped book: {}", mappedBookDto))
+                .collect(Collectors.toList());
+
+        List<BookDto> createdBooks = bookService.createBooks(bookDtoList);
+        List<Long> bookIdList = createdBooks
+                .stream()
+                .peek(createdBook -> log.debug("Created book: {}", createdBook))
                 .map(BookDto::getId)
                 .toList();
-        log.info("Collected book ids: {}", bookIdList);
+        log.debug("Collected book ids: {}", bookIdList);
+        userBookCache.invalidate(createdUser.getId(), bookIdList);
+        bookSearchIndex.putAll(createdBooks);
 
         return UserBookResponse.builder()
                 .userId(createdUser.getId())
+                .version(createdUser.getVersion())
                 .booksIdList(bookIdList)
                 .build();
     }
 
-    public UserBookResponse updateUserWithBooks(UserBookRequest userBookRequest) {
-        UserDto userDto = userMapper.userRequestToUserDto(userBookRequest.getUserRequest());
-        log.info("Get user: {}", userDto);
-
-        userDto = userService.updateUser(userDto);
-        log.info("User successfully updated: {}", userDto);
-
-        UserDto finalUserDto = userDto;
-        List<Long> bookIdList = userBookRequest.getBookRequests().stream()
+    /**
+     * The user and its books are written with those of other requests in one transaction, see {@link GroupCommitWriter}.
+     * The writer bypasses the services, the stats are updated here.
+     */
+    private UserBookResponse createUserWithBooksGrouped(UserDto userDto, UserBookRequest userBookRequest) {
+        userDto.setBooks(userBookRequest.getBookRequests()
+                .stream()
+                .filter(Objects::nonNull)
                 .map(bookMapper::bookRequestToBookDto)
-                .peek(bookDto -> bookDto.setUserId(finalUserDto.getId()))
-                .peek(bookService::updateBook)
-                .peek(book -> log.info("Book successfully updated: {}", book))
+                .collect(Collectors.toList()));
+
+        UserDto createdUser = libraryStats.recording(() -> {
+            UserDto created = groupCommitWriter.createUserWithBooks(userDto);
+            if (libraryStats.isEnabled()) {
+                libraryStats.userWithBooksCreated(created);
+            }
+            return created;
+        });
+        List<Long> bookIdList = createdUser.getBooks()
+                .stream()
                 .map(BookDto::getId)
                 .toList();
+        log.info("Created user: {} with book ids: {}", createdUser.getId(), bookIdList);
+        userBookCache.invalidate(createdUser.getId(), bookIdList);
+        bookSearchIndex.putAll(createdUser.getBooks());
 
         return UserBookResponse.builder()
-                .userId(userDto.getId())
+                .userId(createdUser.getId())
+                .version(createdUser.getVersion())
                 .booksIdList(bookIdList)
                 .build();
     }
 
+    public UserBookResponse updateUserWithBooks(UserBookRequest userBookRequest) {
+        UserDto userDto = userMapper.userRequestToUserDto(userBookRequest.getUserRequest());
+        log.info("Update user: {}", userDto.getId());
+
+        List<BookDto> bookDtoList = userBookRequest.getBookRequests().stream()
+                .map(bookMapper::bookRequestToBookDto)
+                .toList();
+        try {
+            userDto = userService.updateUser(userDto);
+            log.info("User successfully updated: {}", userDto.getId());
+
+            UserDto finalUserDto = userDto;
+            bookDtoList.forEach(bookDto -> bookDto.setUserId(finalUserDto.getId()));
+            List<BookDto> updatedBooks = bookQueryProperties.isDiffUpdate()
+                    ? bookService.updateBooks(userDto.getId(), bookDtoList)
+                    : bookDtoList.stream()
+                            .peek(bookService::updateBook)
+                            .peek(book -> log.debug("Book successfully updated: {}", book))
+                            .toList();
+            List<Long> bookIdList = updatedBooks.stream()
+                    .map(BookDto::getId)
+                    .toList();
+            bookSearchIndex.putAll(updatedBooks);
+
+            return UserBookResponse.builder()
+                    .userId(userDto.getId())
+                    .version(userDto.getVersion())
+                    .booksIdList(bookIdList)
+                    .build();
+        } catch (RuntimeException e) {
+            refreshSearchIndex(userDto.getId());
+            throw e;
+        } finally {
+            // Also on failure: some of the rows may already be changed.
+            userBookCache.invalidate(userDto.getId(), bookDtoList.stream().map(BookDto::getId).toList());
+        }
+    }
+
+    /**
+     * After a failed write some of the books may have changed, the index takes the books of the user as they are now.
+     */
+    private void refreshSearchIndex(Long userId) {
+        if (!bookSearchIndex.isEnabled() || userId == null) {
+            return;
+        }
+        try {
+            bookSearchIndex.putAll(bookService.getBookByUserId(userId));
+        } catch (RuntimeException e) {
+            log.warn("Search index of the books of user {} not refreshed : {}", userId, e.getMessage());
+        }
+    }
+
+    @ReplicaRead
     public UserBookResponse getUserWithBooks(Long userId) {
+        return getUserWithBooks(userId, Long.MIN_VALUE);
+    }
+
+    /**
+     * Like {@link #getUserWithBooks(Long)}, skipping a cached response older than the given change version.
+     */
+    @ReplicaRead
+    public UserBookResponse getUserWithBooks(Long userId, long minChangeVersion) {
+        return userBookCache.get(userId, minChangeVersion, () -> loadUserWithBooks(userId),
+                () -> userService.getChangeVersion(userId));
+    }
+
+    /**
+     * Reads only the user row, see {@link UserService#getChangeVersion(Long)}.
+     *
+     * @return the version, {@code null} for an unknown user
+     */
+    @ReplicaRead
+    public Long getUserChangeVersion(Long userId) {
+        return userService.getChangeVersion(userId);
+    }
+
+    /**
+     * Same JSON as {@link #getUserWithBooks} without building the user, its books and the response.
+     */
+    @ReplicaRead
+    public void writeUserWithBooks(Long userId, OutputStream outputStream) throws IOException {
+        exceptionUtility.throwServiceExceptionIfNull(userId, "Get user failed : id is null");
+        if (!userBookJsonWriter.writeUserWithBooks(userId, outputStream)) {
+            // The answer of the services for an unknown user.
+            exceptionUtility.throwServiceException(String.format("Get user with id = %s failed", userId));
+        }
+    }
+
+    /**
+     * The change version is read before the user and the books in one read-only transaction, so all of them come
+     * from the same connection and the same snapshot, whether that is the primary or a replica.
+     */
+    private UserBookResponse loadUserWithBooks(Long userId) {
+        return sharding.onUser(userId, () -> readOnlyTransaction.execute(status -> {
+            Long changeVersion = userService.getChangeVersion(userId);
+            UserBookResponse response = loadUserWithBookIds(userId);
+            response.setChangeVersion(changeVersion);
+            return response;
+        }));
+    }
+
+    private UserBookResponse loadUserWithBookIds(Long userId) {
         UserDto user = userService.getUserById(userId);
-        log.info("Get user: {}", user);
+        log.info("Get user: {}", user.getId());
 
         List<BookDto> books = bookService.getBookByUserId(userId);
-        log.info("User has : {} books", books.size());
+        log.debug("User has : {} books", books.size());
 
         user.setBooks(books);
 
@@ -100,25 +297,246 @@ public class UserDataFacade {
                 .stream()
                 .map(BookDto::getId)
                 .toList();
-        log.info("Collected book ids: {}", bookIdList);
+        log.debug("Collected book ids: {}", bookIdList);
 
         return UserBookResponse.builder()
                 .userId(user.getId())
+                .version(user.getVersion())
                 .booksIdList(bookIdList)
                 .build();
     }
 
-    public void deleteUserWithBooks(Long userId) {
-        userService.deleteUserById(userId);
-        log.info("Delete user: {}", userId);
+    @ReplicaRead
+    public BookPageResponse getUserBooksPage(Long userId, Long afterId, Integer limit) {
+        int pageLimit = pageLimit(limit);
 
-        List<BookDto> books = bookService.getBookByUserId(userId);
-        long deletedBooks = books.stream()
+        List<BookResponse> books = bookService.getBookPageByUserId(userId, afterId == null ? 0 : afterId, pageLimit)
+                .stream()
+                .map(bookMapper::bookDtoToBookResponse)
+                .toList();
+        log.info("User {} books page has : {} books", userId, books.size());
+
+        return BookPageResponse.builder()
+                .userId(userId)
+                .books(books)
+                .nextAfterId(books.size() < pageLimit ? null : books.get(books.size() - 1).getId())
+                .build();
+    }
+
+    /**
+     * Same JSON as {@link #getUserBooksPage} without building the books and the response.
+     */
+    @ReplicaRead
+    public void writeUserBooksPage(Long userId, Long afterId, Integer limit, OutputStream outputStream) throws IOException {
+        int pageLimit = pageLimit(limit);
+        exceptionUtility.throwServiceExceptionIfNull(userId, "Get book page by userId failed : userId is null");
+        userBookJsonWriter.writeBookPage(userId, afterId == null ? 0 : afterId, pageLimit, outputStream);
+    }
+
+    private int pageLimit(Integer limit) {
+        int pageLimit = limit == null ? bookQueryProperties.getPageDefaultLimit() : limit;
+        exceptionUtility.throwServiceExceptionIf(pageLimit,
+                value -> value < 1 || value > bookQueryProperties.getPageMaxLimit(),
+                String.format("Get user books failed : limit must be between 1 and %s", bookQueryProperties.getPageMaxLimit()));
+        return pageLimit;
+    }
+
+    @ReplicaRead
+    public void streamUserBooks(Long userId, Consumer<BookResponse> consumer) {
+        bookService.streamBookByUserId(userId, bookDto -> consumer.accept(bookMapper.bookDtoToBookResponse(bookDto)));
+    }
+
+    /**
+     * Reads the NDJSON stream record by record and writes every {@code app.import.batch-size} records in their own
+     * transaction. The next record is only read once the previous batch is written, so at most one batch is held
+     * in memory and a slow database slows down the upload instead of buffering it.
+     */
+    public ImportResponse importUsersWithBooks(InputStream ndjson) {
+        int batchSize = importProperties.getBatchSize();
+        List<ImportBatchResponse> batches = new ArrayList<>();
+        List<UserDto> batch = new ArrayList<>(batchSize);
+        List<String> failures = new ArrayList<>();
+        long record = 0;
+        int batchRecords = 0;
+
+        try (MappingIterator<UserBookRequest> records = objectMapper.readerFor(UserBookRequest.class).readValues(ndjson)) {
+            while (true) {
+                UserBookRequest userBookRequest;
+                try {
+                    if (!records.hasNextValue()) {
+                        break;
+                    }
+                    userBookRequest = records.nextValue();
+                } catch (IOException | RuntimeException e) {
+                    // The stream can not be resynchronized after a malformed record, the rest of it is dropped.
+                    failures.add(String.format("Record %s : %s, import stopped", record + 1, e.getMessage()));
+                    break;
+                }
+                record++;
+                batchRecords++;
+                if (userBookRequest.getUserRequest() == null) {
+                    failures.add(String.format("Record %s : userRequest is missing", record));
+                } else {
+                    batch.add(toUserDto(userBookRequest));
+                }
+                if (batchRecords == batchSize) {
+                    batches.add(importBatch(batches.size() + 1, record - batchRecords + 1, batchRecords, batch, failures));
+                    batch = new ArrayList<>(batchSize);
+                    failures = new ArrayList<>();
+                    batchRecords = 0;
+                }
+            }
+        } catch (IOException e) {
+            failures.add(String.format("Record %s : %s, import stopped", record + 1, e.getMessage()));
+        }
+        if (batchRecords > 0 || !failures.isEmpty()) {
+            batches.add(importBatch(batches.size() + 1, record - batchRecords + 1, batchRecords, batch, failures));
+        }
+
+        ImportResponse response = ImportResponse.builder()
+                .records(record)
+                .createdUsers(batches.stream().mapToLong(b -> b.getUserIds().length).sum())
+                .createdBooks(batches.stream().mapToLong(ImportBatchResponse::getCreatedBooks).sum())
+                .failures(batches.stream().mapToLong(b -> b.getFailures().size()).sum())
+                .batches(batches)
+                .build();
+        log.info("Imported {} records in {} batches: {} users, {} books, {} failures", response.getRecords(),
+                batches.size(), response.getCreatedUsers(), response.getCreatedBooks(), response.getFailures());
+        return response;
+    }
+
+    private UserDto toUserDto(UserBookRequest userBookRequest) {
+        UserDto userDto = userMapper.userRequestToUserDto(userBookRequest.getUserRequest());
+        userDto.setId(null);
+        userDto.setBooks(userBookRequest.getBookRequests() == null
+                ? List.of()
+                : userBookRequest.getBookRequests().stream()
                 .filter(Objects::nonNull)
-                .map(bookDto -> bookDto.getId())
-                .peek(bookService::deleteBookById)
-                .count();
+                .map(bookMapper::bookRequestToBookDto)
+                .toList());
+        return userDto;
+    }
+
+    /**
+     * A failing batch is reported in its response, the next batches are still imported.
+     */
+    private ImportBatchResponse importBatch(int batchNumber, long firstRecord, int records,
+                                            List<UserDto> batch, List<String> failures) {
+        long[] userIds = new long[0];
+        int createdBooks = 0;
+        List<UserDto> imported = List.of();
+        try {
+            imported = importService.importUsersWithBooks(batch);
+            userIds = imported.stream()
+                    .mapToLong(UserDto::getId)
+                    .toArray();
+            createdBooks = batch.stream().mapToInt(userDto -> userDto.getBooks().size()).sum();
+        } catch (RuntimeException e) {
+            failures.add(String.format("Batch %s rolled back : %s", batchNumber, e.getMessage()));
+        }
+        try {
+            imported.forEach(userDto -> bookSearchIndex.putAll(userDto.getBooks()));
+        } catch (RuntimeException e) {
+            // The batch is committed, only the search misses its books until they are written again.
+            log.warn("Search index of import batch {} not updated : {}", batchNumber, e.getMessage());
+        }
+        log.info("Import batch {} : {} users, {} books, {} failures", batchNumber, userIds.length, createdBooks, failures.size());
+
+        return ImportBatchResponse.builder()
+                .batch(batchNumber)
+                .firstRecord(firstRecord)
+                .records(records)
+                .userIds(userIds)
+                .createdBooks(createdBooks)
+                .failures(failures)
+                .build();
+    }
+
+    @ReplicaRead
+    public long exportUsersWithBooks(ExportFormat format, boolean gzip, OutputStream outputStream) throws IOException {
+        return userBookExporter.export(format, gzip, outputStream);
+    }
+
+    /**
+     * Answered by the {@link BookSearchIndex} of this node, the database is not queried.
+     */
+    public BookSearchResponse searchBooks(String query, Integer limit) {
+        if (!bookSearchIndex.isEnabled()) {
+            throw new ServiceException("Search books failed : search is disabled", HttpStatus.NOT_FOUND);
+        }
+        exceptionUtility.throwServiceExceptionIfNull(query, "Search books failed : query is null");
+        int searchLimit = limit == null ? bookSearchProperties.getDefaultLimit() : limit;
+        exceptionUtility.throwServiceExceptionIf(searchLimit,
+                value -> value < 1 || value > bookSearchProperties.getMaxLimit(),
+                String.format("Search books failed : limit must be between 1 and %s", bookSearchProperties.getMaxLimit()));
+
+        List<BookHitResponse> books = bookSearchIndex.search(query, searchLimit)
+                .stream()
+                .map(hit -> BookHitResponse.builder()
+                        .id(hit.bookId())
+                        .userId(hit.userId())
+                        .title(hit.title())
+                        .author(hit.author())
+                        .score(hit.score())
+                        .build())
+                .toList();
+        log.info("Search books '{}' found {} books", query, books.size());
+        return BookSearchResponse.builder()
+                .query(query)
+                .books(books)
+                .build();
+    }
+
+    /**
+     * Answered by the {@link LibraryStats} of this node, the database is not queried.
+     */
+    public StatsResponse getLibraryStats() {
+        if (!libraryStats.isEnabled()) {
+            throw new ServiceException("Get stats failed : stats are disabled", HttpStatus.NOT_FOUND);
+        }
+        LibraryStats.Snapshot snapshot = libraryStats.snapshot();
+        List<AuthorStatsResponse> topAuthors = snapshot.topAuthors()
+                .stream()
+                .map(author -> AuthorStatsResponse.builder()
+                        .author(author.author())
+                        .books(author.books())
+                        .build())
+                .toList();
+        List<AgeGroupResponse> usersByAge = new ArrayList<>(LibraryStats.AGE_GROUPS);
+        for (int group = 0; group < LibraryStats.AGE_GROUPS; group++) {
+            usersByAge.add(AgeGroupResponse.builder()
+                    .fromAge(group * 10)
+                    .toAge(group < LibraryStats.AGE_GROUPS - 1 ? (group + 1) * 10 : null)
+                    .users(snapshot.usersByAgeGroup()[group])
+                    .build());
+        }
+        long users = snapshot.users();
+        return StatsResponse.builder()
+                .users(users)
+                .books(snapshot.books())
+                .pages(snapshot.pages())
+                .booksPerUser(users > 0 ? (double) snapshot.books() / users : 0)
+                .pagesPerUser(users > 0 ? (double) snapshot.pages() / users : 0)
+                .topAuthors(topAuthors)
+                .usersByAge(usersByAge)
+                .build();
+    }
+
+    public void deleteUserWithBooks(Long userId) {
+        try {
+            // The books are deleted on the shard of the user, their ids may predate the sharding.
+            sharding.onUser(userId, () -> {
+                userService.deleteUserById(userId);
+                log.info("Delete user: {}", userId);
+
+                List<BookDto> deletedBooks = bookService.deleteBooksByUserId(userId);
+                deletedBooks.forEach(book -> bookSearchIndex.remove(book.getId()));
 
-        log.info("Delete : {} books", deletedBooks);
+                log.info("Delete : {} books", deletedBooks.size());
+                return null;
+            });
+        } finally {
+            userBookCache.invalidate(userId, List.of());
+        }
     }
 }
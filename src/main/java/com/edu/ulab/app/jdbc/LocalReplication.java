@@ -0,0 +1,273 @@
+package com.edu.ulab.app.jdbc;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statement based replication between local databases, standing in for the replication of a real database.
+ * <p>
+ * {@link #capture(DataSource)} wraps the primary: INSERT, UPDATE, DELETE and MERGE statements are kept with their
+ * parameters per connection and published as one unit when the transaction commits, or right away in auto-commit.
+ * Every replica applies the units in commit order, each in its own transaction, {@code lag} after the commit.
+ * Reads are not wrapped. Statements computing values on their own, like {@code NEXT VALUE FOR}, make the replicas
+ * diverge; the services insert explicit ids.
+ * Replica backlogs and failed units are published as {@code app.replication.pending{replica}} and
+ * {@code app.replication.failures{replica}}.
+ */
+@Slf4j
+public class LocalReplication implements MeterBinder, AutoCloseable {
+
+    private final List<Target> targets = new ArrayList<>();
+    private final long lagNanos;
+    /**
+     * Held from a commit on the primary to its publication, so units are published in commit order.
+     */
+    private final Object commitOrder = new Object();
+
+    public LocalReplication(List<Replica> replicas, Duration lag) {
+        this.lagNanos = lag.toNanos();
+        for (Replica replica : replicas) {
+            ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+                Thread thread = Executors.defaultThreadFactory().newThread(runnable);
+                thread.setName("replication-" + replica.getName());
+                thread.setDaemon(true);
+                return thread;
+            });
+            targets.add(new Target(replica, executor, new LongAdder()));
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry meterRegistry) {
+        for (Target target : targets) {
+            FunctionCounter.builder("app.replication.failures", target.failures, LongAdder::sum)
+                    .tag("replica", target.replica.getName())
+                    .register(meterRegistry);
+            Gauge.builder("app.replication.pending", target.executor, e -> e.getQueue().size())
+                    .tag("replica", target.replica.getName())
+                    .register(meterRegistry);
+        }
+    }
+
+    public DataSource capture(DataSource primary) {
+        return new DelegatingDataSource(primary) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                return proxy(Connection.class, new ConnectionHandler(super.getConnection()));
+            }
+
+            @Override
+            public Connection getConnection(String username, String password) throws SQLException {
+                return proxy(Connection.class, new ConnectionHandler(super.getConnection(username, password)));
+            }
+        };
+    }
+
+    private void publish(List<Change> unit) {
+        List<Change> changes = List.copyOf(unit);
+        for (Target target : targets) {
+            target.executor.schedule(() -> target.apply(changes), lagNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public void close() {
+        targets.forEach(target -> target.executor.shutdownNow());
+    }
+
+    static boolean isWrite(String sql) {
+        int start = 0;
+        while (start < sql.length() && Character.isWhitespace(sql.charAt(start))) {
+            start++;
+        }
+        return sql.regionMatches(true, start, "INSERT", 0, 6)
+                || sql.regionMatches(true, start, "UPDATE", 0, 6)
+                || sql.regionMatches(true, start, "DELETE", 0, 6)
+                || sql.regionMatches(true, start, "MERGE", 0, 5);
+    }
+
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(LocalReplication.class.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    /**
+     * A statement with its parameters by index, index 0 unused.
+     */
+    private record Change(String sql, Object[] parameters) {
+    }
+
+    private record Target(Replica replica, ScheduledThreadPoolExecutor executor, LongAdder failures) {
+
+        void apply(List<Change> changes) {
+            try (Connection connection = replica.getConnection()) {
+                connection.setAutoCommit(false);
+                try {
+                    for (Change change : changes) {
+                        try (PreparedStatement statement = connection.prepareStatement(change.sql())) {
+                            for (int i = 1; i < change.parameters().length; i++) {
+                                statement.setObject(i, change.parameters()[i]);
+                            }
+                            statement.executeUpdate();
+                        }
+                    }
+                    connection.commit();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                }
+            } catch (SQLException e) {
+                failures.increment();
+                log.warn("Replication to {} failed, the replica diverges : {}", replica, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Collects the changes of the current transaction.
+     */
+    private final class ConnectionHandler implements InvocationHandler {
+
+        private final Connection target;
+        private final List<Change> pending = new ArrayList<>();
+        private boolean autoCommit;
+
+        private ConnectionHandler(Connection target) throws SQLException {
+            this.target = target;
+            this.autoCommit = target.getAutoCommit();
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            // Turning auto-commit on commits the open transaction.
+            boolean commits = "commit".equals(name) || "setAutoCommit".equals(name) && (Boolean) args[0] && !autoCommit;
+            if (commits && !pending.isEmpty()) {
+                synchronized (commitOrder) {
+                    Object result = LocalReplication.invoke(target, method, args);
+                    flush();
+                    autoCommit = "setAutoCommit".equals(name) || autoCommit;
+                    return result;
+                }
+            }
+            Object result = LocalReplication.invoke(target, method, args);
+            switch (name) {
+                case "rollback", "close" -> pending.clear();
+                case "setAutoCommit" -> autoCommit = (Boolean) args[0];
+                case "prepareStatement" -> {
+                    String sql = (String) args[0];
+                    if (isWrite(sql)) {
+                        return proxy(PreparedStatement.class, new StatementHandler(this, (Statement) result, sql));
+                    }
+                }
+                case "createStatement" -> {
+                    return proxy(Statement.class, new StatementHandler(this, (Statement) result, null));
+                }
+                default -> {
+                }
+            }
+            return result;
+        }
+
+        void executed(List<Change> changes) {
+            pending.addAll(changes);
+            if (autoCommit) {
+                flush();
+            }
+        }
+
+        private void flush() {
+            if (!pending.isEmpty()) {
+                publish(pending);
+                pending.clear();
+            }
+        }
+    }
+
+    /**
+     * Keeps the parameters set on a prepared write and the batch entries, plain statements keep their SQL.
+     */
+    private static final class StatementHandler implements InvocationHandler {
+
+        private final ConnectionHandler connection;
+        private final Statement target;
+        private final String preparedSql;
+        private Object[] parameters = new Object[8];
+        private int parameterCount;
+        private final List<Change> batch = new ArrayList<>();
+
+        private StatementHandler(ConnectionHandler connection, Statement target, String preparedSql) {
+            this.connection = connection;
+            this.target = target;
+            this.preparedSql = preparedSql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (preparedSql != null && name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+                parameter(index, "setNull".equals(name) ? null : args[1]);
+            } else if ("clearParameters".equals(name)) {
+                Arrays.fill(parameters, null);
+                parameterCount = 0;
+            } else if ("clearBatch".equals(name)) {
+                batch.clear();
+            }
+            Object result = LocalReplication.invoke(target, method, args);
+            if ("addBatch".equals(name)) {
+                if (args == null || args.length == 0) {
+                    batch.add(new Change(preparedSql, Arrays.copyOf(parameters, parameterCount + 1)));
+                } else if (isWrite((String) args[0])) {
+                    batch.add(new Change((String) args[0], new Object[0]));
+                }
+            } else if ("executeBatch".equals(name) || "executeLargeBatch".equals(name)) {
+                connection.executed(List.copyOf(batch));
+                batch.clear();
+            } else if (name.startsWith("execute")) {
+                if (args == null || args.length == 0) {
+                    connection.executed(List.of(new Change(preparedSql, Arrays.copyOf(parameters, parameterCount + 1))));
+                } else if (isWrite((String) args[0])) {
+                    connection.executed(List.of(new Change((String) args[0], new Object[0])));
+                }
+            }
+            return result;
+        }
+
+        private void parameter(int index, Object value) {
+            if (index >= parameters.length) {
+                parameters = Arrays.copyOf(parameters, Math.max(index + 1, parameters.length * 2));
+            }
+            parameters[index] = value;
+            parameterCount = Math.max(parameterCount, index);
+        }
+    }
+}
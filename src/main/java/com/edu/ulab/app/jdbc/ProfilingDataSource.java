@@ -0,0 +1,214 @@
+package com.edu.ulab.app.jdbc;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
+/**
+ * Adds every statement executed through the pool to the {@link QueryProfile} of the current request, so JPA and
+ * {@code JdbcTemplate} are both covered. Every {@code execute*} call is one round trip: a JDBC batch counts once
+ * with the rows of all its entries. Rows of a query are counted as the result set is read.
+ * Outside of a profiled request a statement costs one thread-local lookup.
+ * Closing it closes the wrapped pool, so the pool still shuts down with the context.
+ */
+public class ProfilingDataSource extends DelegatingDataSource implements AutoCloseable {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern PARAMETER_LIST = Pattern.compile("\\?(?:\\s*,\\s*\\?)+");
+    private static final int MAX_CACHED_SHAPES = 1_024;
+    private static final ConcurrentMap<String, String> SHAPES = new ConcurrentHashMap<>();
+
+    public ProfilingDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return proxy(Connection.class, new ConnectionHandler(super.getConnection()));
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return proxy(Connection.class, new ConnectionHandler(super.getConnection(username, password)));
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (getTargetDataSource() instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+
+    /**
+     * Literals and IN lists are folded, so {@code WHERE ID = 1} and {@code WHERE ID = 2} are the same shape.
+     */
+    static String shape(String sql) {
+        if (sql == null) {
+            return "<unprepared>";
+        }
+        String shape = SHAPES.get(sql);
+        if (shape != null) {
+            return shape;
+        }
+        shape = WHITESPACE.matcher(sql.trim()).replaceAll(" ");
+        shape = STRING_LITERAL.matcher(shape).replaceAll("?");
+        shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+        shape = PARAMETER_LIST.matcher(shape).replaceAll("?");
+        if (SHAPES.size() < MAX_CACHED_SHAPES) {
+            SHAPES.put(sql, shape);
+        }
+        return shape;
+    }
+
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(ProfilingDataSource.class.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    private static final class ConnectionHandler implements InvocationHandler {
+
+        private final Connection target;
+
+        private ConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = ProfilingDataSource.invoke(target, method, args);
+            String sql = method.getName().startsWith("prepare") ? (String) args[0] : null;
+            if (result instanceof CallableStatement statement) {
+                return proxy(CallableStatement.class, new StatementHandler(statement, sql));
+            }
+            if (result instanceof PreparedStatement statement) {
+                return proxy(PreparedStatement.class, new StatementHandler(statement, sql));
+            }
+            if (result instanceof Statement statement) {
+                return proxy(Statement.class, new StatementHandler(statement, null));
+            }
+            return result;
+        }
+    }
+
+    private static final class StatementHandler implements InvocationHandler {
+
+        private final Statement target;
+        private final String preparedSql;
+
+        private StatementHandler(Statement target, String preparedSql) {
+            this.target = target;
+            this.preparedSql = preparedSql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            QueryProfile profile = QueryProfiler.current();
+            if (profile == null) {
+                return ProfilingDataSource.invoke(target, method, args);
+            }
+            if ("getResultSet".equals(name)) {
+                return rows(profile, shape(preparedSql), ProfilingDataSource.invoke(target, method, args));
+            }
+            if (!name.startsWith("execute")) {
+                return ProfilingDataSource.invoke(target, method, args);
+            }
+
+            String shape = shape(preparedSql != null || args == null || args.length == 0 ? preparedSql : (String) args[0]);
+            long start = System.nanoTime();
+            Object result = ProfilingDataSource.invoke(target, method, args);
+            profile.statement(shape, System.nanoTime() - start, changedRows(result));
+            return rows(profile, shape, result);
+        }
+
+        private static long changedRows(Object result) {
+            if (result instanceof Integer count) {
+                return Math.max(0, count);
+            }
+            if (result instanceof Long count) {
+                return Math.max(0, count);
+            }
+            long rows = 0;
+            if (result instanceof int[] counts) {
+                for (int count : counts) {
+                    rows += Math.max(0, count);
+                }
+            } else if (result instanceof long[] counts) {
+                for (long count : counts) {
+                    rows += Math.max(0, count);
+                }
+            }
+            return rows;
+        }
+
+        private static Object rows(QueryProfile profile, String shape, Object result) {
+            if (result instanceof ResultSet resultSet) {
+                return proxy(ResultSet.class, new ResultSetHandler(resultSet, profile, shape));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Counts locally and reports once, when the result set is exhausted or closed.
+     */
+    private static final class ResultSetHandler implements InvocationHandler {
+
+        private final ResultSet target;
+        private final QueryProfile profile;
+        private final String shape;
+        private long rows;
+        private boolean reported;
+
+        private ResultSetHandler(ResultSet target, QueryProfile profile, String shape) {
+            this.target = target;
+            this.profile = profile;
+            this.shape = shape;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = ProfilingDataSource.invoke(target, method, args);
+            String name = method.getName();
+            if ("next".equals(name)) {
+                if (Boolean.TRUE.equals(result)) {
+                    rows++;
+                } else {
+                    report();
+                }
+            } else if ("close".equals(name)) {
+                report();
+            }
+            return result;
+        }
+
+        private void report() {
+            if (!reported) {
+                reported = true;
+                profile.rows(shape, rows);
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.edu.ulab.app.jdbc;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * For tests: collects the profiles of the requests finished while open, see {@link QueryProfiler#capture()}.
+ * <pre>
+ * try (QueryCapture capture = queryProfiler.capture()) {
+ *     mockMvc.perform(get("/api/v1/user/get/{userId}", userId));
+ *     capture.last().assertAtMost(2);
+ * }
+ * </pre>
+ */
+public class QueryCapture implements AutoCloseable {
+
+    private final List<QueryProfile> profiles = new CopyOnWriteArrayList<>();
+    private final List<QueryCapture> openCaptures;
+
+    QueryCapture(List<QueryCapture> openCaptures) {
+        this.openCaptures = openCaptures;
+    }
+
+    void add(QueryProfile profile) {
+        profiles.add(profile);
+    }
+
+    public List<QueryProfile> profiles() {
+        return List.copyOf(profiles);
+    }
+
+    /**
+     * @throws IllegalStateException when no request finished yet
+     */
+    public QueryProfile last() {
+        if (profiles.isEmpty()) {
+            throw new IllegalStateException("No request finished since the capture was opened");
+        }
+        return profiles.get(profiles.size() - 1);
+    }
+
+    @Override
+    public void close() {
+        openCaptures.remove(this);
+    }
+}
@@ -0,0 +1,113 @@
+package com.edu.ulab.app.jdbc;
+
+import lombok.Value;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Statements, rows and execution time of one request, broken down by statement shape: the SQL with literals and
+ * IN lists replaced by {@code ?}. A JDBC batch is one statement carrying the rows of all its entries.
+ * Like the request itself the profile is used by one thread at a time, the locks only cover the hand-over.
+ */
+public class QueryProfile {
+
+    static final String OTHER_SHAPES = "<other>";
+
+    private final int maxShapes;
+    private final Map<String, Shape> shapes = new LinkedHashMap<>();
+    private int statements;
+    private long rows;
+    private long nanos;
+
+    public QueryProfile(int maxShapes) {
+        this.maxShapes = maxShapes;
+    }
+
+    synchronized void statement(String sql, long statementNanos, long statementRows) {
+        statements++;
+        nanos += statementNanos;
+        rows += statementRows;
+        Shape shape = shape(sql);
+        shape.count++;
+        shape.nanos += statementNanos;
+        shape.rows += statementRows;
+    }
+
+    synchronized void rows(String sql, long fetchedRows) {
+        rows += fetchedRows;
+        shape(sql).rows += fetchedRows;
+    }
+
+    private Shape shape(String sql) {
+        Shape shape = shapes.get(sql);
+        if (shape == null) {
+            String key = shapes.size() < maxShapes ? sql : OTHER_SHAPES;
+            shape = shapes.computeIfAbsent(key, k -> new Shape());
+        }
+        return shape;
+    }
+
+    public synchronized int statements() {
+        return statements;
+    }
+
+    public synchronized long rows() {
+        return rows;
+    }
+
+    public synchronized long nanos() {
+        return nanos;
+    }
+
+    public synchronized int distinctShapes() {
+        return shapes.size();
+    }
+
+    /**
+     * @return the shapes, most executed first
+     */
+    public synchronized List<ShapeCount> shapes() {
+        List<ShapeCount> counts = new ArrayList<>(shapes.size());
+        shapes.forEach((sql, shape) -> counts.add(new ShapeCount(sql, shape.count, shape.rows,
+                TimeUnit.NANOSECONDS.toMicros(shape.nanos))));
+        counts.sort(Comparator.comparingInt(ShapeCount::getCount).reversed());
+        return counts;
+    }
+
+    /**
+     * For tests: fails with the statement breakdown when the request executed more than {@code maxStatements}.
+     */
+    public void assertAtMost(int maxStatements) {
+        int executed = statements();
+        if (executed > maxStatements) {
+            throw new AssertionError(String.format("Expected at most %s statements but %s were executed:%n%s",
+                    maxStatements, executed, describe()));
+        }
+    }
+
+    public String describe() {
+        return shapes().stream()
+                .map(shape -> String.format("%5d x %s", shape.getCount(), shape.getSql()))
+                .collect(Collectors.joining(System.lineSeparator()));
+    }
+
+    @Value
+    public static class ShapeCount {
+        String sql;
+        int count;
+        long rows;
+        long micros;
+    }
+
+    private static final class Shape {
+        private int count;
+        private long rows;
+        private long nanos;
+    }
+}
@@ -0,0 +1,147 @@
+package com.edu.ulab.app.jdbc;
+
+import com.edu.ulab.app.config.QueryProfilerProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Owns the {@link QueryProfile} of the request served by the current thread, filled by {@link ProfilingDataSource}.
+ * A finished profile is published per endpoint as {@code app.jdbc.request.statements}, {@code .rows},
+ * {@code .shapes} and {@code .time}. A statement shape repeated more than {@code repeat-threshold} times
+ * counts in {@code app.jdbc.nplusone} and is logged at WARN with the offending SQL.
+ */
+@Slf4j
+@Component
+public class QueryProfiler {
+
+    private static final ThreadLocal<QueryProfile> CURRENT = new ThreadLocal<>();
+    private static final int DEFAULT_MAX_SHAPES = 64;
+
+    private final QueryProfilerProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentMap<String, EndpointMeters> endpointMeters = new ConcurrentHashMap<>();
+    private final List<QueryCapture> captures = new CopyOnWriteArrayList<>();
+
+    public QueryProfiler(QueryProfilerProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * @return the profile of the request served by this thread, {@code null} outside of a profiled request
+     */
+    public static QueryProfile current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Binds {@code profile} to this thread, used when the request moves to another thread.
+     *
+     * @return the previous profile of this thread, to be restored afterwards
+     */
+    public static QueryProfile attach(QueryProfile profile) {
+        QueryProfile previous = CURRENT.get();
+        if (profile == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(profile);
+        }
+        return previous;
+    }
+
+    /**
+     * For tests: profiles the statements {@code task} executes on the calling thread.
+     */
+    public static QueryProfile profile(Runnable task) {
+        QueryProfile profile = new QueryProfile(DEFAULT_MAX_SHAPES);
+        QueryProfile previous = attach(profile);
+        try {
+            task.run();
+        } finally {
+            attach(previous);
+        }
+        return profile;
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    public QueryProfile start() {
+        QueryProfile profile = new QueryProfile(properties.getMaxShapes());
+        CURRENT.set(profile);
+        return profile;
+    }
+
+    /**
+     * @param endpoint low cardinality name of the request, such as the method and the matched path pattern
+     */
+    public void finish(QueryProfile profile, String endpoint) {
+        EndpointMeters meters = endpointMeters.computeIfAbsent(endpoint, this::endpointMeters);
+        meters.statements.record(profile.statements());
+        meters.rows.record(profile.rows());
+        meters.shapes.record(profile.distinctShapes());
+        meters.time.record(profile.nanos(), TimeUnit.NANOSECONDS);
+
+        for (QueryProfile.ShapeCount shape : profile.shapes()) {
+            if (shape.getCount() <= properties.getRepeatThreshold()) {
+                break;
+            }
+            meters.nPlusOne.increment();
+            log.warn("N+1 suspected on {} : {} x {}", endpoint, shape.getCount(), shape.getSql());
+        }
+
+        captures.forEach(capture -> capture.add(profile));
+    }
+
+    /**
+     * For tests: collects the profiles of every request finished until the capture is closed.
+     */
+    public QueryCapture capture() {
+        QueryCapture capture = new QueryCapture(captures);
+        captures.add(capture);
+        return capture;
+    }
+
+    private EndpointMeters endpointMeters(String endpoint) {
+        return new EndpointMeters(
+                DistributionSummary.builder("app.jdbc.request.statements")
+                        .tag("endpoint", endpoint)
+                        .description("JDBC statements executed per request")
+                        .publishPercentiles(0.5, 0.95, 0.99)
+                        .register(meterRegistry),
+                DistributionSummary.builder("app.jdbc.request.rows")
+                        .tag("endpoint", endpoint)
+                        .description("Rows fetched or changed per request")
+                        .register(meterRegistry),
+                DistributionSummary.builder("app.jdbc.request.shapes")
+                        .tag("endpoint", endpoint)
+                        .description("Distinct statement shapes per request")
+                        .register(meterRegistry),
+                Timer.builder("app.jdbc.request.time")
+                        .tag("endpoint", endpoint)
+                        .description("Time spent executing statements per request")
+                        .register(meterRegistry),
+                Counter.builder("app.jdbc.nplusone")
+                        .tag("endpoint", endpoint)
+                        .description("Statement shapes repeated beyond the N+1 threshold within one request")
+                        .register(meterRegistry));
+    }
+
+    private record EndpointMeters(DistributionSummary statements,
+                                  DistributionSummary rows,
+                                  DistributionSummary shapes,
+                                  Timer time,
+                                  Counter nPlusOne) {
+    }
+}
@@ -0,0 +1,202 @@
+package com.edu.ulab.app.jdbc;
+
+import com.edu.ulab.app.config.ReplicaProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hands out primary connections, except inside the replica scope of {@link ReplicaRouting}, where a replica is
+ * chosen round-robin or by {@link Replica#load()}. A replica that cannot give a connection is skipped for this
+ * one in favour of the primary.
+ * <p>
+ * Every primary connection taken on behalf of a request remembers its rqid for {@code read-your-writes-window},
+ * and replica reads of that rqid go to the primary meanwhile, so they see what the request wrote before the
+ * replicas caught up.
+ * Connections are counted as {@code app.datasource.connections{target=primary|<replica>|primary-read-your-writes|primary-fallback}}.
+ * The meters are bound after the registry exists, which itself may need the data source first.
+ */
+@Slf4j
+public class ReadWriteRoutingDataSource extends AbstractDataSource implements MeterBinder, AutoCloseable {
+
+    /**
+     * One least-latency selection in this many goes round-robin, so a replica slow once is measured again.
+     */
+    private static final int PROBE_EVERY = 32;
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final ReplicaProperties.Selection selection;
+    private final Cache<String, Boolean> recentWrites;
+    private final AtomicInteger next = new AtomicInteger();
+    private final List<AutoCloseable> resources;
+    private final LongAdder primaryConnections = new LongAdder();
+    private final LongAdder readYourWritesConnections = new LongAdder();
+    private final LongAdder fallbackConnections = new LongAdder();
+    private final LongAdder[] replicaConnections;
+
+    /**
+     * @param resources closed with this data source, after the routing stopped, and bound with it if they are
+     *                  {@link MeterBinder}s
+     */
+    public ReadWriteRoutingDataSource(DataSource primary, List<Replica> replicas, ReplicaProperties properties,
+                                      List<AutoCloseable> resources) {
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        this.selection = properties.getSelection();
+        this.recentWrites = properties.getReadYourWritesWindow().isZero() ? null : Caffeine.newBuilder()
+                .expireAfterWrite(properties.getReadYourWritesWindow())
+                .maximumSize(properties.getReadYourWritesSize())
+                .build();
+        this.resources = new ArrayList<>(resources);
+        this.replicaConnections = new LongAdder[this.replicas.size()];
+        for (int i = 0; i < replicaConnections.length; i++) {
+            replicaConnections[i] = new LongAdder();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry meterRegistry) {
+        connections(meterRegistry, "primary", primaryConnections);
+        connections(meterRegistry, "primary-read-your-writes", readYourWritesConnections);
+        connections(meterRegistry, "primary-fallback", fallbackConnections);
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get(i);
+            connections(meterRegistry, replica.getName(), replicaConnections[i]);
+            Gauge.builder("app.datasource.replica.hold", replica, r -> r.averageHoldNanos() / 1_000_000)
+                    .tag("replica", replica.getName())
+                    .baseUnit("milliseconds")
+                    .register(meterRegistry);
+        }
+        for (AutoCloseable resource : resources) {
+            if (resource instanceof MeterBinder binder) {
+                binder.bindTo(meterRegistry);
+            }
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!ReplicaRouting.isReplicaRead() || replicas.isEmpty()) {
+            rememberWrite();
+            primaryConnections.increment();
+            return primary.getConnection();
+        }
+        if (readsOwnWrite()) {
+            readYourWritesConnections.increment();
+            return primary.getConnection();
+        }
+        int index = select();
+        try {
+            Connection connection = replicas.get(index).getConnection();
+            replicaConnections[index].increment();
+            return connection;
+        } catch (SQLException e) {
+            log.warn("Replica {} gave no connection, reading from the primary : {}", replicas.get(index), e.getMessage());
+            fallbackConnections.increment();
+            return primary.getConnection();
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        primaryConnections.increment();
+        return primary.getConnection(username, password);
+    }
+
+    private int select() {
+        int selected = next.getAndIncrement();
+        int start = Math.floorMod(selected, replicas.size());
+        if (selection == ReplicaProperties.Selection.ROUND_ROBIN || selected % PROBE_EVERY == 0) {
+            return start;
+        }
+        // Ties, as before the first samples, keep rotating.
+        int best = start;
+        double bestLoad = replicas.get(start).load();
+        for (int i = 1; i < replicas.size(); i++) {
+            int candidate = (start + i) % replicas.size();
+            double load = replicas.get(candidate).load();
+            if (load < bestLoad) {
+                best = candidate;
+                bestLoad = load;
+            }
+        }
+        return best;
+    }
+
+    private void rememberWrite() {
+        if (recentWrites == null) {
+            return;
+        }
+        String requestId = MDC.get("requestId");
+        if (requestId != null) {
+            recentWrites.put(requestId, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Remembers the requests a write was made for on another thread, which carries no rqid of its own.
+     */
+    public void rememberWrites(Collection<String> requestIds) {
+        if (recentWrites == null) {
+            return;
+        }
+        requestIds.stream()
+                .filter(Objects::nonNull)
+                .forEach(requestId -> recentWrites.put(requestId, Boolean.TRUE));
+    }
+
+    private boolean readsOwnWrite() {
+        if (recentWrites == null) {
+            return false;
+        }
+        String requestId = MDC.get("requestId");
+        return requestId != null && recentWrites.getIfPresent(requestId) != null;
+    }
+
+    /**
+     * Reaches the primary pool, e.g. for its pool metrics.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return (T) this;
+        }
+        return primary.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || primary.isWrapperFor(iface);
+    }
+
+    @Override
+    public void close() throws Exception {
+        for (AutoCloseable resource : resources) {
+            resource.close();
+        }
+    }
+
+    private static void connections(MeterRegistry meterRegistry, String target, LongAdder count) {
+        FunctionCounter.builder("app.datasource.connections", count, LongAdder::sum)
+                .tag("target", target)
+                .register(meterRegistry);
+    }
+}
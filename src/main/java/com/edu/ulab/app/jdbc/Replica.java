@@ -0,0 +1,77 @@
+package com.edu.ulab.app.jdbc;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A replica pool that keeps the connections in use and the moving average of how long a connection is held,
+ * from taking it to closing it, which covers the queries run on it.
+ */
+public class Replica extends DelegatingDataSource {
+
+    private static final double SMOOTHING = 0.2;
+
+    private final String name;
+    private final AtomicInteger inUse = new AtomicInteger();
+    /**
+     * Updated without synchronization, a lost sample does not matter for a balancing hint.
+     */
+    private volatile double averageHoldNanos;
+
+    public Replica(String name, DataSource targetDataSource) {
+        super(targetDataSource);
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int inUse() {
+        return inUse.get();
+    }
+
+    public double averageHoldNanos() {
+        return averageHoldNanos;
+    }
+
+    /**
+     * Lower is better: a replica twice as slow with half the connections in use ties with the other one.
+     */
+    double load() {
+        return averageHoldNanos * (inUse.get() + 1);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Connection connection = super.getConnection();
+        inUse.incrementAndGet();
+        long start = System.nanoTime();
+        boolean[] closed = {false};
+        return (Connection) Proxy.newProxyInstance(Replica.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if ("close".equals(method.getName()) && !closed[0]) {
+                        closed[0] = true;
+                        inUse.decrementAndGet();
+                        double held = System.nanoTime() - start;
+                        averageHoldNanos = averageHoldNanos == 0 ? held : averageHoldNanos + SMOOTHING * (held - averageHoldNanos);
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    }
+                });
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
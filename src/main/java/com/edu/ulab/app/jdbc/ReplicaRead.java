@@ -0,0 +1,15 @@
+package com.edu.ulab.app.jdbc;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The annotated method only reads, its connections may come from a replica when {@code app.replicas.enabled} is set.
+ * See {@link ReplicaReadAspect}.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ReplicaRead {
+}
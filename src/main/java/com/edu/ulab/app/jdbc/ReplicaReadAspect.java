@@ -0,0 +1,26 @@
+package com.edu.ulab.app.jdbc;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs {@link ReplicaRead} methods in the replica scope of {@link ReplicaRouting}.
+ */
+@Aspect
+@Component
+@ConditionalOnProperty(prefix = "app.replicas", name = "enabled", havingValue = "true")
+public class ReplicaReadAspect {
+
+    @Around("@annotation(com.edu.ulab.app.jdbc.ReplicaRead)")
+    public Object onReplica(ProceedingJoinPoint joinPoint) throws Throwable {
+        Boolean previous = ReplicaRouting.enter(Boolean.TRUE);
+        try {
+            return joinPoint.proceed();
+        } finally {
+            ReplicaRouting.restore(previous);
+        }
+    }
+}
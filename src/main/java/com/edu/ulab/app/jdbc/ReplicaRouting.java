@@ -0,0 +1,60 @@
+package com.edu.ulab.app.jdbc;
+
+import java.util.function.Supplier;
+
+/**
+ * Which database the connections of the current thread come from. Connections are routed when they are taken,
+ * so the scope has to be entered before the transaction or the query starts. Outside of any scope everything
+ * goes to the primary.
+ */
+public final class ReplicaRouting {
+
+    private static final ThreadLocal<Boolean> REPLICA_READ = new ThreadLocal<>();
+
+    private ReplicaRouting() {
+    }
+
+    public static boolean isReplicaRead() {
+        return Boolean.TRUE.equals(REPLICA_READ.get());
+    }
+
+    /**
+     * Runs reads that may see a replica lagging behind the primary.
+     */
+    public static <T> T onReplica(Supplier<T> reads) {
+        return route(Boolean.TRUE, reads);
+    }
+
+    /**
+     * Runs on the primary, also inside a replica scope.
+     */
+    public static <T> T onPrimary(Supplier<T> work) {
+        return route(Boolean.FALSE, work);
+    }
+
+    private static <T> T route(Boolean replicaRead, Supplier<T> work) {
+        Boolean previous = enter(replicaRead);
+        try {
+            return work.get();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    /**
+     * @return the scope to {@link #restore(Boolean)} afterwards
+     */
+    static Boolean enter(Boolean replicaRead) {
+        Boolean previous = REPLICA_READ.get();
+        REPLICA_READ.set(replicaRead);
+        return previous;
+    }
+
+    static void restore(Boolean previous) {
+        if (previous == null) {
+            REPLICA_READ.remove();
+        } else {
+            REPLICA_READ.set(previous);
+        }
+    }
+}
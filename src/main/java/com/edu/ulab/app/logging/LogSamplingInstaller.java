@@ -0,0 +1,35 @@
+package com.edu.ulab.app.logging;
+
+import ch.qos.logback.classic.LoggerContext;
+import com.edu.ulab.app.config.LogSamplingProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+/**
+ * Registers the {@link SamplingTurboFilter} on the logback context for the lifetime of the application.
+ */
+@Slf4j
+@Component
+public class LogSamplingInstaller implements DisposableBean {
+
+    private final SamplingTurboFilter filter;
+
+    public LogSamplingInstaller(LogSamplingProperties properties) {
+        this.filter = new SamplingTurboFilter(properties.getRates());
+        if (!properties.getRates().isEmpty() && LoggerFactory.getILoggerFactory() instanceof LoggerContext context) {
+            filter.setName("sampling");
+            filter.start();
+            context.addTurboFilter(filter);
+            log.info("Log sampling rates: {}", properties.getRates());
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (LoggerFactory.getILoggerFactory() instanceof LoggerContext context) {
+            context.getTurboFilterList().remove(filter);
+        }
+    }
+}
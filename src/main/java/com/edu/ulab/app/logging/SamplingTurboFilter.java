@@ -0,0 +1,56 @@
+package com.edu.ulab.app.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Drops a configured share of the TRACE..INFO events per logger category.
+ * <p>
+ * Turbo filters run before the logging event is created, so a dropped message is never formatted and its
+ * arguments' {@code toString()} is never called. The rate of every logger is resolved once and cached.
+ */
+public class SamplingTurboFilter extends TurboFilter {
+
+    private static final double KEEP_ALL = 1.0;
+
+    private final Map<String, Double> rates;
+    private final Map<String, Double> resolvedRates = new ConcurrentHashMap<>();
+
+    public SamplingTurboFilter(Map<String, Double> rates) {
+        this.rates = Map.copyOf(rates);
+    }
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        if (level == null || level.isGreaterOrEqual(Level.WARN)) {
+            return FilterReply.NEUTRAL;
+        }
+        double rate = resolvedRates.computeIfAbsent(logger.getName(), this::resolve);
+        if (rate >= KEEP_ALL || (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate)) {
+            return FilterReply.NEUTRAL;
+        }
+        return FilterReply.DENY;
+    }
+
+    private double resolve(String loggerName) {
+        String name = loggerName;
+        while (true) {
+            Double rate = rates.get(name);
+            if (rate != null) {
+                return rate;
+            }
+            int dot = name.lastIndexOf('.');
+            if (dot < 0) {
+                return KEEP_ALL;
+            }
+            name = name.substring(0, dot);
+        }
+    }
+}
@@ -3,7 +3,9 @@ package com.edu.ulab.app.mapper;
 import com.edu.ulab.app.dto.BookDto;
 import com.edu.ulab.app.entity.Book;
 import com.edu.ulab.app.web.request.BookRequest;
+import com.edu.ulab.app.web.response.BookResponse;
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
 import org.mapstruct.MappingTarget;
 
 import java.sql.ResultSet;
@@ -18,7 +20,8 @@ public interface BookMapper {
                   rs.getLong("USER_ID"),
                   rs.getString("TITLE"),
                   rs.getString("AUTHOR"),
-                  rs.getLong("PAGE_COUNT")
+                  rs.getLong("PAGE_COUNT"),
+                  rs.getLong("VERSION")
                   );
     }
 
@@ -26,10 +29,14 @@ public interface BookMapper {
 
     BookRequest bookDtoToBookRequest(BookDto bookDto);
 
+    @Mapping(target = "version", ignore = true)
     Book bookDtoToBook(BookDto bookDto);
 
     BookDto bookToBookDto(Book book);
 
+    BookResponse bookDtoToBookResponse(BookDto bookDto);
+
+    @Mapping(target = "version", ignore = true)
     void updateBookFromDto(BookDto dto, @MappingTarget Book entity);
 
 }
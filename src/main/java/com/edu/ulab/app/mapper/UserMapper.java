@@ -4,6 +4,7 @@ import com.edu.ulab.app.dto.UserDto;
 import com.edu.ulab.app.entity.Person;
 import com.edu.ulab.app.web.request.UserRequest;
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
 import org.mapstruct.MappingTarget;
 
 import java.sql.ResultSet;
@@ -17,16 +18,19 @@ public interface UserMapper {
                 rs.getLong("ID"),
                 rs.getString("FULL_NAME"),
                 rs.getString("TITLE"),
-                rs.getInt("AGE")
+                rs.getInt("AGE"),
+                rs.getLong("VERSION")
         );
     }
     UserDto userRequestToUserDto(UserRequest userRequest);
 
     UserRequest userDtoToUserRequest(UserDto userDto);
 
+    @Mapping(target = "version", ignore = true)
     Person userDtoToPerson(UserDto userDto);
 
     UserDto personToUserDto(Person person);
 
+    @Mapping(target = "version", ignore = true)
     void updatePersonFromDto(UserDto dto, @MappingTarget Person entity);
 }
\ No newline at end of file
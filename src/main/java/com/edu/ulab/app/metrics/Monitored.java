@@ -0,0 +1,31 @@
+package com.edu.ulab.app.metrics;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Every public method of the annotated bean is timed by {@link MonitoredAspect}.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Monitored {
+
+    String FACADE = "facade";
+    String SERVICE = "service";
+
+    String JPA = "jpa";
+    String JDBC = "jdbc";
+    String MEMORY = "memory";
+
+    /**
+     * Timer name suffix: {@code app.facade} or {@code app.service}.
+     */
+    String layer();
+
+    /**
+     * Value of the {@code backend} tag. The facade works on whichever backend it was given.
+     */
+    String backend() default "any";
+}
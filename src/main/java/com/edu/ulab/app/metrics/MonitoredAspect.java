@@ -0,0 +1,104 @@
+package com.edu.ulab.app.metrics;
+
+import com.edu.ulab.app.exception.NotFoundException;
+import com.edu.ulab.app.exception.ServiceException;
+import com.edu.ulab.app.recorder.RequestRecorder;
+import com.edu.ulab.app.recorder.RequestRecording;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the public methods of {@link Monitored} beans as {@code app.<layer>} with the tags
+ * {@code operation}, {@code backend} and {@code outcome} (success, not-found, service-error, error),
+ * publishing p50/p95/p99 and a percentile histogram for Prometheus.
+ * Timers are resolved once per method and outcome, so the hot path does not build meter ids.
+ * Inside a recorded request the call is also added as a step of the {@link RequestRecording}.
+ */
+@Aspect
+@Component
+public class MonitoredAspect {
+
+    private static final double[] PERCENTILES = {0.5, 0.95, 0.99};
+
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentMap<Method, Timer[]> timers = new ConcurrentHashMap<>();
+
+    public MonitoredAspect(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Around("@within(monitored) && execution(public * *(..))")
+    public Object time(ProceedingJoinPoint joinPoint, Monitored monitored) throws Throwable {
+        RequestRecording recording = RequestRecorder.current();
+        if (recording != null) {
+            recording.enter();
+        }
+        long start = System.nanoTime();
+        Outcome outcome = Outcome.SUCCESS;
+        try {
+            return joinPoint.proceed();
+        } catch (Throwable e) {
+            outcome = Outcome.of(e);
+            throw e;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+            timer(method, monitored, outcome).record(elapsed, TimeUnit.NANOSECONDS);
+            if (recording != null) {
+                recording.exit(monitored.layer(), method.getName(), outcome.tag, start, elapsed);
+            }
+        }
+    }
+
+    /**
+     * Registration is idempotent, so two threads racing on an empty slot store the same timer.
+     */
+    private Timer timer(Method method, Monitored monitored, Outcome outcome) {
+        Timer[] methodTimers = timers.computeIfAbsent(method, key -> new Timer[Outcome.values().length]);
+        Timer timer = methodTimers[outcome.ordinal()];
+        if (timer == null) {
+            timer = Timer.builder("app." + monitored.layer())
+                    .tag("operation", method.getName())
+                    .tag("backend", monitored.backend())
+                    .tag("outcome", outcome.tag)
+                    .publishPercentiles(PERCENTILES)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+            methodTimers[outcome.ordinal()] = timer;
+        }
+        return timer;
+    }
+
+    private enum Outcome {
+        SUCCESS("success"),
+        NOT_FOUND("not-found"),
+        SERVICE_ERROR("service-error"),
+        ERROR("error");
+
+        private final String tag;
+
+        Outcome(String tag) {
+            this.tag = tag;
+        }
+
+        static Outcome of(Throwable e) {
+            if (e instanceof NotFoundException) {
+                return NOT_FOUND;
+            }
+            if (e instanceof ServiceException) {
+                return SERVICE_ERROR;
+            }
+            return ERROR;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.edu.ulab.app.recorder;
+
+import lombok.Value;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * {@code GET /actuator/flightrecorder} lists the kept requests,
+ * {@code GET /actuator/flightrecorder/{rqid}} looks up one request id.
+ */
+@Component
+@Endpoint(id = "flightrecorder")
+public class FlightRecorderEndpoint {
+
+    private final RequestRecorder recorder;
+
+    public FlightRecorderEndpoint(RequestRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    @ReadOperation
+    public Report report() {
+        return new Report(recorder.slowest(), recorder.slow(), recorder.sampled());
+    }
+
+    /**
+     * @return {@code null}, answered with 404, when the request is no longer kept
+     */
+    @ReadOperation
+    public List<RequestRecord> request(@Selector String requestId) {
+        List<RequestRecord> records = recorder.find(requestId);
+        return records.isEmpty() ? null : records;
+    }
+
+    @Value
+    public static class Report {
+        List<RequestRecord> slowest;
+        List<RequestRecord> slow;
+        List<RequestRecord> sampled;
+    }
+}
@@ -0,0 +1,39 @@
+package com.edu.ulab.app.recorder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock-free ring keeping the most recent records. Writers claim a slot with one increment and overwrite it.
+ */
+class RecordRing {
+
+    private final AtomicReferenceArray<RequestRecord> slots;
+    private final AtomicLong cursor = new AtomicLong();
+
+    RecordRing(int size) {
+        this.slots = new AtomicReferenceArray<>(Math.max(1, size));
+    }
+
+    void add(RequestRecord record) {
+        slots.set((int) (cursor.getAndIncrement() % slots.length()), record);
+    }
+
+    /**
+     * @return the records, most recent first
+     */
+    List<RequestRecord> snapshot() {
+        long end = cursor.get();
+        int size = (int) Math.min(end, slots.length());
+        List<RequestRecord> records = new ArrayList<>(size);
+        for (long i = end - 1; i >= end - size; i--) {
+            RequestRecord record = slots.get((int) (i % slots.length()));
+            if (record != null) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+}
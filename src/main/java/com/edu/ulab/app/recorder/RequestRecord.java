@@ -0,0 +1,26 @@
+package com.edu.ulab.app.recorder;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Immutable snapshot of a finished request, steps ordered by start.
+ */
+@Value
+@Builder
+public class RequestRecord {
+    String requestId;
+    String method;
+    String uri;
+    int status;
+    Instant startedAt;
+    long wallMicros;
+    int sqlStatements;
+    long sqlRows;
+    long sqlMicros;
+    int droppedSteps;
+    List<StepRecord> steps;
+}
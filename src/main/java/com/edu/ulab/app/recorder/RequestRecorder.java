@@ -0,0 +1,103 @@
+package com.edu.ulab.app.recorder;
+
+import com.edu.ulab.app.config.RecorderProperties;
+import com.edu.ulab.app.jdbc.QueryProfile;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the slowest requests, the recent requests over the slow threshold and a rolling sample of all requests.
+ * The recording of the current request is reachable through {@link #current()} from the facade and service
+ * aspect.
+ */
+@Component
+public class RequestRecorder {
+
+    private static final ThreadLocal<RequestRecording> CURRENT = new ThreadLocal<>();
+
+    private final RecorderProperties properties;
+    private final long slowThresholdMicros;
+    private final SlowestRecords slowest;
+    private final RecordRing slow;
+    private final RecordRing sampled;
+
+    public RequestRecorder(RecorderProperties properties) {
+        this.properties = properties;
+        this.slowThresholdMicros = TimeUnit.NANOSECONDS.toMicros(properties.getSlowThreshold().toNanos());
+        this.slowest = new SlowestRecords(properties.getSlowestSize());
+        this.slow = new RecordRing(properties.getSlowSize());
+        this.sampled = new RecordRing(properties.getSampleSize());
+    }
+
+    /**
+     * @return the recording of the request served by this thread, {@code null} outside of a recorded request
+     */
+    public static RequestRecording current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Binds {@code recording} to this thread, used when the request moves to another thread.
+     *
+     * @return the previous recording of this thread, to be restored afterwards
+     */
+    public static RequestRecording attach(RequestRecording recording) {
+        RequestRecording previous = CURRENT.get();
+        if (recording == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(recording);
+        }
+        return previous;
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    public RequestRecording start(String requestId, String method, String uri) {
+        RequestRecording recording = new RequestRecording(requestId, method, uri, properties.getMaxSteps());
+        CURRENT.set(recording);
+        return recording;
+    }
+
+    public void finish(RequestRecording recording, int status, QueryProfile queries) {
+        RequestRecord record = recording.finish(status, queries);
+        slowest.offer(record);
+        if (record.getWallMicros() >= slowThresholdMicros) {
+            slow.add(record);
+        }
+        if (ThreadLocalRandom.current().nextDouble() < properties.getSampleRate()) {
+            sampled.add(record);
+        }
+    }
+
+    public List<RequestRecord> slowest() {
+        return slowest.snapshot();
+    }
+
+    public List<RequestRecord> slow() {
+        return slow.snapshot();
+    }
+
+    public List<RequestRecord> sampled() {
+        return sampled.snapshot();
+    }
+
+    /**
+     * @return every kept record of the request, a request can be both among the slowest and in the rings
+     */
+    public List<RequestRecord> find(String requestId) {
+        return Stream.of(slowest(), slow(), sampled())
+                .flatMap(List::stream)
+                .filter(record -> Objects.equals(requestId, record.getRequestId()))
+                .distinct()
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,69 @@
+package com.edu.ulab.app.recorder;
+
+import com.edu.ulab.app.jdbc.QueryProfile;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request in flight. A request runs on one thread at a time, the Tomcat worker and then the facade thread,
+ * so the step list is only guarded against the hand-over and the completion callback.
+ */
+public class RequestRecording {
+
+    private final String requestId;
+    private final String method;
+    private final String uri;
+    private final Instant startedAt = Instant.now();
+    private final long startNanos = System.nanoTime();
+    private final int maxSteps;
+    private final List<StepRecord> steps = new ArrayList<>();
+    private int depth;
+    private int droppedSteps;
+
+    RequestRecording(String requestId, String method, String uri, int maxSteps) {
+        this.requestId = requestId;
+        this.method = method;
+        this.uri = uri;
+        this.maxSteps = maxSteps;
+    }
+
+    public synchronized void enter() {
+        depth++;
+    }
+
+    public synchronized void exit(String layer, String operation, String outcome, long stepStartNanos, long stepNanos) {
+        depth--;
+        if (steps.size() == maxSteps) {
+            droppedSteps++;
+            return;
+        }
+        steps.add(new StepRecord(layer, operation, outcome, depth,
+                TimeUnit.NANOSECONDS.toMicros(stepStartNanos - startNanos),
+                TimeUnit.NANOSECONDS.toMicros(stepNanos)));
+    }
+
+    /**
+     * @param queries statements of the request, {@code null} when the JDBC profiler is off
+     */
+    synchronized RequestRecord finish(int status, QueryProfile queries) {
+        List<StepRecord> ordered = new ArrayList<>(steps);
+        ordered.sort(Comparator.comparingLong(StepRecord::getOffsetMicros).thenComparingInt(StepRecord::getDepth));
+        return RequestRecord.builder()
+                .requestId(requestId)
+                .method(method)
+                .uri(uri)
+                .status(status)
+                .startedAt(startedAt)
+                .wallMicros(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos))
+                .sqlStatements(queries == null ? 0 : queries.statements())
+                .sqlRows(queries == null ? 0 : queries.rows())
+                .sqlMicros(queries == null ? 0 : TimeUnit.NANOSECONDS.toMicros(queries.nanos()))
+                .droppedSteps(droppedSteps)
+                .steps(List.copyOf(ordered))
+                .build();
+    }
+}
@@ -0,0 +1,81 @@
+package com.edu.ulab.app.recorder;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock-free top-N of records by wall time. A record replaces the fastest kept record with a CAS, and
+ * {@code floorMicros} lets the common, fast request return after a single volatile read.
+ */
+class SlowestRecords {
+
+    private final AtomicReferenceArray<RequestRecord> slots;
+    /**
+     * Wall time of the fastest kept record once every slot is taken. Slots only ever get slower, so a racing
+     * writer can only store a lower floor than the current one, which costs a scan but never loses a record.
+     */
+    private volatile long floorMicros = -1;
+
+    SlowestRecords(int size) {
+        this.slots = new AtomicReferenceArray<>(Math.max(1, size));
+    }
+
+    void offer(RequestRecord record) {
+        if (record.getWallMicros() <= floorMicros) {
+            return;
+        }
+        while (true) {
+            int fastestIndex = -1;
+            RequestRecord fastest = null;
+            for (int i = 0; i < slots.length(); i++) {
+                RequestRecord current = slots.get(i);
+                if (current == null) {
+                    fastestIndex = i;
+                    fastest = null;
+                    break;
+                }
+                if (fastest == null || current.getWallMicros() < fastest.getWallMicros()) {
+                    fastestIndex = i;
+                    fastest = current;
+                }
+            }
+            if (fastest != null && record.getWallMicros() <= fastest.getWallMicros()) {
+                floorMicros = fastest.getWallMicros();
+                return;
+            }
+            if (slots.compareAndSet(fastestIndex, fastest, record)) {
+                floorMicros = floor();
+                return;
+            }
+        }
+    }
+
+    private long floor() {
+        long floor = Long.MAX_VALUE;
+        for (int i = 0; i < slots.length(); i++) {
+            RequestRecord current = slots.get(i);
+            if (current == null) {
+                return -1;
+            }
+            floor = Math.min(floor, current.getWallMicros());
+        }
+        return floor;
+    }
+
+    /**
+     * @return the records, slowest first
+     */
+    List<RequestRecord> snapshot() {
+        List<RequestRecord> records = new ArrayList<>(slots.length());
+        for (int i = 0; i < slots.length(); i++) {
+            RequestRecord record = slots.get(i);
+            if (record != null) {
+                records.add(record);
+            }
+        }
+        records.sort(Comparator.comparingLong(RequestRecord::getWallMicros).reversed());
+        return records;
+    }
+}
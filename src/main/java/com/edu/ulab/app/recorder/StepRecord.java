@@ -0,0 +1,16 @@
+package com.edu.ulab.app.recorder;
+
+import lombok.Value;
+
+/**
+ * One facade or service call of a recorded request. {@code depth} is 0 for the outermost call.
+ */
+@Value
+public class StepRecord {
+    String layer;
+    String operation;
+    String outcome;
+    int depth;
+    long offsetMicros;
+    long durationMicros;
+}
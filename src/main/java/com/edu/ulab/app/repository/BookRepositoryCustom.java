@@ -0,0 +1,14 @@
+package com.edu.ulab.app.repository;
+
+import com.edu.ulab.app.entity.Book;
+
+import java.util.function.Consumer;
+
+public interface BookRepositoryCustom {
+
+    /**
+     * Reads the user books ordered by id through a forward-only cursor, one row at a time.
+     * The entities are never attached to the persistence context.
+     */
+    void streamByUserId(long userId, int fetchSize, Consumer<Book> consumer);
+}
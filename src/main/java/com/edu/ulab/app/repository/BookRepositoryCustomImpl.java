@@ -0,0 +1,35 @@
+package com.edu.ulab.app.repository;
+
+import com.edu.ulab.app.entity.Book;
+import com.edu.ulab.app.mapper.BookMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.function.Consumer;
+
+public class BookRepositoryCustomImpl implements BookRepositoryCustom {
+
+    private static final String STREAM_BY_USER_ID_SQL = "SELECT * FROM BOOK WHERE USER_ID = ? ORDER BY ID";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BookMapper bookMapper;
+
+    public BookRepositoryCustomImpl(JdbcTemplate jdbcTemplate, BookMapper bookMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.bookMapper = bookMapper;
+    }
+
+    @Override
+    public void streamByUserId(long userId, int fetchSize, Consumer<Book> consumer) {
+        jdbcTemplate.query(connection -> {
+                    PreparedStatement ps = connection.prepareStatement(STREAM_BY_USER_ID_SQL,
+                            ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                    ps.setFetchSize(fetchSize);
+                    ps.setLong(1, userId);
+                    return ps;
+                },
+                (RowCallbackHandler) rs -> consumer.accept(bookMapper.resultSetToBook(rs)));
+    }
+}
@@ -0,0 +1,453 @@
+package com.edu.ulab.app.search;
+
+import com.edu.ulab.app.config.BookSearchProperties;
+import com.edu.ulab.app.dto.BookDto;
+import com.edu.ulab.app.storage.StripedLongMap;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted index over the titles and authors of the books, searches never touch the database.
+ * <p>
+ * Titles and authors are cut into lower case words at every character that is neither a letter nor a digit. Every
+ * word is a term pointing at the books that contain it. The terms are sorted, so a query word also matches the terms
+ * it is a prefix of; words of at least {@code app.search.min-infix-length} characters also match inside terms,
+ * found through an index of the term trigrams. That index is over the terms, not the books, and grows with the
+ * vocabulary only.
+ * <p>
+ * A book matches when it matches every query word. Only the word whose terms point at the fewest books is looked up
+ * in the postings, the other words are checked against the terms of those candidates: a search costs the books of
+ * its most selective word, not a scan. A book scores per query word the best of an exact, prefix or infix match,
+ * a title match counts twice an author match. The best {@code limit} books are kept in a heap, ties go to the lower
+ * id. Postings are sorted by id and walked in id order, so once the heap is full of books scoring the most the
+ * query words can score, no later book can get in and the search stops: a common word costs its first matches, not
+ * all of them.
+ * <p>
+ * One read-write lock guards the index: searches run side by side, a write shuts them out for the terms of one book.
+ * Published as {@code app.search.books} and {@code app.search.terms}.
+ */
+@Component
+public class BookSearchIndex {
+
+    private static final double EXACT = 1.0;
+    private static final double PREFIX = 0.5;
+    private static final double INFIX = 0.25;
+    private static final double TITLE = 2.0;
+    private static final double AUTHOR = 1.0;
+    private static final int GRAM = 3;
+    private static final Comparator<Hit> BEST_FIRST =
+            Comparator.comparingDouble(Hit::score).reversed().thenComparingLong(Hit::bookId);
+
+    private final boolean enabled;
+    private final int maxExpansions;
+    private final int minInfixLength;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final StripedLongMap<Doc> docs = new StripedLongMap<>();
+    private final TreeMap<String, Term> terms = new TreeMap<>();
+    private final Map<String, Set<Term>> termsByGram = new HashMap<>();
+
+    public BookSearchIndex(BookSearchProperties properties, MeterRegistry meterRegistry) {
+        this.enabled = properties.isEnabled();
+        this.maxExpansions = properties.getMaxExpansions();
+        // Shorter words have no trigram to look up.
+        this.minInfixLength = properties.getMinInfixLength() > 0 ? Math.max(GRAM, properties.getMinInfixLength()) : 0;
+        Gauge.builder("app.search.books", docs, StripedLongMap::size).register(meterRegistry);
+        Gauge.builder("app.search.terms", terms, Map::size).register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Indexes the book or brings its entry in line with it, an unchanged book costs no term update.
+     */
+    public void put(BookDto book) {
+        putAll(List.of(book));
+    }
+
+    public void putAll(Collection<BookDto> books) {
+        if (!enabled || books.isEmpty()) {
+            return;
+        }
+        Map<Long, BookDto> latest = new LinkedHashMap<>();
+        for (BookDto book : books) {
+            if (book != null && book.getId() != null) {
+                latest.put(book.getId(), book);
+            }
+        }
+        lock.writeLock().lock();
+        try {
+            // Postings take the ids of the batch at once, a merge per term instead of an insert per book.
+            Map<Term, Postings> added = new HashMap<>();
+            for (BookDto book : latest.values()) {
+                putLocked(book, added);
+            }
+            added.forEach((term, bookIds) -> term.books.addAll(bookIds));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long bookId) {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            Doc doc = docs.remove(bookId);
+            if (doc != null) {
+                unindex(doc, Map.of());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        return docs.size();
+    }
+
+    /**
+     * @return at most {@code limit} books matching every word of the query, best first
+     */
+    public List<Hit> search(String query, int limit) {
+        List<String> queryWords = words(query);
+        if (!enabled || queryWords.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            Expansion selective = null;
+            double bound = 0;
+            for (String word : queryWords) {
+                Expansion expansion = expand(word);
+                if (expansion.books == 0) {
+                    return List.of();
+                }
+                if (selective == null || expansion.isMoreSelectiveThan(selective)) {
+                    selective = expansion;
+                }
+                bound += expansion.bound();
+            }
+
+            PriorityQueue<Hit> top = new PriorityQueue<>(limit + 1, BEST_FIRST.reversed());
+            PriorityQueue<Cursor> cursors = new PriorityQueue<>(selective.terms.size());
+            for (Term term : selective.terms) {
+                cursors.add(new Cursor(term.books));
+            }
+            long previous = 0;
+            while (!cursors.isEmpty()) {
+                Cursor cursor = cursors.poll();
+                long bookId = cursor.bookId;
+                if (cursor.next()) {
+                    cursors.add(cursor);
+                }
+                if (bookId == previous) {
+                    continue;
+                }
+                previous = bookId;
+                Doc doc = docs.get(bookId);
+                double score = doc == null ? 0 : score(doc, queryWords);
+                if (score == 0 || top.size() == limit && score <= top.peek().score()) {
+                    continue;
+                }
+                if (top.size() == limit) {
+                    top.poll();
+                }
+                top.add(new Hit(bookId, doc.userId, doc.title, doc.author, score));
+                if (top.size() == limit && top.peek().score() >= bound) {
+                    break;
+                }
+            }
+            List<Hit> hits = new ArrayList<>(top);
+            hits.sort(BEST_FIRST);
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void putLocked(BookDto book, Map<Term, Postings> added) {
+        Doc current = docs.get(book.getId());
+        if (current != null && Objects.equals(current.title, book.getTitle())
+                && Objects.equals(current.author, book.getAuthor())
+                && Objects.equals(current.userId, book.getUserId())) {
+            return;
+        }
+        if (current != null) {
+            unindex(current, added);
+        }
+        Doc doc = new Doc(book.getId(), book.getUserId(), book.getTitle(), book.getAuthor(),
+                terms(words(book.getTitle())), terms(words(book.getAuthor())));
+        for (Term term : doc.titleTerms) {
+            term.titleBooks++;
+        }
+        for (Term term : doc.terms()) {
+            added.computeIfAbsent(term, key -> new Postings()).append(doc.id);
+        }
+        docs.put(doc.id, doc);
+    }
+
+    private Term[] terms(List<String> words) {
+        Term[] docTerms = new Term[words.size()];
+        for (int i = 0; i < docTerms.length; i++) {
+            docTerms[i] = terms.computeIfAbsent(words.get(i), this::newTerm);
+        }
+        return docTerms;
+    }
+
+    private Term newTerm(String text) {
+        Term term = new Term(text);
+        if (minInfixLength > 0) {
+            for (String gram : grams(text)) {
+                termsByGram.computeIfAbsent(gram, key -> new HashSet<>()).add(term);
+            }
+        }
+        return term;
+    }
+
+    private void unindex(Doc doc, Map<Term, Postings> added) {
+        for (Term term : doc.titleTerms) {
+            term.titleBooks--;
+        }
+        for (Term term : doc.terms()) {
+            forget(term, doc.id, added);
+        }
+    }
+
+    /**
+     * A term without books leaves the dictionary, so the vocabulary only holds words of indexed books. A term the
+     * current batch adds books to stays.
+     */
+    private void forget(Term term, long bookId, Map<Term, Postings> added) {
+        if (!term.books.remove(bookId) || term.books.size() > 0 || added.containsKey(term)) {
+            return;
+        }
+        terms.remove(term.text);
+        if (minInfixLength > 0) {
+            for (String gram : grams(term.text)) {
+                Set<Term> gramTerms = termsByGram.get(gram);
+                gramTerms.remove(term);
+                if (gramTerms.isEmpty()) {
+                    termsByGram.remove(gram);
+                }
+            }
+        }
+    }
+
+    /**
+     * Terms the word matches: itself and the terms it starts, then the terms it is inside of.
+     */
+    private Expansion expand(String word) {
+        Expansion expansion = new Expansion(word);
+        for (Term term : terms.subMap(word, true, word + Character.MAX_VALUE, false).values()) {
+            if (!expansion.add(term)) {
+                return expansion;
+            }
+        }
+        if (minInfixLength == 0 || word.length() < minInfixLength) {
+            return expansion;
+        }
+        Set<Term> candidates = null;
+        for (String gram : grams(word)) {
+            Set<Term> gramTerms = termsByGram.getOrDefault(gram, Set.of());
+            if (candidates == null || gramTerms.size() < candidates.size()) {
+                candidates = gramTerms;
+            }
+        }
+        for (Term term : candidates) {
+            if (!term.text.startsWith(word) && term.text.contains(word) && !expansion.add(term)) {
+                return expansion;
+            }
+        }
+        return expansion;
+    }
+
+    /**
+     * @return 0 when a word matches neither the title nor the author
+     */
+    private double score(Doc doc, List<String> queryWords) {
+        double score = 0;
+        for (String word : queryWords) {
+            double best = Math.max(TITLE * match(doc.titleTerms, word), AUTHOR * match(doc.authorTerms, word));
+            if (best == 0) {
+                return 0;
+            }
+            score += best;
+        }
+        return score;
+    }
+
+    private double match(Term[] docTerms, String word) {
+        double best = 0;
+        for (Term term : docTerms) {
+            if (term.text.equals(word)) {
+                return EXACT;
+            }
+            if (term.text.startsWith(word)) {
+                best = Math.max(best, PREFIX);
+            } else if (minInfixLength > 0 && word.length() >= minInfixLength && term.text.contains(word)) {
+                best = Math.max(best, INFIX);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Lower case words of the text, each once, in the order they first appear.
+     */
+    static List<String> words(String text) {
+        if (text == null) {
+            return List.of();
+        }
+        List<String> words = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                String word = text.substring(start, i).toLowerCase(Locale.ROOT);
+                if (!words.contains(word)) {
+                    words.add(word);
+                }
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    private static Set<String> grams(String text) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            grams.add(text.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+
+    public record Hit(long bookId, Long userId, String title, String author, double score) {
+    }
+
+    private static final class Term {
+        private final String text;
+        private final Postings books = new Postings();
+        /**
+         * Books with the term in the title, the others have it in the author only.
+         */
+        private int titleBooks;
+
+        private Term(String text) {
+            this.text = text;
+        }
+    }
+
+    /**
+     * The indexed state of a book, its terms are the dictionary instances.
+     */
+    private record Doc(long id, Long userId, String title, String author, Term[] titleTerms, Term[] authorTerms) {
+
+        /**
+         * The title and author terms, a term in both once.
+         */
+        private List<Term> terms() {
+            List<Term> docTerms = new ArrayList<>(titleTerms.length + authorTerms.length);
+            docTerms.addAll(List.of(titleTerms));
+            for (Term term : authorTerms) {
+                if (!docTerms.contains(term)) {
+                    docTerms.add(term);
+                }
+            }
+            return docTerms;
+        }
+    }
+
+    /**
+     * Walks the postings of one term, sorted by the book id at its position.
+     */
+    private static final class Cursor implements Comparable<Cursor> {
+        private final Postings postings;
+        private int position;
+        private long bookId;
+
+        private Cursor(Postings postings) {
+            this.postings = postings;
+            this.bookId = postings.get(0);
+        }
+
+        private boolean next() {
+            if (++position == postings.size()) {
+                return false;
+            }
+            bookId = postings.get(position);
+            return true;
+        }
+
+        @Override
+        public int compareTo(Cursor other) {
+            return Long.compare(bookId, other.bookId);
+        }
+    }
+
+    private final class Expansion {
+        private final String word;
+        private final List<Term> terms = new ArrayList<>();
+        private long books;
+        private double bound;
+        private boolean complete = true;
+
+        private Expansion(String word) {
+            this.word = word;
+        }
+
+        /**
+         * @return false once {@code app.search.max-expansions} terms are taken
+         */
+        private boolean add(Term term) {
+            if (terms.size() == maxExpansions) {
+                complete = false;
+                return false;
+            }
+            terms.add(term);
+            books += term.books.size();
+            double match = term.text.equals(word) ? EXACT : term.text.startsWith(word) ? PREFIX : INFIX;
+            bound = Math.max(bound, match * (term.titleBooks > 0 ? TITLE : AUTHOR));
+            return true;
+        }
+
+        /**
+         * The most a book can score for the word. The word itself comes first, a cut expansion misses at most
+         * prefix terms.
+         */
+        private double bound() {
+            return complete ? bound : Math.max(bound, PREFIX * TITLE);
+        }
+
+        /**
+         * A cut expansion misses books, it only drives the search when every word was cut.
+         */
+        private boolean isMoreSelectiveThan(Expansion other) {
+            if (complete != other.complete) {
+                return complete;
+            }
+            return books < other.books;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.edu.ulab.app.search;
+
+import com.edu.ulab.app.config.BackendProperties;
+import com.edu.ulab.app.config.BookSearchProperties;
+import com.edu.ulab.app.dto.BookDto;
+import com.edu.ulab.app.service.backend.Backend;
+import com.edu.ulab.app.shard.Sharding;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fills the {@link BookSearchIndex} from {@code BOOK} of every shard, once at startup before the web server takes
+ * requests. Later writes reach the index through the facade. The memory backend starts empty, and so does its index.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "app.search", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class BookSearchIndexLoader implements SmartInitializingSingleton {
+
+    private static final String SELECT_BOOKS_SQL = "SELECT ID, USER_ID, TITLE, AUTHOR FROM BOOK";
+
+    private final BookSearchIndex bookSearchIndex;
+    private final BookSearchProperties properties;
+    private final BackendProperties backendProperties;
+    private final JdbcTemplate jdbcTemplate;
+    private final Sharding sharding;
+
+    public BookSearchIndexLoader(BookSearchIndex bookSearchIndex, BookSearchProperties properties,
+                                 BackendProperties backendProperties, JdbcTemplate jdbcTemplate, Sharding sharding) {
+        this.bookSearchIndex = bookSearchIndex;
+        this.properties = properties;
+        this.backendProperties = backendProperties;
+        this.jdbcTemplate = jdbcTemplate;
+        this.sharding = sharding;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (backendProperties.getActive() == Backend.MEMORY) {
+            return;
+        }
+        long start = System.nanoTime();
+        for (int shard = 0; shard < sharding.shardCount(); shard++) {
+            sharding.onShard(shard, () -> {
+                load();
+                return null;
+            });
+        }
+        log.info("Indexed {} books for search in {} ms", bookSearchIndex.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private void load() {
+        int fetchSize = properties.getLoadFetchSize();
+        List<BookDto> chunk = new ArrayList<>(fetchSize);
+        jdbcTemplate.query(connection -> {
+                    PreparedStatement ps = connection.prepareStatement(SELECT_BOOKS_SQL,
+                            ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                    ps.setFetchSize(fetchSize);
+                    return ps;
+                },
+                (RowCallbackHandler) rs -> {
+                    BookDto book = new BookDto();
+                    book.setId(rs.getLong("ID"));
+                    book.setUserId(rs.getObject("USER_ID", Long.class));
+                    book.setTitle(rs.getString("TITLE"));
+                    book.setAuthor(rs.getString("AUTHOR"));
+                    chunk.add(book);
+                    if (chunk.size() == fetchSize) {
+                        bookSearchIndex.putAll(chunk);
+                        chunk.clear();
+                    }
+                });
+        bookSearchIndex.putAll(chunk);
+    }
+}
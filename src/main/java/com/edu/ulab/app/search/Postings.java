@@ -0,0 +1,71 @@
+package com.edu.ulab.app.search;
+
+import java.util.Arrays;
+
+/**
+ * Book ids of one term, sorted ascending in a growing array, so a search can walk them in id order.
+ * Ids are added in batches, appended when they are all greater than the last one and merged in from the back
+ * otherwise. Not thread safe.
+ */
+final class Postings {
+
+    private static final int MIN_CAPACITY = 2;
+
+    private long[] ids = new long[MIN_CAPACITY];
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    long get(int index) {
+        return ids[index];
+    }
+
+    /**
+     * Collects an id of a batch, in any order, for {@link #addAll(Postings)}.
+     */
+    void append(long id) {
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size + (size >> 1) + 1);
+        }
+        ids[size++] = id;
+    }
+
+    /**
+     * Adds the ids of a batch, none of them may be here already.
+     */
+    void addAll(Postings batch) {
+        int count = batch.size;
+        if (count == 0) {
+            return;
+        }
+        Arrays.sort(batch.ids, 0, count);
+        if (size + count > ids.length) {
+            ids = Arrays.copyOf(ids, size + count + ((size + count) >> 1));
+        }
+        if (size == 0 || batch.ids[0] > ids[size - 1]) {
+            System.arraycopy(batch.ids, 0, ids, size, count);
+        } else {
+            int i = size - 1;
+            int j = count - 1;
+            for (int k = size + count - 1; j >= 0; k--) {
+                ids[k] = i >= 0 && ids[i] > batch.ids[j] ? ids[i--] : batch.ids[j--];
+            }
+        }
+        size += count;
+    }
+
+    boolean remove(long id) {
+        int index = Arrays.binarySearch(ids, 0, size, id);
+        if (index < 0) {
+            return false;
+        }
+        System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+        size--;
+        if (size > MIN_CAPACITY && size < ids.length / 4) {
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        return true;
+    }
+}
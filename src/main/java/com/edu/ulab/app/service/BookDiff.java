@@ -0,0 +1,78 @@
+package com.edu.ulab.app.service;
+
+import com.edu.ulab.app.dto.BookDto;
+import com.edu.ulab.app.entity.Book;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Submitted books of a user against the stored ones: without id they are new, with the id of a stored book
+ * they are changed or unchanged, any other id is unknown. A submitted book with a version other than the stored
+ * one is also stale, the client based it on a book that changed since.
+ */
+@Getter
+public final class BookDiff {
+
+    private final List<BookDto> created = new ArrayList<>();
+    private final List<BookDto> changed = new ArrayList<>();
+    private final List<Long> unknownIds = new ArrayList<>();
+    private final List<Long> staleIds = new ArrayList<>();
+    private int unchanged;
+
+    private BookDiff() {
+    }
+
+    /**
+     * @param current stored books of the user by id
+     */
+    public static BookDiff of(Map<Long, Book> current, List<BookDto> wanted) {
+        BookDiff diff = new BookDiff();
+        for (BookDto bookDto : wanted) {
+            if (bookDto.getId() == null) {
+                diff.created.add(bookDto);
+                continue;
+            }
+            Book book = current.get(bookDto.getId());
+            if (book == null) {
+                diff.unknownIds.add(bookDto.getId());
+                continue;
+            }
+            if (bookDto.getVersion() != null && bookDto.getVersion() != book.getVersion()) {
+                diff.staleIds.add(bookDto.getId());
+            }
+            if (isSame(book, bookDto)) {
+                diff.unchanged++;
+            } else {
+                diff.changed.add(bookDto);
+            }
+        }
+        return diff;
+    }
+
+    /**
+     * Takes the ids and versions of the written books into the submitted ones.
+     *
+     * @param written the changed books followed by the created ones, in the order of this diff
+     */
+    public void applyWritten(List<Book> written) {
+        int i = 0;
+        for (BookDto bookDto : changed) {
+            bookDto.setVersion(written.get(i++).getVersion());
+        }
+        for (BookDto bookDto : created) {
+            Book book = written.get(i++);
+            bookDto.setId(book.getId());
+            bookDto.setVersion(book.getVersion());
+        }
+    }
+
+    private static boolean isSame(Book book, BookDto bookDto) {
+        return Objects.equals(book.getTitle(), bookDto.getTitle())
+                && Objects.equals(book.getAuthor(), bookDto.getAuthor())
+                && book.getPageCount() == bookDto.getPageCount();
+    }
+}
@@ -4,15 +4,44 @@ package com.edu.ulab.app.service;
 import com.edu.ulab.app.dto.BookDto;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface BookService {
     BookDto createBook(BookDto bookDto);
 
+    List<BookDto> createBooks(List<BookDto> bookDtoList);
+
     BookDto updateBook(BookDto bookDto);
 
+    /**
+     * Brings the books of the user in line with {@code bookDtoList} in one transaction, see {@link BookDiff}:
+     * new books are inserted, changed books updated, unchanged books cost no statement. Books of the user missing
+     * from the list are kept. New books get their id set.
+     *
+     * @throws com.edu.ulab.app.exception.NotFoundException when a book id is not one of the user books
+     */
+    List<BookDto> updateBooks(Long userId, List<BookDto> bookDtoList);
+
     BookDto getBookById(Long id);
 
     void deleteBookById(Long id);
 
+    /**
+     * Deletes all books of the user in one statement, for a user that is deleted: no change version is bumped.
+     *
+     * @return the deleted books
+     */
+    List<BookDto> deleteBooksByUserId(Long userId);
+
     List<BookDto> getBookByUserId(Long userId);
+
+    /**
+     * Keyset page of the user books ordered by id: at most {@code limit} books with id greater than {@code afterId}.
+     */
+    List<BookDto> getBookPageByUserId(Long userId, long afterId, int limit);
+
+    /**
+     * Hands the user books ordered by id to the consumer one by one, without collecting them.
+     */
+    void streamBookByUserId(Long userId, Consumer<BookDto> consumer);
 }
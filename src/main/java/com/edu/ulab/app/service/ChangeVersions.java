@@ -0,0 +1,56 @@
+package com.edu.ulab.app.service;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * {@code PERSON.CHANGE_VERSION}, bumped by every write of the user or of the user books, the ETag of the user reads.
+ * <p>
+ * Writers bump in the transaction of their change as its last statement, after the version checked write, so a
+ * reader that sees a version also sees the data it was bumped for and optimistic writers hold the row lock on the
+ * person only from the bump to the commit. Every writer locks {@code BOOK} rows before the person, never the other
+ * way round. Not mapped by JPA, Hibernate never writes the column back.
+ */
+@Component
+public class ChangeVersions {
+
+    private static final String GET_SQL = "SELECT CHANGE_VERSION FROM PERSON WHERE ID = ?";
+    private static final String BUMP_SQL = "UPDATE PERSON SET CHANGE_VERSION = CHANGE_VERSION + 1 WHERE ID = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ChangeVersions(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * @return the version, {@code null} for an unknown user
+     */
+    public Long get(Long userId) {
+        List<Long> versions = jdbcTemplate.queryForList(GET_SQL, Long.class, userId);
+        return versions.isEmpty() ? null : versions.get(0);
+    }
+
+    public void bump(Long userId) {
+        jdbcTemplate.update(BUMP_SQL, userId);
+    }
+
+    /**
+     * Bumps every user once, in id order so two writers never wait on each other crosswise.
+     */
+    public void bump(Collection<Long> userIds) {
+        List<Object[]> ids = userIds.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .sorted()
+                .map(userId -> new Object[]{userId})
+                .toList();
+        if (!ids.isEmpty()) {
+            jdbcTemplate.batchUpdate(BUMP_SQL, ids);
+        }
+    }
+}
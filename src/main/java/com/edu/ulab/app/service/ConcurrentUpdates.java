@@ -0,0 +1,96 @@
+package com.edu.ulab.app.service;
+
+import com.edu.ulab.app.config.ConcurrencyProperties;
+import com.edu.ulab.app.exception.ServiceException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Runs an update attempt in its own transaction. In the optimistic mode an {@link OptimisticLockingFailureException},
+ * thrown by Hibernate for a stale {@code @Version} or by the JdbcTemplate services when a compare-and-set UPDATE
+ * matched no row, rolls the attempt back and retries it after a random pause growing with the attempts.
+ * Conflicts are counted as {@code app.update.conflicts{operation,result=retried|exhausted}}.
+ * <p>
+ * The attempt has to be repeatable: it reads the current rows itself and must not leave changes on its
+ * arguments that a second attempt would trip over.
+ */
+@Slf4j
+@Component
+public class ConcurrentUpdates {
+
+    private final ConcurrencyProperties properties;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    public ConcurrentUpdates(ConcurrencyProperties properties,
+                             PlatformTransactionManager transactionManager,
+                             MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * @return whether the attempt should read the rows it changes with a row lock
+     */
+    public boolean isPessimistic() {
+        return properties.getMode() == ConcurrencyProperties.LockMode.PESSIMISTIC;
+    }
+
+    /**
+     * @throws ServiceException with 409 when the optimistic attempts are exhausted
+     */
+    public <T> T update(String operation, Supplier<T> attempt) {
+        if (isPessimistic()) {
+            return transactionTemplate.execute(status -> attempt.get());
+        }
+        for (int attemptNumber = 1; ; attemptNumber++) {
+            try {
+                return transactionTemplate.execute(status -> attempt.get());
+            } catch (OptimisticLockingFailureException e) {
+                if (attemptNumber >= properties.getMaxAttempts()) {
+                    conflicts(operation, "exhausted").increment();
+                    throw new ServiceException(String.format("%s failed : concurrent updates, gave up after %s attempts",
+                            operation, attemptNumber), HttpStatus.CONFLICT);
+                }
+                conflicts(operation, "retried").increment();
+                log.debug("{} conflict on attempt {} : {}", operation, attemptNumber, e.getMessage());
+                pause(attemptNumber);
+            }
+        }
+    }
+
+    /**
+     * Full jitter, so writers that collided once do not collide again in lockstep.
+     */
+    private void pause(int attemptNumber) {
+        long bound = Math.min(properties.getMaxBackoff().toNanos(),
+                properties.getInitialBackoff().toNanos() << Math.min(attemptNumber - 1, 20));
+        if (bound <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(ThreadLocalRandom.current().nextLong(bound + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceException("Update interrupted", HttpStatus.SERVICE_UNAVAILABLE);
+        }
+    }
+
+    private Counter conflicts(String operation, String result) {
+        return Counter.builder("app.update.conflicts")
+                .tag("operation", operation)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
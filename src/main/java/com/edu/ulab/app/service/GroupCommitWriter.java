@@ -0,0 +1,288 @@
+package com.edu.ulab.app.service;
+
+import com.edu.ulab.app.config.BackendProperties;
+import com.edu.ulab.app.config.GroupCommitProperties;
+import com.edu.ulab.app.dto.BookDto;
+import com.edu.ulab.app.dto.UserDto;
+import com.edu.ulab.app.exception.ServiceException;
+import com.edu.ulab.app.jdbc.ReadWriteRoutingDataSource;
+import com.edu.ulab.app.service.backend.Backend;
+import com.edu.ulab.app.shard.Sharding;
+import com.edu.ulab.app.utility.IdGenerator;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the users created with their books by concurrent requests together: a user waits in the queue of its
+ * database until the group holds {@code app.group-commit.max-rows} rows or its first user waited
+ * {@code app.group-commit.max-delay}, then one thread per database inserts the whole group with two batches in a
+ * single transaction. Many small commits become one, the callers only wait for it.
+ * <p>
+ * The future of a user completes with the ids once the group committed. A group failing as a whole is written
+ * again user by user, so a bad user fails alone. With sharding every database has its own queue, the users of a
+ * group share a logical shard.
+ * Groups are measured as {@code app.group-commit.rows} and {@code app.group-commit.flush}, the wait of a user from
+ * the queue to the commit as {@code app.group-commit.latency}.
+ */
+@Slf4j
+@Component
+public class GroupCommitWriter implements DisposableBean {
+
+    private static final String INSERT_USER_SQL = "INSERT INTO PERSON(ID, FULL_NAME, TITLE, AGE) VALUES (?,?,?,?)";
+    private static final String INSERT_BOOK_SQL = "INSERT INTO BOOK(ID, TITLE, AUTHOR, PAGE_COUNT, USER_ID) VALUES (?,?,?,?,?)";
+
+    private static final long IDLE_POLL_MILLIS = 100;
+    private static final long SHUTDOWN_MILLIS = 5_000;
+
+    private final boolean enabled;
+    private final int maxRows;
+    private final long maxDelayNanos;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final IdGenerator idGenerator;
+    private final Sharding sharding;
+    private final ReadWriteRoutingDataSource readWriteRouting;
+    private final List<BlockingQueue<Pending>> queues = new ArrayList<>();
+    private final List<Thread> flushers = new ArrayList<>();
+    private final DistributionSummary groupRows;
+    private final Timer flushTimer;
+    private final Timer latencyTimer;
+    private volatile boolean running = true;
+
+    public GroupCommitWriter(GroupCommitProperties properties,
+                             BackendProperties backendProperties,
+                             JdbcTemplate jdbcTemplate,
+                             PlatformTransactionManager transactionManager,
+                             IdGenerator idGenerator,
+                             Sharding sharding,
+                             DataSource dataSource,
+                             MeterRegistry meterRegistry) throws SQLException {
+        // The memory backend has no transaction to share.
+        this.enabled = properties.isEnabled() && backendProperties.getActive() != Backend.MEMORY;
+        this.maxRows = properties.getMaxRows();
+        this.maxDelayNanos = properties.getMaxDelay().toNanos();
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.idGenerator = idGenerator;
+        this.sharding = sharding;
+        this.readWriteRouting = dataSource.isWrapperFor(ReadWriteRoutingDataSource.class)
+                ? dataSource.unwrap(ReadWriteRoutingDataSource.class)
+                : null;
+        this.groupRows = DistributionSummary.builder("app.group-commit.rows")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("app.group-commit.flush")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.latencyTimer = Timer.builder("app.group-commit.latency")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        if (!enabled) {
+            return;
+        }
+
+        ThreadFactory threadFactory = new CustomizableThreadFactory("group-commit-");
+        for (int shard = 0; shard < sharding.shardCount(); shard++) {
+            BlockingQueue<Pending> queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+            queues.add(queue);
+            Gauge.builder("app.group-commit.pending", queue, BlockingQueue::size)
+                    .tag("target", sharding.isEnabled() ? sharding.shardName(shard) : "primary")
+                    .register(meterRegistry);
+            int target = shard;
+            Thread flusher = threadFactory.newThread(() -> flushLoop(target, queue));
+            flushers.add(flusher);
+            flusher.start();
+        }
+        log.info("Group commit : up to {} rows or {} per group, {} writer threads",
+                maxRows, properties.getMaxDelay(), flushers.size());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queues the user with its {@link UserDto#getBooks() books} for the next group.
+     *
+     * @return completes with the user, its id and the ids of its books set, once the group committed
+     */
+    public CompletableFuture<UserDto> submit(UserDto userDto) {
+        if (!enabled) {
+            throw new IllegalStateException("Group commit is off");
+        }
+        List<BookDto> books = userDto.getBooks() == null ? List.of() : userDto.getBooks();
+        Pending pending = new Pending(userDto, books, MDC.get("requestId"), System.nanoTime(), new CompletableFuture<>());
+        BlockingQueue<Pending> queue = queues.get(sharding.newUserShard());
+        try {
+            queue.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceException("Create user failed : interrupted while queued", HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        if (!running && queue.remove(pending)) {
+            // Raced with the shutdown, the writer may have stopped already.
+            pending.future().completeExceptionally(shuttingDown());
+        }
+        return pending.future();
+    }
+
+    /**
+     * {@link #submit} and waits for the commit.
+     */
+    public UserDto createUserWithBooks(UserDto userDto) {
+        try {
+            return submit(userDto).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private void flushLoop(int shard, BlockingQueue<Pending> queue) {
+        List<Pending> group = new ArrayList<>();
+        try {
+            // Stopping, the users queued so far are still written.
+            while (running || !queue.isEmpty()) {
+                Pending first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+                int rows = first.rows();
+                long deadline = first.queuedAt() + maxDelayNanos;
+                while (rows < maxRows) {
+                    Pending next = queue.poll();
+                    if (next == null) {
+                        long wait = deadline - System.nanoTime();
+                        if (wait <= 0 || (next = queue.poll(wait, TimeUnit.NANOSECONDS)) == null) {
+                            break;
+                        }
+                    }
+                    group.add(next);
+                    rows += next.rows();
+                }
+                flush(shard, group, rows);
+                group.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            group.forEach(pending -> pending.future().completeExceptionally(shuttingDown()));
+            queue.forEach(pending -> pending.future().completeExceptionally(shuttingDown()));
+        }
+    }
+
+    private void flush(int shard, List<Pending> group, int rows) {
+        long start = System.nanoTime();
+        try {
+            write(shard, group);
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            groupRows.record(rows);
+            committed(group);
+        } catch (RuntimeException e) {
+            if (group.size() == 1) {
+                failed(group.get(0), e);
+                return;
+            }
+            log.warn("Group commit of {} users failed, writing them one by one : {}", group.size(), e.getMessage());
+            for (Pending pending : group) {
+                try {
+                    write(shard, List.of(pending));
+                    committed(List.of(pending));
+                } catch (RuntimeException single) {
+                    failed(pending, single);
+                }
+            }
+        }
+    }
+
+    /**
+     * Ids come from the sequence blocks of the database, a failed attempt gives them up and the next one draws new.
+     */
+    private void write(int shard, List<Pending> group) {
+        sharding.onShard(shard, () -> transactionTemplate.execute(status -> {
+            List<Object[]> userArgs = new ArrayList<>(group.size());
+            List<Object[]> bookArgs = new ArrayList<>();
+            for (Pending pending : group) {
+                UserDto userDto = pending.user();
+                userDto.setId(idGenerator.nextUserId());
+                userDto.setVersion(0L);
+                userArgs.add(new Object[]{userDto.getId(), userDto.getFullName(), userDto.getTitle(), userDto.getAge()});
+                for (BookDto bookDto : pending.books()) {
+                    bookDto.setId(idGenerator.nextBookId());
+                    bookDto.setVersion(0L);
+                    bookDto.setUserId(userDto.getId());
+                    bookArgs.add(new Object[]{bookDto.getId(), bookDto.getTitle(), bookDto.getAuthor(), bookDto.getPageCount(), bookDto.getUserId()});
+                }
+            }
+            jdbcTemplate.batchUpdate(INSERT_USER_SQL, userArgs);
+            if (!bookArgs.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_BOOK_SQL, bookArgs);
+            }
+            return null;
+        }));
+    }
+
+    private void committed(List<Pending> group) {
+        if (readWriteRouting != null) {
+            readWriteRouting.rememberWrites(group.stream().map(Pending::requestId).toList());
+        }
+        long now = System.nanoTime();
+        for (Pending pending : group) {
+            latencyTimer.record(now - pending.queuedAt(), TimeUnit.NANOSECONDS);
+            pending.future().complete(pending.user());
+        }
+    }
+
+    private static void failed(Pending pending, RuntimeException e) {
+        log.debug("Group commit of user {} failed : {}", pending.user().getFullName(), e.getMessage());
+        pending.future().completeExceptionally(e instanceof ServiceException
+                ? e
+                : new ServiceException("Create user failed.", HttpStatus.BAD_REQUEST));
+    }
+
+    private static ServiceException shuttingDown() {
+        return new ServiceException("Create user failed : shutting down", HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        for (Thread flusher : flushers) {
+            flusher.join(SHUTDOWN_MILLIS);
+            flusher.interrupt();
+        }
+    }
+
+    private record Pending(UserDto user, List<BookDto> books, String requestId, long queuedAt,
+                           CompletableFuture<UserDto> future) {
+
+        int rows() {
+            return 1 + books.size();
+        }
+    }
+}
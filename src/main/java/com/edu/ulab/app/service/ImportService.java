@@ -0,0 +1,12 @@
+package com.edu.ulab.app.service;
+
+import com.edu.ulab.app.dto.UserDto;
+
+import java.util.List;
+
+public interface ImportService {
+    /**
+     * Creates the users and their books in one transaction and sets the generated user ids.
+     */
+    List<UserDto> importUsersWithBooks(List<UserDto> userDtoList);
+}
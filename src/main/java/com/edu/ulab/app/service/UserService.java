@@ -11,5 +11,12 @@ public interface UserService {
 
     UserDto getUserById(Long id);
 
+    /**
+     * Version bumped by every change of the user or of the user books, cheaper to read than the user.
+     *
+     * @return the version, {@code null} for an unknown user
+     */
+    Long getChangeVersion(Long id);
+
     void deleteUserById(Long id);
 }
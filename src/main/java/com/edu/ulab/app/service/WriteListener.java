@@ -0,0 +1,16 @@
+package com.edu.ulab.app.service;
+
+import com.edu.ulab.app.dto.BookDto;
+import com.edu.ulab.app.dto.UserDto;
+
+/**
+ * Told by the {@link UserService} and {@link BookService} backends about every row they wrote, with the row as they
+ * read it for the write: {@code before} is {@code null} for a created row, {@code after} for a deleted one.
+ * Called inside the transaction of the write when there is one, also by attempts that are rolled back later.
+ */
+public interface WriteListener {
+
+    void userWritten(UserDto before, UserDto after);
+
+    void bookWritten(BookDto before, BookDto after);
+}
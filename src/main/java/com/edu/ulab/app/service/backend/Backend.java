@@ -0,0 +1,25 @@
+package com.edu.ulab.app.service.backend;
+
+import com.edu.ulab.app.metrics.Monitored;
+
+/**
+ * Implementations of {@link com.edu.ulab.app.service.UserService} and {@link com.edu.ulab.app.service.BookService}.
+ */
+public enum Backend {
+    JPA(Monitored.JPA),
+    JDBC(Monitored.JDBC),
+    MEMORY(Monitored.MEMORY);
+
+    private final String tag;
+
+    Backend(String tag) {
+        this.tag = tag;
+    }
+
+    /**
+     * @return the value of the {@code backend} metric tag
+     */
+    public String tag() {
+        return tag;
+    }
+}
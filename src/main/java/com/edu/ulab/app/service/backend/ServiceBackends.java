@@ -0,0 +1,108 @@
+package com.edu.ulab.app.service.backend;
+
+import com.edu.ulab.app.config.BackendProperties;
+import com.edu.ulab.app.service.BookService;
+import com.edu.ulab.app.service.ImportService;
+import com.edu.ulab.app.service.UserService;
+import com.edu.ulab.app.service.impl.BookServiceImpl;
+import com.edu.ulab.app.service.impl.BookServiceImplTemplate;
+import com.edu.ulab.app.service.impl.ImportServiceImplTemplate;
+import com.edu.ulab.app.service.impl.UserServiceImpl;
+import com.edu.ulab.app.service.impl.UserServiceImplTemplate;
+import com.edu.ulab.app.shard.Sharding;
+import com.edu.ulab.app.stats.LibraryStats;
+import com.edu.ulab.app.storage.Storage;
+import com.edu.ulab.app.utility.ExceptionUtility;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Resolves the services of the {@code app.backend.active} backend, wrapped with the shadow reads when
+ * {@code app.backend.shadow.enabled} is set. With {@code app.shards.enabled} every backend is routed to the shard
+ * of the user first, so the shadow reads on their own threads are routed as well. With {@code app.stats.enabled}
+ * the writes that succeeded update the {@link LibraryStats} last, once per write whatever the backends.
+ */
+@Slf4j
+@Component
+public class ServiceBackends {
+
+    private final Map<Backend, UserService> userServices = new EnumMap<>(Backend.class);
+    private final Map<Backend, BookService> bookServices = new EnumMap<>(Backend.class);
+    private final UserService userService;
+    private final BookService bookService;
+    private final ImportService importService;
+
+    public ServiceBackends(UserServiceImpl userServiceImpl,
+                           BookServiceImpl bookServiceImpl,
+                           UserServiceImplTemplate userServiceImplTemplate,
+                           BookServiceImplTemplate bookServiceImplTemplate,
+                           ImportServiceImplTemplate importServiceImplTemplate,
+                           Storage storage,
+                           BackendProperties properties,
+                           ShadowTraffic shadowTraffic,
+                           Sharding sharding,
+                           LibraryStats libraryStats,
+                           ExceptionUtility exceptionUtility) {
+        userServices.put(Backend.JPA, userServiceImpl);
+        bookServices.put(Backend.JPA, bookServiceImpl);
+        userServices.put(Backend.JDBC, userServiceImplTemplate);
+        bookServices.put(Backend.JDBC, bookServiceImplTemplate);
+        userServices.put(Backend.MEMORY, storage);
+        bookServices.put(Backend.MEMORY, storage);
+        ImportService importService = importServiceImplTemplate;
+        if (sharding.isEnabled()) {
+            userServices.replaceAll((backend, service) -> new ShardedUserService(service, sharding));
+            bookServices.replaceAll((backend, service) -> new ShardedBookService(service, sharding));
+            importService = new ShardedImportService(importService, sharding, exceptionUtility);
+        }
+
+        Backend active = properties.getActive();
+        Backend shadow = properties.getShadow().getBackend();
+        UserService userService;
+        BookService bookService;
+        if (properties.getShadow().isEnabled() && shadow != active) {
+            userService = new ShadowUserService(userServices.get(active), userServices.get(shadow), shadowTraffic);
+            bookService = new ShadowBookService(bookServices.get(active), bookServices.get(shadow), shadowTraffic);
+            log.info("Service backend : {} with {} shadow reads of {}", active, shadow, properties.getShadow().getReadFraction());
+        } else {
+            userService = userServices.get(active);
+            bookService = bookServices.get(active);
+            log.info("Service backend : {}", active);
+        }
+
+        if (libraryStats.isEnabled()) {
+            userService = new StatsUserService(userService, libraryStats);
+            bookService = new StatsBookService(bookService, libraryStats);
+            importService = new StatsImportService(importService, libraryStats);
+        }
+        this.userService = userService;
+        this.bookService = bookService;
+        this.importService = importService;
+    }
+
+    public UserService userService() {
+        return userService;
+    }
+
+    public BookService bookService() {
+        return bookService;
+    }
+
+    /**
+     * The import always writes through the {@code JdbcTemplate}.
+     */
+    public ImportService importService() {
+        return importService;
+    }
+
+    public UserService userService(Backend backend) {
+        return userServices.get(backend);
+    }
+
+    public BookService bookService(Backend backend) {
+        return bookServices.get(backend);
+    }
+}
@@ -0,0 +1,77 @@
+package com.edu.ulab.app.service.backend;
+
+import com.edu.ulab.app.dto.BookDto;
+import com.edu.ulab.app.service.BookService;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Writes and streams go to the primary backend only, the other reads are mirrored through {@link ShadowTraffic}.
+ */
+class ShadowBookService implements BookService {
+
+    private final BookService primary;
+    private final BookService shadow;
+    private final ShadowTraffic shadowTraffic;
+
+    ShadowBookService(BookService primary, BookService shadow, ShadowTraffic shadowTraffic) {
+        this.primary = primary;
+        this.shadow = shadow;
+        this.shadowTraffic = shadowTraffic;
+    }
+
+    @Override
+    public BookDto createBook(BookDto bookDto) {
+        return primary.createBook(bookDto);
+    }
+
+    @Override
+    public List<BookDto> createBooks(List<BookDto> bookDtoList) {
+        return primary.createBooks(bookDtoList);
+    }
+
+    @Override
+    public BookDto updateBook(BookDto bookDto) {
+        return primary.updateBook(bookDto);
+    }
+
+    @Override
+    public List<BookDto> updateBooks(Long userId, List<BookDto> bookDtoList) {
+        return primary.updateBooks(userId, bookDtoList);
+    }
+
+    @Override
+    public BookDto getBookById(Long id) {
+        return shadowTraffic.read("getBookById", () -> primary.getBookById(id), () -> shadow.getBookById(id));
+    }
+
+    @Override
+    public void deleteBookById(Long id) {
+        primary.deleteBookById(id);
+    }
+
+    @Override
+    public List<BookDto> deleteBooksByUserId(Long userId) {
+        return primary.deleteBooksByUserId(userId);
+    }
+
+    @Override
+    public List<BookDto> getBookByUserId(Long userId) {
+        return shadowTraffic.read("getBookByUserId",
+                () -> primary.getBookByUserId(userId),
+                () -> shadow.getBookByUserId(userId));
+    }
+
+    @Override
+    public List<BookDto> getBookPageByUserId(Long userId, long afterId, int limit) {
+        return shadowTraffic.read("getBookPageByUserId",
+                () -> primary.getBookPageByUserId(userId, afterId, limit),
+                () -> shadow.getBookPageByUserId(userId, afterId, limit));
+    }
+
+    @Override
+    public void streamBookByUserId(Long userId, Consumer<BookDto> consumer) {
+        primary.streamBookByUserId(userId, consumer);
+    }
+}
@@ -0,0 +1,135 @@
+package com.edu.ulab.app.service.backend;
+
+import com.edu.ulab.app.config.BackendProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Runs a sampled read on the primary backend in the caller thread and the same read on the shadow backend in a
+ * small background pool, so the shadow never adds latency to the request.
+ * Both are timed as {@code app.shadow.read{operation,backend,role=primary|shadow}} and the results compared as
+ * {@code app.shadow.comparisons{operation,result=match|mismatch|dropped}}.
+ * Results are compared by their {@code toString()}, taken in the caller thread before the facade can change them;
+ * collections are compared regardless of order and an exception matches the same exception type.
+ */
+@Slf4j
+@Component
+public class ShadowTraffic implements DisposableBean {
+
+    private static final String MATCH = "match";
+    private static final String MISMATCH = "mismatch";
+    private static final String DROPPED = "dropped";
+
+    private final BackendProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final ExecutorService executor;
+
+    public ShadowTraffic(BackendProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        BackendProperties.Shadow shadow = properties.getShadow();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                shadow.getPoolSize(), shadow.getPoolSize(),
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(shadow.getQueueCapacity()),
+                new CustomizableThreadFactory("shadow-"),
+                (task, executor) -> {
+                    throw new RejectedExecutionException("Shadow executor is saturated");
+                });
+        this.executor = ExecutorServiceMetrics.monitor(meterRegistry, pool, "shadow");
+    }
+
+    public <T> T read(String operation, Supplier<T> primary, Supplier<T> shadow) {
+        if (ThreadLocalRandom.current().nextDouble() >= properties.getShadow().getReadFraction()) {
+            return primary.get();
+        }
+        long start = System.nanoTime();
+        T result = null;
+        RuntimeException failure = null;
+        try {
+            result = primary.get();
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+        timer(operation, properties.getActive(), "primary").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        String expected = failure != null ? failure.getClass().getName() : snapshot(result);
+        try {
+            executor.execute(() -> compare(operation, expected, shadow));
+        } catch (RejectedExecutionException e) {
+            comparisons(operation, DROPPED).increment();
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+        return result;
+    }
+
+    private <T> void compare(String operation, String expected, Supplier<T> shadow) {
+        long start = System.nanoTime();
+        String actual;
+        try {
+            actual = snapshot(shadow.get());
+        } catch (RuntimeException e) {
+            actual = e.getClass().getName();
+        } finally {
+            timer(operation, properties.getShadow().getBackend(), "shadow").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        if (Objects.equals(expected, actual)) {
+            comparisons(operation, MATCH).increment();
+        } else {
+            comparisons(operation, MISMATCH).increment();
+            log.warn("Shadow {} mismatch : {} returned {}, {} returned {}", operation,
+                    properties.getActive(), expected, properties.getShadow().getBackend(), actual);
+        }
+    }
+
+    private static String snapshot(Object result) {
+        if (result instanceof Collection<?> collection) {
+            return collection.stream()
+                    .map(String::valueOf)
+                    .sorted()
+                    .collect(Collectors.joining(", ", "[", "]"));
+        }
+        return String.valueOf(result);
+    }
+
+    private Timer timer(String operation, Backend backend, String role) {
+        return Timer.builder("app.shadow.read")
+                .tag("operation", operation)
+                .tag("backend", backend.tag())
+                .tag("role", role)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+
+    private Counter comparisons(String operation, String result) {
+        return Counter.builder("app.shadow.comparisons")
+                .tag("operation", operation)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,46 @@
+package com.edu.ulab.app.service.backend;
+
+import com.edu.ulab.app.dto.UserDto;
+import com.edu.ulab.app.service.UserService;
+
+/**
+ * Writes go to the primary backend only, reads are mirrored through {@link ShadowTraffic}.
+ */
+class ShadowUserService implements UserService {
+
+    private final UserService primary;
+    private final UserService shadow;
+    private final ShadowTraffic shadowTraffic;
+
+    ShadowUserService(UserService primary, UserService shadow, ShadowTraffic shadowTraffic) {
+        this.primary = primary;
+        this.shadow = shadow;
+        this.shadowTraffic = shadowTraffic;
+    }
+
+    @Override
+    public UserDto createUser(UserDto userDto) {
+        return primary.createUser(userDto);
+    }
+
+    @Override
+    public UserDto updateUser(UserDto userDto) {
+        return primary.updateUser(userDto);
+    }
+
+    @Override
+    public UserDto getUserById(Long id) {
+        return shadowTraffic.read("getUserById", () -> primary.getUserById(id), () -> shadow.getUserById(id));
+    }
+
+    @Override
+    public Long getChangeVersion(Long id) {
+        // Every backend counts its own changes, the versions are not comparable.
+        return primary.getChangeVersion(id);
+    }
+
+    @Override
+    public void deleteUserById(Long id) {
+        primary.deleteUserById(id);
+    }
+}
@@ -0,0 +1,139 @@
+package com.edu.ulab.app.service.backend;
+
+import com.edu.ulab.app.dto.BookDto;
+import com.edu.ulab.app.exception.NotFoundException;
+import com.edu.ulab.app.exception.ServiceException;
+import com.edu.ulab.app.service.BookService;
+import com.edu.ulab.app.shard.Sharding;
+import org.springframework.http.HttpStatus;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Runs every call on the shard of the book owner. Calls by book id alone go to the shard the id names.
+ */
+class ShardedBookService implements BookService {
+
+    private final BookService delegate;
+    private final Sharding sharding;
+
+    ShardedBookService(BookService delegate, Sharding sharding) {
+        this.delegate = delegate;
+        this.sharding = sharding;
+    }
+
+    @Override
+    public BookDto createBook(BookDto bookDto) {
+        return sharding.onUser(bookDto == null ? null : bookDto.getUserId(), () -> delegate.createBook(bookDto));
+    }
+
+    @Override
+    public List<BookDto> createBooks(List<BookDto> bookDtoList) {
+        List<Long> userIds = bookDtoList == null ? List.of() : bookDtoList.stream()
+                .filter(Objects::nonNull)
+                .map(BookDto::getUserId)
+                .distinct()
+                .toList();
+        if (userIds.size() <= 1) {
+            Long userId = userIds.isEmpty() ? null : userIds.get(0);
+            return sharding.onUser(userId, () -> delegate.createBooks(bookDtoList));
+        }
+        // Books of several users: one call per user, the created books keep the order of the list.
+        Map<Long, List<Integer>> positions = new LinkedHashMap<>();
+        for (int i = 0; i < bookDtoList.size(); i++) {
+            positions.computeIfAbsent(bookDtoList.get(i).getUserId(), userId -> new ArrayList<>()).add(i);
+        }
+        BookDto[] created = new BookDto[bookDtoList.size()];
+        positions.forEach((userId, indexes) -> {
+            List<BookDto> books = sharding.onUser(userId,
+                    () -> delegate.createBooks(indexes.stream().map(bookDtoList::get).toList()));
+            for (int i = 0; i < indexes.size(); i++) {
+                created[indexes.get(i)] = books.get(i);
+            }
+        });
+        return Arrays.asList(created);
+    }
+
+    /**
+     * A book stays on the shard of its first owner: a move to a user on another shard is rejected.
+     */
+    @Override
+    public BookDto updateBook(BookDto bookDto) {
+        if (bookDto == null || bookDto.getUserId() == null) {
+            return sharding.onBook(bookDto == null ? null : bookDto.getId(), () -> delegate.updateBook(bookDto));
+        }
+        try {
+            return sharding.onUser(bookDto.getUserId(), () -> delegate.updateBook(bookDto));
+        } catch (NotFoundException e) {
+            if (isOnOtherShard(bookDto)) {
+                throw new ServiceException(String.format("Update book failed : book with id = %s can not move to user with id = %s on another shard",
+                        bookDto.getId(), bookDto.getUserId()), HttpStatus.BAD_REQUEST);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Whether the book exists on the shard its id names and the new owner lives on another. Asked only after the
+     * update missed the book on the shard of the new owner.
+     */
+    private boolean isOnOtherShard(BookDto bookDto) {
+        if (!sharding.isEnabled() || bookDto.getId() == null
+                || sharding.shardOf(bookDto.getId()) == sharding.shardOf(bookDto.getUserId())) {
+            return false;
+        }
+        try {
+            sharding.onBook(bookDto.getId(), () -> delegate.getBookById(bookDto.getId()));
+            return true;
+        } catch (NotFoundException | ServiceException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public List<BookDto> updateBooks(Long userId, List<BookDto> bookDtoList) {
+        return sharding.onUser(userId, () -> delegate.updateBooks(userId, bookDtoList));
+    }
+
+    @Override
+    public BookDto getBookById(Long id) {
+        return sharding.onBook(id, () -> delegate.getBookById(id));
+    }
+
+    @Override
+    public void deleteBookById(Long id) {
+        sharding.onBook(id, () -> {
+            delegate.deleteBookById(id);
+            return null;
+        });
+    }
+
+    @Override
+    public List<BookDto> deleteBooksByUserId(Long userId) {
+        return sharding.onUser(userId, () -> delegate.deleteBooksByUserId(userId));
+    }
+
+    @Override
+    public List<BookDto> getBookByUserId(Long userId) {
+        return sharding.onUser(userId, () -> delegate.getBookByUserId(userId));
+    }
+
+    @Override
+    public List<BookDto> getBookPageByUserId(Long userId, long afterId, int limit) {
+        return sharding.onUser(userId, () -> delegate.getBookPageByUserId(userId, afterId, limit));
+    }
+
+    @Override
+    public void streamBookByUserId(Long userId, Consumer<BookDto> consumer) {
+        sharding.onUser(userId, () -> {
+            delegate.streamBookByUserId(userId, consumer);
+            return null;
+        });
+    }
+}
@@ -0,0 +1,55 @@
+package com.edu.ulab.app.service.backend;
+
+import com.edu.ulab.app.dto.UserDto;
+import com.edu.ulab.app.exception.ServiceException;
+import com.edu.ulab.app.service.ImportService;
+import com.edu.ulab.app.shard.Sharding;
+import com.edu.ulab.app.utility.ExceptionUtility;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Spreads the users of a batch over the shards and imports every part on its shard. A batch is only atomic per
+ * shard: when a later part fails, the parts already written stay, which the error tells.
+ */
+class ShardedImportService implements ImportService {
+
+    private final ImportService delegate;
+    private final Sharding sharding;
+    private final ExceptionUtility exceptionUtility;
+
+    ShardedImportService(ImportService delegate, Sharding sharding, ExceptionUtility exceptionUtility) {
+        this.delegate = delegate;
+        this.sharding = sharding;
+        this.exceptionUtility = exceptionUtility;
+    }
+
+    @Override
+    public List<UserDto> importUsersWithBooks(List<UserDto> userDtoList) {
+        if (userDtoList == null || userDtoList.isEmpty()) {
+            return delegate.importUsersWithBooks(userDtoList);
+        }
+        Map<Integer, List<UserDto>> parts = new TreeMap<>();
+        for (UserDto userDto : userDtoList) {
+            parts.computeIfAbsent(sharding.newUserShard(), shard -> new ArrayList<>()).add(userDto);
+        }
+        int imported = 0;
+        for (Map.Entry<Integer, List<UserDto>> part : parts.entrySet()) {
+            try {
+                sharding.onShard(part.getKey(), () -> delegate.importUsersWithBooks(part.getValue()));
+            } catch (ServiceException e) {
+                if (imported == 0) {
+                    throw e;
+                }
+                exceptionUtility.throwServiceException(e, String.format("%s, %s users of the batch were already created on other shards",
+                        e.getMessage(), imported));
+            }
+            imported += part.getValue().size();
+        }
+        // The ids are set on the dtos of the list.
+        return userDtoList;
+    }
+}
@@ -0,0 +1,47 @@
+package com.edu.ulab.app.service.backend;
+
+import com.edu.ulab.app.dto.UserDto;
+import com.edu.ulab.app.service.UserService;
+import com.edu.ulab.app.shard.Sharding;
+
+/**
+ * Runs every call on the shard of the user, a new user on a random one.
+ */
+class ShardedUserService implements UserService {
+
+    private final UserService delegate;
+    private final Sharding sharding;
+
+    ShardedUserService(UserService delegate, Sharding sharding) {
+        this.delegate = delegate;
+        this.sharding = sharding;
+    }
+
+    @Override
+    public UserDto createUser(UserDto userDto) {
+        return sharding.onNewUser(() -> delegate.createUser(userDto));
+    }
+
+    @Override
+    public UserDto updateUser(UserDto userDto) {
+        return sharding.onUser(userDto == null ? null : userDto.getId(), () -> delegate.updateUser(userDto));
+    }
+
+    @Override
+    public UserDto getUserById(Long id) {
+        return sharding.onUser(id, () -> delegate.getUserById(id));
+    }
+
+    @Override
+    public Long getChangeVersion(Long id) {
+        return sharding.onUser(id, () -> delegate.getChangeVersion(id));
+    }
+
+    @Override
+    public void deleteUserById(Long id) {
+        sharding.onUser(id, () -> {
+            delegate.deleteUserById(id);
+            return null;
+        });
+    }
+}
@@ -0,0 +1,76 @@
+package com.edu.ulab.app.service.backend;
+
+import com.edu.ulab.app.dto.BookDto;
+import com.edu.ulab.app.service.BookService;
+import com.edu.ulab.app.stats.LibraryStats;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Runs the book writes as {@link LibraryStats#recording recording} writes, the backend
+ * itself reports the rows it changed.
+ */
+class StatsBookService implements BookService {
+
+    private final BookService delegate;
+    private final LibraryStats libraryStats;
+
+    StatsBookService(BookService delegate, LibraryStats libraryStats) {
+        this.delegate = delegate;
+        this.libraryStats = libraryStats;
+    }
+
+    @Override
+    public BookDto createBook(BookDto bookDto) {
+        return libraryStats.recording(() -> delegate.createBook(bookDto));
+    }
+
+    @Override
+    public List<BookDto> createBooks(List<BookDto> bookDtoList) {
+        return libraryStats.recording(() -> delegate.createBooks(bookDtoList));
+    }
+
+    @Override
+    public BookDto updateBook(BookDto bookDto) {
+        return libraryStats.recording(() -> delegate.updateBook(bookDto));
+    }
+
+    @Override
+    public List<BookDto> updateBooks(Long userId, List<BookDto> bookDtoList) {
+        return libraryStats.recording(() -> delegate.updateBooks(userId, bookDtoList));
+    }
+
+    @Override
+    public BookDto getBookById(Long id) {
+        return delegate.getBookById(id);
+    }
+
+    @Override
+    public void deleteBookById(Long id) {
+        libraryStats.recording(() -> {
+            delegate.deleteBookById(id);
+            return null;
+        });
+    }
+
+    @Override
+    public List<BookDto> deleteBooksByUserId(Long userId) {
+        return libraryStats.recording(() -> delegate.deleteBooksByUserId(userId));
+    }
+
+    @Override
+    public List<BookDto> getBookByUserId(Long userId) {
+        return delegate.getBookByUserId(userId);
+    }
+
+    @Override
+    public List<BookDto> getBookPageByUserId(Long userId, long afterId, int limit) {
+        return delegate.getBookPageByUserId(userId, afterId, limit);
+    }
+
+    @Override
+    public void streamBookByUserId(Long userId, Consumer<BookDto> consumer) {
+        delegate.streamBookByUserId(userId, consumer);
+    }
+}
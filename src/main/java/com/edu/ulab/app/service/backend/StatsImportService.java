@@ -0,0 +1,30 @@
+package com.edu.ulab.app.service.backend;
+
+import com.edu.ulab.app.dto.UserDto;
+import com.edu.ulab.app.service.ImportService;
+import com.edu.ulab.app.stats.LibraryStats;
+
+import java.util.List;
+
+/**
+ * Applies the imported users and books to the {@link LibraryStats}.
+ */
+class StatsImportService implements ImportService {
+
+    private final ImportService delegate;
+    private final LibraryStats libraryStats;
+
+    StatsImportService(ImportService delegate, LibraryStats libraryStats) {
+        this.delegate = delegate;
+        this.libraryStats = libraryStats;
+    }
+
+    @Override
+    public List<UserDto> importUsersWithBooks(List<UserDto> userDtoList) {
+        return libraryStats.recording(() -> {
+            List<UserDto> imported = delegate.importUsersWithBooks(userDtoList);
+            imported.forEach(libraryStats::userWithBooksCreated);
+            return imported;
+        });
+    }
+}
@@ -0,0 +1,48 @@
+package com.edu.ulab.app.service.backend;
+
+import com.edu.ulab.app.dto.UserDto;
+import com.edu.ulab.app.service.UserService;
+import com.edu.ulab.app.stats.LibraryStats;
+
+/**
+ * Runs the user writes as {@link LibraryStats#recording recording} writes, the backend
+ * itself reports the rows it changed.
+ */
+class StatsUserService implements UserService {
+
+    private final UserService delegate;
+    private final LibraryStats libraryStats;
+
+    StatsUserService(UserService delegate, LibraryStats libraryStats) {
+        this.delegate = delegate;
+        this.libraryStats = libraryStats;
+    }
+
+    @Override
+    public UserDto createUser(UserDto userDto) {
+        return libraryStats.recording(() -> delegate.createUser(userDto));
+    }
+
+    @Override
+    public UserDto updateUser(UserDto userDto) {
+        return libraryStats.recording(() -> delegate.updateUser(userDto));
+    }
+
+    @Override
+    public UserDto getUserById(Long id) {
+        return delegate.getUserById(id);
+    }
+
+    @Override
+    public Long getChangeVersion(Long id) {
+        return delegate.getChangeVersion(id);
+    }
+
+    @Override
+    public void deleteUserById(Long id) {
+        libraryStats.recording(() -> {
+            delegate.deleteUserById(id);
+            return null;
+        });
+    }
+}
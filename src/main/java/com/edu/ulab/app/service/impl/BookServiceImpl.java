@@ -1,23 +1,37 @@
 package com.edu.ulab.app.service.impl;
 
+import com.edu.ulab.app.config.BookQueryProperties;
 import com.edu.ulab.app.dto.BookDto;
 import com.edu.ulab.app.entity.Book;
 import com.edu.ulab.app.mapper.BookMapper;
+import com.edu.ulab.app.metrics.Monitored;
 import com.edu.ulab.app.repository.BookRepository;
 import com.edu.ulab.app.repository.UserRepository;
+import com.edu.ulab.app.service.BookDiff;
 import com.edu.ulab.app.service.BookService;
+import com.edu.ulab.app.service.ChangeVersions;
+import com.edu.ulab.app.service.ConcurrentUpdates;
+import com.edu.ulab.app.service.WriteListener;
 import com.edu.ulab.app.utility.ExceptionUtility;
-import com.edu.ulab.app.utility.IdGenerator;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Slf4j
 @Service
+@Monitored(layer = Monitored.SERVICE, backend = Monitored.JPA)
 public class BookServiceImpl implements BookService {
 
     private final BookRepository bookRepository;
@@ -28,24 +42,38 @@ public class BookServiceImpl implements BookService {
 
     private final ExceptionUtility exceptionUtility;
 
+    private final BookQueryProperties bookQueryProperties;
+
+    private final ConcurrentUpdates concurrentUpdates;
+
+    private final ChangeVersions changeVersions;
+
+    private final WriteListener writeListener;
+
     public BookServiceImpl(BookRepository bookRepository,
                            UserRepository userRepository,
                            BookMapper bookMapper,
-                           ExceptionUtility exceptionUtility) {
+                           ExceptionUtility exceptionUtility,
+                           BookQueryProperties bookQueryProperties,
+                           ConcurrentUpdates concurrentUpdates,
+                           ChangeVersions changeVersions,
+                           WriteListener writeListener) {
         this.bookRepository = bookRepository;
         this.userRepository = userRepository;
         this.bookMapper = bookMapper;
         this.exceptionUtility = exceptionUtility;
-
+        this.bookQueryProperties = bookQueryProperties;
+        this.concurrentUpdates = concurrentUpdates;
+        this.changeVersions = changeVersions;
+        this.writeListener = writeListener;
     }
 
     @Override
+    @Transactional
     public BookDto createBook(BookDto bookDto) {
         exceptionUtility.throwServiceExceptionIfNull(bookDto, "Create book failed : bookDto is null");
         exceptionUtility.throwServiceExceptionIfNull(bookDto.getUserId(), "Create book failed : bind userId is null");
 
-        bookDto.setId(IdGenerator.nextBookId());
-
         // Check user exist.
         if (!userRepository.existsById(bookDto.getUserId())) {
             exceptionUtility.throwNotFoundException(String.format("Create book failed : bind user with id = %s not exist", bookDto.getUserId()));
@@ -54,34 +82,131 @@ public class BookServiceImpl implements BookService {
         // Create book.
         Book book = bookMapper.bookDtoToBook(bookDto);
         try {
-            book = bookRepository.save(book);
+            book = bookRepository.saveAndFlush(book);
         } catch (Exception e) {
             exceptionUtility.throwServiceException(e, "Create book failed.");
         }
+        changeVersions.bump(bookDto.getUserId());
+        BookDto created = bookMapper.bookToBookDto(book);
+        writeListener.bookWritten(null, created);
         log.info("Create book successfully {}", book);
-        return bookMapper.bookToBookDto(book);
+        return created;
     }
 
     @Override
-    public BookDto updateBook(BookDto bookDto) {
-        exceptionUtility.throwServiceExceptionIfNull(bookDto, "Update book failed : bookDto is null");
-        exceptionUtility.throwServiceExceptionIfNull(bookDto.getId(), "Update book failed : bookDto.getId() returns null");
+    @Transactional
+    public List<BookDto> createBooks(List<BookDto> bookDtoList) {
+        exceptionUtility.throwServiceExceptionIfNull(bookDtoList, "Create books failed : bookDtoList is null");
+        bookDtoList.forEach(bookDto -> exceptionUtility.throwServiceExceptionIfNull(bookDto.getUserId(), "Create books failed : bind userId is null"));
 
-        if(!bookRepository.existsById(bookDto.getId())) {
-            exceptionUtility.throwNotFoundException(String.format("Update book failed : book with id = %s not exist", bookDto.getId()));
-        }
+        // Check every owning user once.
+        bookDtoList.stream()
+                .map(BookDto::getUserId)
+                .distinct()
+                .filter(userId -> !userRepository.existsById(userId))
+                .findFirst()
+                .ifPresent(userId -> exceptionUtility.throwNotFoundException(String.format("Create books failed : bind user with id = %s not exist", userId)));
 
-        Book book = bookMapper.bookDtoToBook(bookDto);
+        // Create books, Hibernate batches the inserts at flush.
+        List<Book> books = bookDtoList.stream()
+                .map(bookMapper::bookDtoToBook)
+                .collect(Collectors.toList());
         try {
-            book = bookRepository.save(book);
+            bookRepository.saveAllAndFlush(books);
         } catch (Exception e) {
-            exceptionUtility.throwServiceException(String.format("Update book with id = %s failed", book.getId()));
+            exceptionUtility.throwServiceException(e, "Create books failed.");
         }
+        changeVersions.bump(bookDtoList.stream().map(BookDto::getUserId).toList());
+        List<BookDto> created = books.stream()
+                .map(bookMapper::bookToBookDto)
+                .toList();
+        created.forEach(bookDto -> writeListener.bookWritten(null, bookDto));
+        log.info("Create {} books successfully", books.size());
+        return created;
+    }
+
+    @Override
+    public BookDto updateBook(BookDto bookDto) {
+        exceptionUtility.throwServiceExceptionIfNull(bookDto, "Update book failed : bookDto is null");
+        exceptionUtility.throwServiceExceptionIfNull(bookDto.getId(), "Update book failed : bookDto.getId() returns null");
+
+        // The managed book is flushed with a version check, a stale read fails and the attempt is retried. A client
+        // that sent the version it read is answered with 409 instead when the book has moved on from it.
+        Book book = concurrentUpdates.update("updateBook", () -> {
+            Book current = (concurrentUpdates.isPessimistic()
+                    ? bookRepository.findByIdForUpdate(bookDto.getId())
+                    : bookRepository.findById(bookDto.getId()))
+                    .orElse(null);
+            exceptionUtility.throwNotFoundExceptionIfNull(current, String.format("Update book failed : book with id = %s not exist", bookDto.getId()));
+            exceptionUtility.throwConflictIfStale(bookDto.getVersion(), current.getVersion(),
+                    String.format("Update book failed : book with id = %s is at version %s, not %s", bookDto.getId(), current.getVersion(), bookDto.getVersion()));
+            BookDto before = bookMapper.bookToBookDto(current);
+            bookMapper.updateBookFromDto(bookDto, current);
+            bookRepository.flush();
+            changeVersions.bump(Arrays.asList(before.getUserId(), current.getUserId()));
+            writeListener.bookWritten(before, bookMapper.bookToBookDto(current));
+            return current;
+        });
 
         log.info("Update book successfully {}", book);
         return bookMapper.bookToBookDto(book);
     }
 
+    @Override
+    public List<BookDto> updateBooks(Long userId, List<BookDto> bookDtoList) {
+        exceptionUtility.throwServiceExceptionIfNull(userId, "Update books failed : userId is null");
+        exceptionUtility.throwServiceExceptionIfNull(bookDtoList, "Update books failed : bookDtoList is null");
+
+        // An attempt diffs against the books it read, ids and versions of the written books reach the dtos only after
+        // the commit: a retried attempt still checks the versions the client sent.
+        Map.Entry<BookDiff, List<Book>> result = concurrentUpdates.update("updateBooks", () -> {
+            Map<Long, Book> current = (concurrentUpdates.isPessimistic()
+                    ? bookRepository.findByUserIdForUpdate(userId)
+                    : bookRepository.findByUserId(userId))
+                    .stream()
+                    .collect(Collectors.toMap(Book::getId, Function.identity()));
+            BookDiff diff = BookDiff.of(current, bookDtoList);
+            if (!diff.getUnknownIds().isEmpty()) {
+                exceptionUtility.throwNotFoundException(String.format("Update books failed : books with id = %s not exist for user with id = %s", diff.getUnknownIds(), userId));
+            }
+            if (!diff.getStaleIds().isEmpty()) {
+                exceptionUtility.throwConflictException(String.format("Update books failed : books with id = %s changed since they were read", diff.getStaleIds()));
+            }
+
+            // Changed entities are managed, dirty checking batches their version checked updates at flush.
+            Map<Long, BookDto> before = new HashMap<>();
+            diff.getChanged().forEach(bookDto -> {
+                bookDto.setUserId(userId);
+                Book book = current.get(bookDto.getId());
+                before.put(book.getId(), bookMapper.bookToBookDto(book));
+                bookMapper.updateBookFromDto(bookDto, book);
+            });
+            List<Book> created = diff.getCreated().stream()
+                    .peek(bookDto -> bookDto.setUserId(userId))
+                    .map(bookMapper::bookDtoToBook)
+                    .collect(Collectors.toList());
+            try {
+                bookRepository.saveAll(created);
+            } catch (Exception e) {
+                exceptionUtility.throwServiceException(e, "Update books failed.");
+            }
+            bookRepository.flush();
+            changeVersions.bump(userId);
+            before.forEach((id, book) -> writeListener.bookWritten(book, bookMapper.bookToBookDto(current.get(id))));
+            created.forEach(book -> writeListener.bookWritten(null, bookMapper.bookToBookDto(book)));
+            List<Book> written = new ArrayList<>(diff.getChanged().size() + created.size());
+            diff.getChanged().forEach(bookDto -> written.add(current.get(bookDto.getId())));
+            written.addAll(created);
+            return Map.entry(diff, written);
+        });
+        BookDiff diff = result.getKey();
+        diff.applyWritten(result.getValue());
+
+        log.info("Update books of user {} successfully : {} created, {} changed, {} unchanged",
+                userId, diff.getCreated().size(), diff.getChanged().size(), diff.getUnchanged());
+        return bookDtoList;
+    }
+
     @Override
     public BookDto getBookById(Long id) {
         exceptionUtility.throwServiceExceptionIfNull(id, "Get book failed : id is null");
@@ -99,18 +224,48 @@ public class BookServiceImpl implements BookService {
     }
 
     @Override
+    @Transactional
     public void deleteBookById(Long id) {
         exceptionUtility.throwServiceExceptionIfNull(id, "Delete book failed : id is null");
 
+        Book book = null;
         try {
-            bookRepository.deleteById(id);
+            book = bookRepository.findById(id).get();
+            bookRepository.delete(book);
+            bookRepository.flush();
         } catch (Exception e) {
             exceptionUtility.throwServiceException(String.format("Delete book with id = %s failed", id));
         }
+        changeVersions.bump(book.getUserId());
+        writeListener.bookWritten(bookMapper.bookToBookDto(book), null);
 
         log.info("Delete book successfully with id{}", id);
     }
 
+    @Override
+    @Transactional
+    public List<BookDto> deleteBooksByUserId(Long userId) {
+        exceptionUtility.throwServiceExceptionIfNull(userId, "Delete books failed : userId is null");
+
+        // The books are read under their locks, the bulk delete removes the books that were read.
+        List<Book> books = List.of();
+        try {
+            books = bookRepository.findByUserIdForUpdate(userId);
+            if (!books.isEmpty()) {
+                bookRepository.deleteBooksByUserId(userId);
+            }
+        } catch (Exception e) {
+            exceptionUtility.throwServiceException(String.format("Delete books of user with id = %s failed", userId));
+        }
+        List<BookDto> deleted = books.stream()
+                .map(bookMapper::bookToBookDto)
+                .toList();
+        deleted.forEach(book -> writeListener.bookWritten(book, null));
+
+        log.info("Delete {} books of user with id = {} successfully", deleted.size(), userId);
+        return deleted;
+    }
+
     @Override
     public List<BookDto> getBookByUserId(Long userId) {
         exceptionUtility.throwServiceExceptionIfNull(userId, "Get book by userId failed : userId is null");
@@ -129,4 +284,32 @@ public class BookServiceImpl implements BookService {
         log.info("Get book by userId = {} successfully", userId);
         return bookDtoList;
     }
+
+    @Override
+    public List<BookDto> getBookPageByUserId(Long userId, long afterId, int limit) {
+        exceptionUtility.throwServiceExceptionIfNull(userId, "Get book page by userId failed : userId is null");
+
+        List<BookDto> bookDtoList = Collections.emptyList();
+        try {
+            bookDtoList = bookRepository.findByUserIdAndIdGreaterThanOrderByIdAsc(userId, afterId, PageRequest.ofSize(limit))
+                    .stream()
+                    .map(bookMapper::bookToBookDto)
+                    .toList();
+        } catch (Exception e) {
+            exceptionUtility.throwServiceException(String.format("Get book page by userId = %s failed", userId));
+        }
+
+        log.info("Get book page by userId = {} after id = {} successfully", userId, afterId);
+        return bookDtoList;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamBookByUserId(Long userId, Consumer<BookDto> consumer) {
+        exceptionUtility.throwServiceExceptionIfNull(userId, "Stream book by userId failed : userId is null");
+
+        bookRepository.streamByUserId(userId, bookQueryProperties.getStreamFetchSize(),
+                book -> consumer.accept(bookMapper.bookToBookDto(book)));
+        log.info("Stream book by userId = {} successfully", userId);
+    }
 }
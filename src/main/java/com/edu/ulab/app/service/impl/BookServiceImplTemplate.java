@@ -1,92 +1,243 @@
 package com.edu.ulab.app.service.impl;
 
+import com.edu.ulab.app.config.BookQueryProperties;
 import com.edu.ulab.app.dto.BookDto;
 import com.edu.ulab.app.entity.Book;
 import com.edu.ulab.app.mapper.BookMapper;
+import com.edu.ulab.app.metrics.Monitored;
+import com.edu.ulab.app.service.BookDiff;
 import com.edu.ulab.app.service.BookService;
+import com.edu.ulab.app.service.ChangeVersions;
+import com.edu.ulab.app.service.ConcurrentUpdates;
+import com.edu.ulab.app.service.WriteListener;
 import com.edu.ulab.app.utility.ExceptionUtility;
+import com.edu.ulab.app.utility.IdGenerator;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.core.PreparedStatementCreator;
-import org.springframework.jdbc.support.GeneratedKeyHolder;
-import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.sql.Connection;
 import java.sql.PreparedStatement;
-import java.sql.SQLException;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
+@Monitored(layer = Monitored.SERVICE, backend = Monitored.JDBC)
 public class BookServiceImplTemplate implements BookService {
 
     private final JdbcTemplate jdbcTemplate;
     private final BookMapper bookMapper;
     private final ExceptionUtility exceptionUtility;
+    private final BookQueryProperties bookQueryProperties;
+    private final IdGenerator idGenerator;
+    private final ConcurrentUpdates concurrentUpdates;
+    private final ChangeVersions changeVersions;
+    private final WriteListener writeListener;
 
 
-    public BookServiceImplTemplate(JdbcTemplate jdbcTemplate, BookMapper bookMapper, ExceptionUtility exceptionUtility) {
+    public BookServiceImplTemplate(JdbcTemplate jdbcTemplate, BookMapper bookMapper, ExceptionUtility exceptionUtility,
+                                   BookQueryProperties bookQueryProperties, IdGenerator idGenerator,
+                                   ConcurrentUpdates concurrentUpdates, ChangeVersions changeVersions,
+                                   WriteListener writeListener) {
         this.jdbcTemplate = jdbcTemplate;
         this.bookMapper = bookMapper;
         this.exceptionUtility = exceptionUtility;
+        this.bookQueryProperties = bookQueryProperties;
+        this.idGenerator = idGenerator;
+        this.concurrentUpdates = concurrentUpdates;
+        this.changeVersions = changeVersions;
+        this.writeListener = writeListener;
     }
 
     @Override
+    @Transactional
     public BookDto createBook(BookDto bookDto) {
-        final String INSERT_SQL = "INSERT INTO BOOK(TITLE, AUTHOR, PAGE_COUNT, USER_ID) VALUES (?,?,?,?)";
-        KeyHolder keyHolder = new GeneratedKeyHolder();
-        jdbcTemplate.update(
-                new PreparedStatementCreator() {
-                    public PreparedStatement createPreparedStatement(Connection connection) throws SQLException {
-                        PreparedStatement ps =
-                                connection.prepareStatement(INSERT_SQL, new String[]{"id"});
-                        ps.setString(1, bookDto.getTitle());
-                        ps.setString(2, bookDto.getAuthor());
-                        ps.setLong(3, bookDto.getPageCount());
-                        ps.setLong(4, bookDto.getUserId());
-                        return ps;
-                    }
-                },
-                keyHolder);
-
-        bookDto.setId(Objects.requireNonNull(keyHolder.getKey()).longValue());
+        final String INSERT_SQL = "INSERT INTO BOOK(ID, TITLE, AUTHOR, PAGE_COUNT, USER_ID) VALUES (?,?,?,?,?)";
+        bookDto.setId(idGenerator.nextBookId());
+        jdbcTemplate.update(INSERT_SQL,
+                bookDto.getId(),
+                bookDto.getTitle(),
+                bookDto.getAuthor(),
+                bookDto.getPageCount(),
+                bookDto.getUserId());
+        changeVersions.bump(bookDto.getUserId());
+        writeListener.bookWritten(null, bookDto);
         return bookDto;
     }
 
     @Override
-    public BookDto updateBook(BookDto bookDto) {
-        exceptionUtility.throwServiceExceptionIfNull(bookDto, "Update book failed : bookDto is null");
-        exceptionUtility.throwServiceExceptionIfNull(bookDto.getId(), "Update book failed : bookDto.getId() returns null");
-
-        if (getBookById(bookDto.getId()) == null) {
-            exceptionUtility.throwNotFoundException(String.format("Update book failed : book with id = %s not exist", bookDto.getId()));
+    @Transactional
+    public List<BookDto> createBooks(List<BookDto> bookDtoList) {
+        exceptionUtility.throwServiceExceptionIfNull(bookDtoList, "Create books failed : bookDtoList is null");
+        bookDtoList.forEach(bookDto -> exceptionUtility.throwServiceExceptionIfNull(bookDto.getUserId(), "Create books failed : bind userId is null"));
+        if (bookDtoList.isEmpty()) {
+            return bookDtoList;
         }
 
-        final String UPDATE_SQL = "UPDATE BOOK SET AUTHOR = ?, PAGE_COUNT = ?, TITLE = ?, USER_ID = ? WHERE ID = ?";
-        Book book = bookMapper.bookDtoToBook(bookDto);
-        int countRowHasChanged = 0;
+        // Check every owning user once.
+        final String COUNT_USER_SQL = "SELECT COUNT(*) FROM PERSON WHERE ID = ?";
+        bookDtoList.stream()
+                .map(BookDto::getUserId)
+                .distinct()
+                .filter(userId -> jdbcTemplate.queryForObject(COUNT_USER_SQL, Long.class, userId) == 0)
+                .findFirst()
+                .ifPresent(userId -> exceptionUtility.throwNotFoundException(String.format("Create books failed : bind user with id = %s not exist", userId)));
+
+        final String INSERT_SQL = "INSERT INTO BOOK(ID, TITLE, AUTHOR, PAGE_COUNT, USER_ID) VALUES (?,?,?,?,?)";
+        bookDtoList.forEach(bookDto -> bookDto.setId(idGenerator.nextBookId()));
         try {
-            countRowHasChanged = jdbcTemplate.update(UPDATE_SQL,
-                    book.getAuthor(),
-                    book.getPageCount(),
-                    book.getTitle(),
-                    book.getUserId(),
-                    book.getId()
-            );
+            jdbcTemplate.batchUpdate(INSERT_SQL, bookDtoList, bookDtoList.size(), (ps, bookDto) -> {
+                ps.setLong(1, bookDto.getId());
+                ps.setString(2, bookDto.getTitle());
+                ps.setString(3, bookDto.getAuthor());
+                ps.setLong(4, bookDto.getPageCount());
+                ps.setLong(5, bookDto.getUserId());
+            });
         } catch (Exception e) {
-            exceptionUtility.throwServiceException(String.format("Update book with id = %s failed", book.getId()));
-        }
-        if (countRowHasChanged == 0) {
-            exceptionUtility.throwServiceException(String.format("Update book failed. Database has zero row with id = %s", book.getId()));
-        } else if (countRowHasChanged > 1) {
-            exceptionUtility.throwServiceException(String.format("Update book potentially unsafe. Database has %s row with id = %s", countRowHasChanged, book.getId()));
+            exceptionUtility.throwServiceException(e, "Create books failed.");
         }
+        changeVersions.bump(bookDtoList.stream().map(BookDto::getUserId).toList());
+        bookDtoList.forEach(bookDto -> writeListener.bookWritten(null, bookDto));
+        log.info("Create {} books successfully", bookDtoList.size());
+        return bookDtoList;
+    }
+
+    @Override
+    public BookDto updateBook(BookDto bookDto) {
+        exceptionUtility.throwServiceExceptionIfNull(bookDto, "Update book failed : bookDto is null");
+        exceptionUtility.throwServiceExceptionIfNull(bookDto.getId(), "Update book failed : bookDto.getId() returns null");
+
+        final String GET_BOOK_SQL = "SELECT * FROM BOOK WHERE ID = ?";
+        final String UPDATE_SQL = "UPDATE BOOK SET AUTHOR = ?, PAGE_COUNT = ?, TITLE = ?, USER_ID = ?, VERSION = VERSION + 1 WHERE ID = ? AND VERSION = ?";
+        Book book = bookMapper.bookDtoToBook(bookDto);
+        concurrentUpdates.update("updateBook", () -> {
+            List<Book> previous = jdbcTemplate.query(
+                    concurrentUpdates.isPessimistic() ? GET_BOOK_SQL + " FOR UPDATE" : GET_BOOK_SQL,
+                    (rs, rowNum) -> bookMapper.resultSetToBook(rs),
+                    book.getId());
+            if (previous.isEmpty()) {
+                exceptionUtility.throwNotFoundException(String.format("Update book failed : book with id = %s not exist", bookDto.getId()));
+            }
+            long version = previous.get(0).getVersion();
+            exceptionUtility.throwConflictIfStale(bookDto.getVersion(), version,
+                    String.format("Update book failed : book with id = %s is at version %s, not %s", bookDto.getId(), version, bookDto.getVersion()));
+
+            int countRowHasChanged = 0;
+            try {
+                countRowHasChanged = jdbcTemplate.update(UPDATE_SQL,
+                        book.getAuthor(),
+                        book.getPageCount(),
+                        book.getTitle(),
+                        book.getUserId(),
+                        book.getId(),
+                        version
+                );
+            } catch (Exception e) {
+                exceptionUtility.throwServiceException(String.format("Update book with id = %s failed", book.getId()));
+            }
+
+            // The row changed or vanished since the version was read.
+            if (countRowHasChanged == 0) {
+                throw new OptimisticLockingFailureException(String.format("Book with id = %s is not at version %s", book.getId(), version));
+            }
+            // A moved book changes both owners.
+            changeVersions.bump(Arrays.asList(previous.get(0).getUserId(), book.getUserId()));
+            book.setVersion(version + 1);
+            writeListener.bookWritten(bookMapper.bookToBookDto(previous.get(0)), bookMapper.bookToBookDto(book));
+            return book;
+        });
         log.info("Update book successfully {}", book);
         return bookMapper.bookToBookDto(book);
     }
 
+    @Override
+    public List<BookDto> updateBooks(Long userId, List<BookDto> bookDtoList) {
+        exceptionUtility.throwServiceExceptionIfNull(userId, "Update books failed : userId is null");
+        exceptionUtility.throwServiceExceptionIfNull(bookDtoList, "Update books failed : bookDtoList is null");
+
+        final String GET_BOOK_BY_USER_ID_SQL = "SELECT * FROM BOOK WHERE USER_ID=?";
+        final String UPDATE_SQL = "UPDATE BOOK SET TITLE=?, AUTHOR=?, PAGE_COUNT=?, VERSION=VERSION+1 WHERE ID=? AND VERSION=?";
+        final String INSERT_SQL = "INSERT INTO BOOK(ID, TITLE, AUTHOR, PAGE_COUNT, USER_ID) VALUES (?,?,?,?,?)";
+        // An attempt diffs against the books it read, ids and versions of the written books reach the dtos only after
+        // the commit: a retried attempt still checks the versions the client sent.
+        Map.Entry<BookDiff, List<Book>> result = concurrentUpdates.update("updateBooks", () -> {
+            Map<Long, Book> current = jdbcTemplate.query(
+                            concurrentUpdates.isPessimistic() ? GET_BOOK_BY_USER_ID_SQL + " FOR UPDATE" : GET_BOOK_BY_USER_ID_SQL,
+                            (rs, rowNum) -> bookMapper.resultSetToBook(rs),
+                            userId)
+                    .stream()
+                    .collect(Collectors.toMap(Book::getId, Function.identity()));
+            BookDiff diff = BookDiff.of(current, bookDtoList);
+            if (!diff.getUnknownIds().isEmpty()) {
+                exceptionUtility.throwNotFoundException(String.format("Update books failed : books with id = %s not exist for user with id = %s", diff.getUnknownIds(), userId));
+            }
+            if (!diff.getStaleIds().isEmpty()) {
+                exceptionUtility.throwConflictException(String.format("Update books failed : books with id = %s changed since they were read", diff.getStaleIds()));
+            }
+
+            diff.getChanged().forEach(bookDto -> bookDto.setUserId(userId));
+            List<Book> created = diff.getCreated().stream()
+                    .peek(bookDto -> bookDto.setUserId(userId))
+                    .map(bookMapper::bookDtoToBook)
+                    .peek(book -> book.setId(idGenerator.nextBookId()))
+                    .collect(Collectors.toList());
+            int[][] updated = new int[0][];
+            try {
+                if (!diff.getChanged().isEmpty()) {
+                    updated = jdbcTemplate.batchUpdate(UPDATE_SQL, diff.getChanged(), diff.getChanged().size(), (ps, bookDto) -> {
+                        ps.setString(1, bookDto.getTitle());
+                        ps.setString(2, bookDto.getAuthor());
+                        ps.setLong(3, bookDto.getPageCount());
+                        ps.setLong(4, bookDto.getId());
+                        ps.setLong(5, current.get(bookDto.getId()).getVersion());
+                    });
+                }
+                if (!created.isEmpty()) {
+                    jdbcTemplate.batchUpdate(INSERT_SQL, created, created.size(), (ps, book) -> {
+                        ps.setLong(1, book.getId());
+                        ps.setString(2, book.getTitle());
+                        ps.setString(3, book.getAuthor());
+                        ps.setLong(4, book.getPageCount());
+                        ps.setLong(5, book.getUserId());
+                    });
+                }
+            } catch (Exception e) {
+                exceptionUtility.throwServiceException(e, "Update books failed.");
+            }
+
+            // A book changed or vanished since the diff read it.
+            if (Arrays.stream(updated).flatMapToInt(Arrays::stream).anyMatch(count -> count == 0)) {
+                throw new OptimisticLockingFailureException(String.format("Books of user with id = %s changed since they were read", userId));
+            }
+            changeVersions.bump(userId);
+            List<Book> written = new ArrayList<>(diff.getChanged().size() + created.size());
+            for (BookDto bookDto : diff.getChanged()) {
+                Book book = bookMapper.bookDtoToBook(bookDto);
+                book.setVersion(current.get(bookDto.getId()).getVersion() + 1);
+                writeListener.bookWritten(bookMapper.bookToBookDto(current.get(bookDto.getId())), bookMapper.bookToBookDto(book));
+                written.add(book);
+            }
+            created.forEach(book -> writeListener.bookWritten(null, bookMapper.bookToBookDto(book)));
+            written.addAll(created);
+            return Map.entry(diff, written);
+        });
+        BookDiff diff = result.getKey();
+        diff.applyWritten(result.getValue());
+
+        log.info("Update books of user {} successfully : {} created, {} changed, {} unchanged",
+                userId, diff.getCreated().size(), diff.getChanged().size(), diff.getUnchanged());
+        return bookDtoList;
+    }
+
     @Override
     public BookDto getBookById(Long id) {
         exceptionUtility.throwServiceExceptionIfNull(id, "Get book failed : id is null");
@@ -110,19 +261,54 @@ public class BookServiceImplTemplate implements BookService {
     }
 
     @Override
+    @Transactional
     public void deleteBookById(Long id) {
         exceptionUtility.throwServiceExceptionIfNull(id, "Delete book failed : id is null");
 
+        List<Book> deleted = List.of();
         try {
+            // The row is read under its lock, its owner is the one of the deleted book. The bump follows the delete.
+            final String GET_BOOK_SQL = "SELECT * FROM BOOK WHERE ID = ? FOR UPDATE";
             final String DELETE_BOOK_BY_ID_SQL = "DELETE FROM BOOK WHERE ID = ?";
-            jdbcTemplate.update(DELETE_BOOK_BY_ID_SQL, id);
+            deleted = jdbcTemplate.query(GET_BOOK_SQL, (rs, rowNum) -> bookMapper.resultSetToBook(rs), id);
+            if (!deleted.isEmpty()) {
+                jdbcTemplate.update(DELETE_BOOK_BY_ID_SQL, id);
+            }
         } catch (Exception e) {
             exceptionUtility.throwServiceException(String.format("Delete book with id = %s failed", id));
         }
+        changeVersions.bump(deleted.stream().map(Book::getUserId).toList());
+        deleted.forEach(book -> writeListener.bookWritten(bookMapper.bookToBookDto(book), null));
 
         log.info("Delete book successfully with id{}", id);
     }
 
+    @Override
+    @Transactional
+    public List<BookDto> deleteBooksByUserId(Long userId) {
+        exceptionUtility.throwServiceExceptionIfNull(userId, "Delete books failed : userId is null");
+
+        List<Book> books = List.of();
+        try {
+            // The rows are read under their locks, they are the rows the delete removes.
+            final String GET_BOOKS_SQL = "SELECT * FROM BOOK WHERE USER_ID = ? FOR UPDATE";
+            final String DELETE_BOOKS_BY_USER_ID_SQL = "DELETE FROM BOOK WHERE USER_ID = ?";
+            books = jdbcTemplate.query(GET_BOOKS_SQL, (rs, rowNum) -> bookMapper.resultSetToBook(rs), userId);
+            if (!books.isEmpty()) {
+                jdbcTemplate.update(DELETE_BOOKS_BY_USER_ID_SQL, userId);
+            }
+        } catch (Exception e) {
+            exceptionUtility.throwServiceException(String.format("Delete books of user with id = %s failed", userId));
+        }
+        List<BookDto> deleted = books.stream()
+                .map(bookMapper::bookToBookDto)
+                .toList();
+        deleted.forEach(book -> writeListener.bookWritten(book, null));
+
+        log.info("Delete {} books of user with id = {} successfully", deleted.size(), userId);
+        return deleted;
+    }
+
     @Override
     public List<BookDto> getBookByUserId(Long userId) {
         exceptionUtility.throwServiceExceptionIfNull(userId, "Get book by userId failed : userId is null");
@@ -142,4 +328,40 @@ public class BookServiceImplTemplate implements BookService {
         log.info("Get book by userId = {} successfully", userId);
         return bookDtoList;
     }
+
+    @Override
+    public List<BookDto> getBookPageByUserId(Long userId, long afterId, int limit) {
+        exceptionUtility.throwServiceExceptionIfNull(userId, "Get book page by userId failed : userId is null");
+
+        List<BookDto> bookDtoList = null;
+        try {
+            final String GET_BOOK_PAGE_BY_USER_ID_SQL = "SELECT * FROM BOOK WHERE USER_ID = ? AND ID > ? ORDER BY ID LIMIT ?";
+            bookDtoList = jdbcTemplate.query(
+                    GET_BOOK_PAGE_BY_USER_ID_SQL,
+                    (rs, rowNum) -> bookMapper.bookToBookDto(bookMapper.resultSetToBook(rs)),
+                    userId, afterId, limit);
+        } catch (Exception e) {
+            exceptionUtility.throwServiceException(String.format("Get book page by userId = %s failed", userId));
+        }
+
+        log.info("Get book page by userId = {} after id = {} successfully", userId, afterId);
+        return bookDtoList;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamBookByUserId(Long userId, Consumer<BookDto> consumer) {
+        exceptionUtility.throwServiceExceptionIfNull(userId, "Stream book by userId failed : userId is null");
+
+        final String STREAM_BOOK_BY_USER_ID_SQL = "SELECT * FROM BOOK WHERE USER_ID = ? ORDER BY ID";
+        jdbcTemplate.query(connection -> {
+                    PreparedStatement ps = connection.prepareStatement(STREAM_BOOK_BY_USER_ID_SQL,
+                            ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                    ps.setFetchSize(bookQueryProperties.getStreamFetchSize());
+                    ps.setLong(1, userId);
+                    return ps;
+                },
+                (RowCallbackHandler) rs -> consumer.accept(bookMapper.bookToBookDto(bookMapper.resultSetToBook(rs))));
+        log.info("Stream book by userId = {} successfully", userId);
+    }
 }
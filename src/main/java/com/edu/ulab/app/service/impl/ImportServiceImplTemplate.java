@@ -0,0 +1,67 @@
+package com.edu.ulab.app.service.impl;
+
+import com.edu.ulab.app.dto.BookDto;
+import com.edu.ulab.app.dto.UserDto;
+import com.edu.ulab.app.metrics.Monitored;
+import com.edu.ulab.app.service.ImportService;
+import com.edu.ulab.app.utility.ExceptionUtility;
+import com.edu.ulab.app.utility.IdGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Slf4j
+@Service
+@Monitored(layer = Monitored.SERVICE, backend = Monitored.JDBC)
+public class ImportServiceImplTemplate implements ImportService {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ExceptionUtility exceptionUtility;
+    private final IdGenerator idGenerator;
+
+    public ImportServiceImplTemplate(JdbcTemplate jdbcTemplate, ExceptionUtility exceptionUtility, IdGenerator idGenerator) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.exceptionUtility = exceptionUtility;
+        this.idGenerator = idGenerator;
+    }
+
+    @Override
+    @Transactional
+    public List<UserDto> importUsersWithBooks(List<UserDto> userDtoList) {
+        exceptionUtility.throwServiceExceptionIfNull(userDtoList, "Import users failed : userDtoList is null");
+        if (userDtoList.isEmpty()) {
+            return userDtoList;
+        }
+
+        try {
+            // Ids come from the sequence blocks, so both tables are plain batches without a key fetch.
+            List<Object[]> userArgs = new ArrayList<>(userDtoList.size());
+            List<Object[]> bookArgs = new ArrayList<>();
+            for (UserDto userDto : userDtoList) {
+                userDto.setId(idGenerator.nextUserId());
+                userArgs.add(new Object[]{userDto.getId(), userDto.getFullName(), userDto.getTitle(), userDto.getAge()});
+                if (userDto.getBooks() == null) {
+                    continue;
+                }
+                for (BookDto bookDto : userDto.getBooks()) {
+                    bookDto.setId(idGenerator.nextBookId());
+                    bookDto.setUserId(userDto.getId());
+                    bookArgs.add(new Object[]{bookDto.getId(), bookDto.getTitle(), bookDto.getAuthor(), bookDto.getPageCount(), bookDto.getUserId()});
+                }
+            }
+            final String INSERT_USER_SQL = "INSERT INTO PERSON(ID, FULL_NAME, TITLE, AGE) VALUES (?,?,?,?)";
+            final String INSERT_BOOK_SQL = "INSERT INTO BOOK(ID, TITLE, AUTHOR, PAGE_COUNT, USER_ID) VALUES (?,?,?,?,?)";
+            jdbcTemplate.batchUpdate(INSERT_USER_SQL, userArgs);
+            jdbcTemplate.batchUpdate(INSERT_BOOK_SQL, bookArgs);
+        } catch (Exception e) {
+            exceptionUtility.throwServiceException(e, String.format("Import of %s users failed : %s", userDtoList.size(), e.getMessage()));
+        }
+
+        log.info("Import {} users successfully", userDtoList.size());
+        return userDtoList;
+    }
+}
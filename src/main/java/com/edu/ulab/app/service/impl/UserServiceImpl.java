@@ -3,38 +3,51 @@ package com.edu.ulab.app.service.impl;
 import com.edu.ulab.app.dto.UserDto;
 import com.edu.ulab.app.entity.Person;
 import com.edu.ulab.app.mapper.UserMapper;
+import com.edu.ulab.app.metrics.Monitored;
 import com.edu.ulab.app.repository.UserRepository;
+import com.edu.ulab.app.service.ChangeVersions;
+import com.edu.ulab.app.service.ConcurrentUpdates;
 import com.edu.ulab.app.service.UserService;
+import com.edu.ulab.app.service.WriteListener;
 import com.edu.ulab.app.utility.ExceptionUtility;
-import com.edu.ulab.app.utility.IdGenerator;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 @Slf4j
 @Service
+@Monitored(layer = Monitored.SERVICE, backend = Monitored.JPA)
 public class UserServiceImpl implements UserService {
 
     private final UserRepository userRepository;
     private final UserMapper userMapper;
     private final ExceptionUtility exceptionUtility;
+    private final ConcurrentUpdates concurrentUpdates;
+    private final ChangeVersions changeVersions;
+    private final WriteListener writeListener;
 
-    public UserServiceImpl(UserRepository userRepository, UserMapper userMapper, ExceptionUtility exceptionUtility) {
+    public UserServiceImpl(UserRepository userRepository, UserMapper userMapper, ExceptionUtility exceptionUtility,
+                           ConcurrentUpdates concurrentUpdates, ChangeVersions changeVersions,
+                           WriteListener writeListener) {
         this.userRepository = userRepository;
         this.userMapper = userMapper;
         this.exceptionUtility = exceptionUtility;
+        this.concurrentUpdates = concurrentUpdates;
+        this.changeVersions = changeVersions;
+        this.writeListener = writeListener;
     }
 
     @Override
     public UserDto createUser(UserDto userDto) {
         exceptionUtility.throwServiceExceptionIfNull(userDto, "Create user failed : userDto is null");
 
-        userDto.setId(IdGenerator.nextUserId());
         Person person = userMapper.userDtoToPerson(userDto);
         try {
             person = userRepository.save(person);
         } catch (Exception e) {
             exceptionUtility.throwServiceException("Create user failed.");
         }
+        writeListener.userWritten(null, userMapper.personToUserDto(person));
 
         log.info("Create user successfully {}", person);
         return userMapper.personToUserDto(person);
@@ -45,16 +58,23 @@ public class UserServiceImpl implements UserService {
         exceptionUtility.throwServiceExceptionIfNull(userDto, "Update user failed : userDto is null");
         exceptionUtility.throwServiceExceptionIfNull(userDto.getId(), "Update user failed : userDto.getId() returns null");
 
-        if(!userRepository.existsById(userDto.getId())) {
-            exceptionUtility.throwNotFoundException(String.format("Update user failed : user with id = %s not exist", userDto.getId()));
-        }
-
-        Person userEntity = userMapper.userDtoToPerson(userDto);
-        try {
-            userRepository.save(userEntity);
-        } catch (Exception e) {
-            exceptionUtility.throwServiceException(String.format("Update user with id = %s failed", userDto.getId()));
-        }
+        // The managed person is flushed with a version check, a stale read fails and the attempt is retried. A client
+        // that sent the version it read is answered with 409 instead when the person has moved on from it.
+        Person userEntity = concurrentUpdates.update("updateUser", () -> {
+            Person person = (concurrentUpdates.isPessimistic()
+                    ? userRepository.findByIdForUpdate(userDto.getId())
+                    : userRepository.findById(userDto.getId()))
+                    .orElse(null);
+            exceptionUtility.throwNotFoundExceptionIfNull(person, String.format("Update user failed : user with id = %s not exist", userDto.getId()));
+            exceptionUtility.throwConflictIfStale(userDto.getVersion(), person.getVersion(),
+                    String.format("Update user failed : user with id = %s is at version %s, not %s", userDto.getId(), person.getVersion(), userDto.getVersion()));
+            UserDto before = userMapper.personToUserDto(person);
+            userMapper.updatePersonFromDto(userDto, person);
+            userRepository.flush();
+            changeVersions.bump(userDto.getId());
+            writeListener.userWritten(before, userMapper.personToUserDto(person));
+            return person;
+        });
 
         log.info("Update user successfully {}", userEntity);
         return userMapper.personToUserDto(userEntity);
@@ -77,14 +97,25 @@ public class UserServiceImpl implements UserService {
     }
 
     @Override
+    public Long getChangeVersion(Long id) {
+        exceptionUtility.throwServiceExceptionIfNull(id, "Get change version failed : id is null");
+
+        return changeVersions.get(id);
+    }
+
+    @Override
+    @Transactional
     public void deleteUserById(Long id) {
         exceptionUtility.throwServiceExceptionIfNull(id, "Delete user failed : id is null");
 
+        Person person = null;
         try {
-            userRepository.deleteById(id);
+            person = userRepository.findById(id).get();
+            userRepository.delete(person);
         } catch (Exception e) {
             exceptionUtility.throwServiceException(String.format("Delete user with id = %s failed", id));
         }
+        writeListener.userWritten(userMapper.personToUserDto(person), null);
 
         log.info("Delete user with id = {} successfully", id);
     }
@@ -3,45 +3,57 @@ package com.edu.ulab.app.service.impl;
 import com.edu.ulab.app.dto.UserDto;
 import com.edu.ulab.app.entity.Person;
 import com.edu.ulab.app.mapper.UserMapper;
+import com.edu.ulab.app.metrics.Monitored;
+import com.edu.ulab.app.service.ChangeVersions;
+import com.edu.ulab.app.service.ConcurrentUpdates;
 import com.edu.ulab.app.service.UserService;
+import com.edu.ulab.app.service.WriteListener;
 import com.edu.ulab.app.utility.ExceptionUtility;
+import com.edu.ulab.app.utility.IdGenerator;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.support.GeneratedKeyHolder;
-import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
 
-import java.sql.PreparedStatement;
-import java.util.Objects;
 
 @Slf4j
 @Service
+@Monitored(layer = Monitored.SERVICE, backend = Monitored.JDBC)
 public class UserServiceImplTemplate implements UserService {
     private final JdbcTemplate jdbcTemplate;
     private final UserMapper userMapper;
     private final ExceptionUtility exceptionUtility;
+    private final IdGenerator idGenerator;
+    private final ConcurrentUpdates concurrentUpdates;
+    private final ChangeVersions changeVersions;
+    private final WriteListener writeListener;
 
 
-    public UserServiceImplTemplate(JdbcTemplate jdbcTemplate, UserMapper userMapper, ExceptionUtility exceptionUtility) {
+    public UserServiceImplTemplate(JdbcTemplate jdbcTemplate, UserMapper userMapper, ExceptionUtility exceptionUtility,
+                                   IdGenerator idGenerator, ConcurrentUpdates concurrentUpdates,
+                                   ChangeVersions changeVersions, WriteListener writeListener) {
         this.jdbcTemplate = jdbcTemplate;
         this.userMapper = userMapper;
         this.exceptionUtility = exceptionUtility;
+        this.idGenerator = idGenerator;
+        this.concurrentUpdates = concurrentUpdates;
+        this.changeVersions = changeVersions;
+        this.writeListener = writeListener;
     }
 
     @Override
     public UserDto createUser(UserDto userDto) {
-        final String INSERT_SQL = "INSERT INTO PERSON(FULL_NAME, TITLE, AGE) VALUES (?,?,?)";
-        KeyHolder keyHolder = new GeneratedKeyHolder();
-        jdbcTemplate.update(
-                connection -> {
-                    PreparedStatement ps = connection.prepareStatement(INSERT_SQL, new String[]{"id"});
-                    ps.setString(1, userDto.getFullName());
-                    ps.setString(2, userDto.getTitle());
-                    ps.setLong(3, userDto.getAge());
-                    return ps;
-                }, keyHolder);
-
-        userDto.setId(Objects.requireNonNull(keyHolder.getKey()).longValue());
+        final String INSERT_SQL = "INSERT INTO PERSON(ID, FULL_NAME, TITLE, AGE) VALUES (?,?,?,?)";
+        userDto.setId(idGenerator.nextUserId());
+        jdbcTemplate.update(INSERT_SQL,
+                userDto.getId(),
+                userDto.getFullName(),
+                userDto.getTitle(),
+                userDto.getAge());
+        writeListener.userWritten(null, userDto);
         return userDto;
     }
 
@@ -50,29 +62,42 @@ public class UserServiceImplTemplate implements UserService {
         exceptionUtility.throwServiceExceptionIfNull(userDto, "Update user failed : userDto is null");
         exceptionUtility.throwServiceExceptionIfNull(userDto.getId(), "Update user failed : userDto.getId() returns null");
 
-        if (getUserById(userDto.getId()) == null) {
-            exceptionUtility.throwNotFoundException(String.format("Update user failed : user with id = %s not exist", userDto.getId()));
-        }
-
-        final String UPDATE_SQL = "UPDATE PERSON SET AGE=?, FULL_NAME=?, TITLE=? WHERE ID = ?";
+        final String GET_USER_SQL = "SELECT * FROM PERSON WHERE ID = ?";
+        final String UPDATE_SQL = "UPDATE PERSON SET AGE=?, FULL_NAME=?, TITLE=?, VERSION=VERSION+1, CHANGE_VERSION=CHANGE_VERSION+1 WHERE ID = ? AND VERSION = ?";
         Person user = userMapper.userDtoToPerson(userDto);
-        int countRowHasChanged = 0;
-        try {
-            countRowHasChanged = jdbcTemplate.update(UPDATE_SQL,
-                    user.getAge(),
-                    user.getFullName(),
-                    user.getTitle(),
-                    user.getId()
-            );
-        } catch (Exception e) {
-            exceptionUtility.throwServiceException(String.format("Update user with id = %s failed", userDto.getId()));
-        }
-
-        if (countRowHasChanged == 0) {
-            exceptionUtility.throwServiceException(String.format("Update user failed. Database has zero row with id = %s", user.getId()));
-        } else if (countRowHasChanged > 1) {
-            exceptionUtility.throwServiceException(String.format("Update user potentially unsafe. Database has %s row with id = %s", countRowHasChanged, user.getId()));
-        }
+        concurrentUpdates.update("updateUser", () -> {
+            List<Person> previous = jdbcTemplate.query(
+                    concurrentUpdates.isPessimistic() ? GET_USER_SQL + " FOR UPDATE" : GET_USER_SQL,
+                    (rs, rowNum) -> userMapper.resultSetToUser(rs),
+                    user.getId());
+            if (previous.isEmpty()) {
+                exceptionUtility.throwNotFoundException(String.format("Update user failed : user with id = %s not exist", userDto.getId()));
+            }
+            long version = previous.get(0).getVersion();
+            exceptionUtility.throwConflictIfStale(userDto.getVersion(), version,
+                    String.format("Update user failed : user with id = %s is at version %s, not %s", userDto.getId(), version, userDto.getVersion()));
+
+            int countRowHasChanged = 0;
+            try {
+                countRowHasChanged = jdbcTemplate.update(UPDATE_SQL,
+                        user.getAge(),
+                        user.getFullName(),
+                        user.getTitle(),
+                        user.getId(),
+                        version
+                );
+            } catch (Exception e) {
+                exceptionUtility.throwServiceException(String.format("Update user with id = %s failed", userDto.getId()));
+            }
+
+            // The row changed or vanished since the version was read.
+            if (countRowHasChanged == 0) {
+                throw new OptimisticLockingFailureException(String.format("Person with id = %s is not at version %s", user.getId(), version));
+            }
+            user.setVersion(version + 1);
+            writeListener.userWritten(userMapper.personToUserDto(previous.get(0)), userMapper.personToUserDto(user));
+            return user;
+        });
 
         log.info("Update user successfully {}", user);
         return userMapper.personToUserDto(user);
@@ -101,15 +126,30 @@ public class UserServiceImplTemplate implements UserService {
     }
 
     @Override
+    public Long getChangeVersion(Long id) {
+        exceptionUtility.throwServiceExceptionIfNull(id, "Get change version failed : id is null");
+
+        return changeVersions.get(id);
+    }
+
+    @Override
+    @Transactional
     public void deleteUserById(Long id) {
         exceptionUtility.throwServiceExceptionIfNull(id, "Delete user failed : id is null");
 
+        List<Person> deleted = List.of();
         try {
+            // The row is read under its lock, it is the row the delete removes.
+            final String GET_USER_SQL = "SELECT * FROM PERSON WHERE ID = ? FOR UPDATE";
             final String DELETE_USER_BY_ID_SQL = "DELETE FROM PERSON WHERE ID = ?";
-            jdbcTemplate.update(DELETE_USER_BY_ID_SQL, id);
+            deleted = jdbcTemplate.query(GET_USER_SQL, (rs, rowNum) -> userMapper.resultSetToUser(rs), id);
+            if (!deleted.isEmpty()) {
+                jdbcTemplate.update(DELETE_USER_BY_ID_SQL, id);
+            }
         } catch (Exception e) {
             exceptionUtility.throwServiceException(String.format("Delete user with id = %s failed", id));
         }
+        deleted.forEach(person -> writeListener.userWritten(userMapper.personToUserDto(person), null));
 
         log.info("Delete user with id = {} successfully", id);
     }
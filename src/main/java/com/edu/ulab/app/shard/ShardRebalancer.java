@@ -0,0 +1,116 @@
+package com.edu.ulab.app.shard;
+
+import com.edu.ulab.app.utility.IdGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Moves users the ring assigns to another shard there, with their books: the seed rows of {@code data.sql} are
+ * written to the first shard, and adding or removing a shard hands a part of the logical shards to another owner.
+ * Rows are merged into the owner before they are deleted, so an interrupted run can simply be repeated. The owner
+ * sequences are moved past the local ids of the rows it receives.
+ * Runs once at startup, after the schema initialization and before the web server takes requests.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "app.shards", name = "enabled", havingValue = "true")
+public class ShardRebalancer implements SmartInitializingSingleton {
+
+    private static final String SELECT_USERS_SQL = "SELECT ID, FULL_NAME, TITLE, AGE, VERSION, CHANGE_VERSION FROM PERSON";
+    private static final String SELECT_BOOKS_SQL = "SELECT ID, TITLE, AUTHOR, PAGE_COUNT, USER_ID, VERSION FROM BOOK";
+    private static final String MERGE_USER_SQL =
+            "MERGE INTO PERSON(ID, FULL_NAME, TITLE, AGE, VERSION, CHANGE_VERSION) KEY(ID) VALUES (?,?,?,?,?,?)";
+    private static final String MERGE_BOOK_SQL =
+            "MERGE INTO BOOK(ID, TITLE, AUTHOR, PAGE_COUNT, USER_ID, VERSION) KEY(ID) VALUES (?,?,?,?,?,?)";
+    private static final String DELETE_USER_SQL = "DELETE FROM PERSON WHERE ID = ?";
+    private static final String DELETE_BOOK_SQL = "DELETE FROM BOOK WHERE ID = ?";
+    private static final String NEXT_SEQUENCE_VALUE_SQL =
+            "SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Sharding sharding;
+
+    public ShardRebalancer(JdbcTemplate jdbcTemplate, Sharding sharding) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.sharding = sharding;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        for (int shard = 0; shard < sharding.shardCount(); shard++) {
+            rebalance(shard);
+        }
+    }
+
+    private void rebalance(int source) {
+        // Rows by owning shard, the books follow their user.
+        Map<Integer, List<Object[]>> users = new TreeMap<>();
+        Map<Integer, List<Object[]>> books = new TreeMap<>();
+        sharding.onShard(source, () -> {
+            jdbcTemplate.query(SELECT_USERS_SQL, rs -> {
+                long id = rs.getLong("ID");
+                int owner = sharding.shardOf(id);
+                if (owner != source) {
+                    users.computeIfAbsent(owner, shard -> new ArrayList<>()).add(new Object[]{
+                            id, rs.getString("FULL_NAME"), rs.getString("TITLE"), rs.getObject("AGE"), rs.getLong("VERSION"),
+                            rs.getLong("CHANGE_VERSION")});
+                }
+            });
+            jdbcTemplate.query(SELECT_BOOKS_SQL, rs -> {
+                int owner = sharding.shardOf(rs.getLong("USER_ID"));
+                if (owner != source) {
+                    books.computeIfAbsent(owner, shard -> new ArrayList<>()).add(new Object[]{
+                            rs.getLong("ID"), rs.getString("TITLE"), rs.getString("AUTHOR"), rs.getObject("PAGE_COUNT"),
+                            rs.getObject("USER_ID"), rs.getLong("VERSION")});
+                }
+            });
+            return null;
+        });
+
+        for (int owner = 0; owner < sharding.shardCount(); owner++) {
+            List<Object[]> ownerUsers = users.getOrDefault(owner, List.of());
+            List<Object[]> ownerBooks = books.getOrDefault(owner, List.of());
+            if (ownerUsers.isEmpty() && ownerBooks.isEmpty()) {
+                continue;
+            }
+            sharding.onShard(owner, () -> {
+                jdbcTemplate.batchUpdate(MERGE_USER_SQL, ownerUsers);
+                jdbcTemplate.batchUpdate(MERGE_BOOK_SQL, ownerBooks);
+                skipLocalIds(IdGenerator.PERSON_SEQUENCE, ownerUsers);
+                skipLocalIds(IdGenerator.BOOK_SEQUENCE, ownerBooks);
+                return null;
+            });
+            sharding.onShard(source, () -> {
+                jdbcTemplate.batchUpdate(DELETE_BOOK_SQL, ids(ownerBooks));
+                jdbcTemplate.batchUpdate(DELETE_USER_SQL, ids(ownerUsers));
+                return null;
+            });
+            log.info("Moved {} users and {} books from {} to {}", ownerUsers.size(), ownerBooks.size(),
+                    sharding.shardName(source), sharding.shardName(owner));
+        }
+    }
+
+    /**
+     * The moved ids were generated from the sequence of the previous owner, the local ids the new owner hands out
+     * with the same logical shard must not meet them.
+     */
+    private void skipLocalIds(String sequence, List<Object[]> rows) {
+        long maxLocalId = rows.stream().mapToLong(row -> (Long) row[0] / Sharding.BUCKETS).max().orElse(-1);
+        Long next = jdbcTemplate.queryForObject(NEXT_SEQUENCE_VALUE_SQL, Long.class, sequence);
+        if (next != null && maxLocalId >= next) {
+            jdbcTemplate.execute("ALTER SEQUENCE " + sequence + " RESTART WITH " + (maxLocalId + 1));
+        }
+    }
+
+    private static List<Object[]> ids(List<Object[]> rows) {
+        return rows.stream().map(row -> new Object[]{row[0]}).toList();
+    }
+}
@@ -0,0 +1,64 @@
+package com.edu.ulab.app.shard;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Consistent hash ring: every shard is placed {@code virtualNodes} times on a 64 bit ring by the hash of its name,
+ * and a key belongs to the first shard point at or after the hash of the key. Adding a shard only takes over the
+ * keys between its points and their predecessors, about 1/N of them, every other key keeps its shard.
+ */
+final class ShardRing {
+
+    private final long[] points;
+    private final int[] owners;
+
+    ShardRing(List<String> names, int virtualNodes) {
+        long[][] nodes = new long[names.size() * virtualNodes][];
+        for (int shard = 0; shard < names.size(); shard++) {
+            for (int node = 0; node < virtualNodes; node++) {
+                nodes[shard * virtualNodes + node] = new long[]{hash(names.get(shard) + "#" + node), shard};
+            }
+        }
+        Arrays.sort(nodes, Comparator.comparingLong(node -> node[0]));
+        this.points = new long[nodes.length];
+        this.owners = new int[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            points[i] = nodes[i][0];
+            owners[i] = (int) nodes[i][1];
+        }
+    }
+
+    int shardOf(long key) {
+        int index = Arrays.binarySearch(points, mix(key));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return owners[index == points.length ? 0 : index];
+    }
+
+    /**
+     * FNV-1a over the UTF-8 bytes, mixed, so similar names do not land next to each other.
+     */
+    private static long hash(String name) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : name.getBytes(StandardCharsets.UTF_8)) {
+            hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * Finalizer of MurmurHash3, spreads consecutive keys over the whole ring.
+     */
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+}
@@ -0,0 +1,41 @@
+package com.edu.ulab.app.shard;
+
+import java.util.function.Supplier;
+
+/**
+ * The shard the connections of the current thread come from, entered through {@link Sharding}. Like the replica
+ * scope it has to be entered before the transaction or the query starts. Outside of any scope connections come
+ * from the first shard, which only the startup work should rely on.
+ */
+public final class ShardRouting {
+
+    private static final ThreadLocal<Scope> SCOPE = new ThreadLocal<>();
+
+    private ShardRouting() {
+    }
+
+    /**
+     * @param bucket logical shard encoded into the ids generated in the scope
+     * @param shard  index of the database the logical shard lives on
+     */
+    public record Scope(int bucket, int shard) {
+    }
+
+    public static Scope current() {
+        return SCOPE.get();
+    }
+
+    static <T> T on(Scope scope, Supplier<T> work) {
+        Scope previous = SCOPE.get();
+        SCOPE.set(scope);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) {
+                SCOPE.remove();
+            } else {
+                SCOPE.set(previous);
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.edu.ulab.app.shard;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hands out connections of the shard of the current {@link ShardRouting} scope, of the first shard outside of one.
+ * Connections are counted as {@code app.datasource.connections{target=<shard>}}, bound once the registry exists.
+ */
+public class ShardedDataSource extends AbstractDataSource implements MeterBinder, AutoCloseable {
+
+    private final List<String> names;
+    private final List<DataSource> shards;
+    private final LongAdder[] connections;
+    private final List<AutoCloseable> resources;
+
+    /**
+     * @param resources closed with this data source
+     */
+    public ShardedDataSource(List<String> names, List<DataSource> shards, List<AutoCloseable> resources) {
+        this.names = List.copyOf(names);
+        this.shards = List.copyOf(shards);
+        this.resources = new ArrayList<>(resources);
+        this.connections = new LongAdder[shards.size()];
+        for (int i = 0; i < connections.length; i++) {
+            connections[i] = new LongAdder();
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        int shard = shard();
+        connections[shard].increment();
+        return shards.get(shard).getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        int shard = shard();
+        connections[shard].increment();
+        return shards.get(shard).getConnection(username, password);
+    }
+
+    private static int shard() {
+        ShardRouting.Scope scope = ShardRouting.current();
+        return scope == null ? 0 : scope.shard();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry meterRegistry) {
+        for (int i = 0; i < names.size(); i++) {
+            FunctionCounter.builder("app.datasource.connections", connections[i], LongAdder::sum)
+                    .tag("target", names.get(i))
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Reaches the first shard pool, e.g. for its pool metrics.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return (T) this;
+        }
+        return shards.get(0).unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || shards.get(0).isWrapperFor(iface);
+    }
+
+    @Override
+    public void close() throws Exception {
+        for (AutoCloseable resource : resources) {
+            resource.close();
+        }
+    }
+}
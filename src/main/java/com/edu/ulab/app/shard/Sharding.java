@@ -0,0 +1,180 @@
+package com.edu.ulab.app.shard;
+
+import com.edu.ulab.app.config.ShardProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Routes work to the shard owning a user.
+ * <p>
+ * Users are spread over {@link #BUCKETS} logical shards, which the {@link ShardRing} assigns to the databases.
+ * A new user gets a random logical shard, and its id and the ids of its books carry it in their low bits:
+ * {@code id = localId * BUCKETS + bucket}, with {@code localId} from the sequences of the owning database. Any
+ * user or book id therefore names its shard without a lookup, and a user stays on the database of its books.
+ * <p>
+ * With {@code app.shards.enabled} off every method runs the work in place.
+ */
+@Slf4j
+@Component
+public class Sharding implements DisposableBean {
+
+    /**
+     * Logical shards, part of every id: must never change once ids are handed out.
+     */
+    public static final int BUCKETS = 1024;
+
+    private final List<String> names;
+    private final int[] shardOfBucket;
+    private final int[][] bucketsOfShard;
+    private final ExecutorService gatherExecutor;
+
+    public Sharding(ShardProperties properties, MeterRegistry meterRegistry) {
+        if (!properties.isEnabled()) {
+            this.names = List.of();
+            this.shardOfBucket = null;
+            this.bucketsOfShard = null;
+            this.gatherExecutor = null;
+            return;
+        }
+        this.names = properties.names();
+        if (names.isEmpty()) {
+            throw new IllegalStateException("app.shards.enabled requires app.shards.instances");
+        }
+        ShardRing ring = new ShardRing(names, properties.getVirtualNodes());
+        this.shardOfBucket = new int[BUCKETS];
+        List<List<Integer>> buckets = new ArrayList<>();
+        names.forEach(name -> buckets.add(new ArrayList<>()));
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            shardOfBucket[bucket] = ring.shardOf(bucket);
+            buckets.get(shardOfBucket[bucket]).add(bucket);
+        }
+        this.bucketsOfShard = new int[names.size()][];
+        for (int shard = 0; shard < names.size(); shard++) {
+            if (buckets.get(shard).isEmpty()) {
+                throw new IllegalStateException(String.format("Shard %s owns no logical shard, raise app.shards.virtual-nodes", names.get(shard)));
+            }
+            bucketsOfShard[shard] = buckets.get(shard).stream().mapToInt(Integer::intValue).toArray();
+        }
+        this.gatherExecutor = ExecutorServiceMetrics.monitor(meterRegistry,
+                Executors.newFixedThreadPool(properties.getGatherPoolSize(), new CustomizableThreadFactory("shard-gather-")),
+                "shardGather");
+        List<String> spread = new ArrayList<>();
+        for (int shard = 0; shard < names.size(); shard++) {
+            spread.add(names.get(shard) + "=" + bucketsOfShard[shard].length);
+        }
+        log.info("Sharding : {} logical shards over {}", BUCKETS, spread);
+    }
+
+    public boolean isEnabled() {
+        return shardOfBucket != null;
+    }
+
+    /**
+     * 1 when sharding is off.
+     */
+    public int shardCount() {
+        return isEnabled() ? names.size() : 1;
+    }
+
+    public String shardName(int shard) {
+        return names.get(shard);
+    }
+
+    public static int bucketOf(long id) {
+        return (int) Math.floorMod(id, (long) BUCKETS);
+    }
+
+    public static long encode(long localId, int bucket) {
+        return localId * BUCKETS + bucket;
+    }
+
+    /**
+     * Shard of a user or book id, 0 when sharding is off.
+     */
+    public int shardOf(long id) {
+        return isEnabled() ? shardOfBucket[bucketOf(id)] : 0;
+    }
+
+    /**
+     * Shard of a new user: random, weighted by the logical shards every database owns.
+     */
+    public int newUserShard() {
+        return shardOf(ThreadLocalRandom.current().nextInt(BUCKETS));
+    }
+
+    /**
+     * Runs on the shard of the user, a {@code null} id runs in place and fails the validation of the service.
+     */
+    public <T> T onUser(Long userId, Supplier<T> work) {
+        if (!isEnabled() || userId == null) {
+            return work.get();
+        }
+        return on(bucketOf(userId), work);
+    }
+
+    /**
+     * Runs on the shard named by the book id. A running scope is kept: it is the scope of the book owner, which
+     * also covers books created before the sharding, whose ids do not name their shard.
+     */
+    public <T> T onBook(Long bookId, Supplier<T> work) {
+        if (!isEnabled() || bookId == null || ShardRouting.current() != null) {
+            return work.get();
+        }
+        return on(bucketOf(bookId), work);
+    }
+
+    /**
+     * Runs on a random logical shard, where the ids of a new user and its books are generated. A running scope is
+     * kept, the caller already chose the shard.
+     */
+    public <T> T onNewUser(Supplier<T> work) {
+        if (!isEnabled() || ShardRouting.current() != null) {
+            return work.get();
+        }
+        return on(ThreadLocalRandom.current().nextInt(BUCKETS), work);
+    }
+
+    /**
+     * Runs on the database {@code shard}, new ids get a random logical shard of it.
+     */
+    public <T> T onShard(int shard, Supplier<T> work) {
+        if (!isEnabled()) {
+            return work.get();
+        }
+        int[] buckets = bucketsOfShard[shard];
+        return on(buckets[ThreadLocalRandom.current().nextInt(buckets.length)], work);
+    }
+
+    /**
+     * Runs {@link #onShard} on a gather thread, for reads fanned out to every shard.
+     */
+    public <T> Future<T> submit(int shard, Supplier<T> work) {
+        if (!isEnabled()) {
+            throw new IllegalStateException("Sharding is off");
+        }
+        return gatherExecutor.submit(() -> onShard(shard, work));
+    }
+
+    private <T> T on(int bucket, Supplier<T> work) {
+        return ShardRouting.on(new ShardRouting.Scope(bucket, shardOfBucket[bucket]), work);
+    }
+
+    @Override
+    public void destroy() {
+        if (gatherExecutor != null) {
+            gatherExecutor.shutdownNow();
+        }
+    }
+}
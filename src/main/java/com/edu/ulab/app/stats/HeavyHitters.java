@@ -0,0 +1,118 @@
+package com.edu.ulab.app.stats;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Most frequent keys of a stream in a fixed number of counters (space saving). A new key takes over the counter of
+ * the smallest count when all are in use and inherits that count as its possible overcount, so every key counted
+ * more often than the smallest counter is tracked. Removals only lower tracked counts. Every method costs at most
+ * a log of the capacity under the monitor.
+ */
+final class HeavyHitters {
+
+    private static final Comparator<Counter> SMALLEST_FIRST =
+            Comparator.comparingLong((Counter counter) -> counter.count).thenComparing(counter -> counter.key);
+
+    private final int capacity;
+    private final Map<String, Counter> counters = new HashMap<>();
+    private final TreeSet<Counter> byCount = new TreeSet<>(SMALLEST_FIRST);
+
+    HeavyHitters(int capacity) {
+        this.capacity = Math.max(1, capacity);
+    }
+
+    synchronized void add(String key, long delta) {
+        if (key == null || delta == 0) {
+            return;
+        }
+        Counter counter = counters.get(key);
+        if (counter != null) {
+            byCount.remove(counter);
+            counter.count = Math.max(0, counter.count + delta);
+            counter.error = Math.min(counter.error, counter.count);
+            byCount.add(counter);
+            return;
+        }
+        if (delta < 0) {
+            return;
+        }
+        if (counters.size() < capacity) {
+            counter = new Counter(key, delta, 0);
+        } else {
+            Counter smallest = byCount.pollFirst();
+            counters.remove(smallest.key);
+            counter = new Counter(key, smallest.count + delta, smallest.count);
+        }
+        counters.put(key, counter);
+        byCount.add(counter);
+    }
+
+    /**
+     * @return at most {@code limit} keys, the highest count first
+     */
+    synchronized List<Entry> top(int limit) {
+        List<Entry> top = new ArrayList<>(Math.min(limit, counters.size()));
+        Iterator<Counter> iterator = byCount.descendingIterator();
+        while (top.size() < limit && iterator.hasNext()) {
+            Counter counter = iterator.next();
+            if (counter.count > 0) {
+                top.add(new Entry(counter.key, counter.count, counter.error));
+            }
+        }
+        return top;
+    }
+
+    /**
+     * @return the tracked counts by key
+     */
+    synchronized Map<String, Long> counts() {
+        Map<String, Long> counts = new HashMap<>();
+        counters.forEach((key, counter) -> counts.put(key, counter.count));
+        return counts;
+    }
+
+    /**
+     * Moves the counts by {@code deltas}, a key without a counter starts from 0. Keeps the largest counts when there
+     * are more than fit, each with the overcount it had.
+     */
+    synchronized void correct(Map<String, Long> deltas) {
+        Map<String, Counter> corrected = new HashMap<>(counters);
+        deltas.forEach((key, delta) -> corrected.merge(key, new Counter(key, delta, 0),
+                (counter, added) -> new Counter(key, counter.count + delta, counter.error)));
+        counters.clear();
+        byCount.clear();
+        corrected.values().stream()
+                .filter(counter -> counter.count > 0)
+                .sorted(SMALLEST_FIRST.reversed())
+                .limit(capacity)
+                .forEach(counter -> {
+                    Counter kept = new Counter(counter.key, counter.count, Math.min(counter.error, counter.count));
+                    counters.put(kept.key, kept);
+                    byCount.add(kept);
+                });
+    }
+
+    /**
+     * @param error how much of the count may belong to keys counted before in the same counter
+     */
+    record Entry(String key, long count, long error) {
+    }
+
+    private static final class Counter {
+        private final String key;
+        private long count;
+        private long error;
+
+        private Counter(String key, long count, long error) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package com.edu.ulab.app.stats;
+
+import com.edu.ulab.app.config.StatsProperties;
+import com.edu.ulab.app.dto.BookDto;
+import com.edu.ulab.app.dto.UserDto;
+import com.edu.ulab.app.service.WriteListener;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * User and book aggregates, changed by the writes instead of computed by {@code GROUP BY} scans: totals and users
+ * per age group are striped counters, the authors with the most books a {@link HeavyHitters} of
+ * {@code app.stats.author-capacity} counters. A read sums the stripes and takes the top authors, its cost does not
+ * grow with the data.
+ * <p>
+ * The writes of this node are reported by the backends with the rows they read anyway and applied once their
+ * transaction committed, see {@link WriteListener} and {@link #recording(Supplier)}; the
+ * {@link StatsReconciler} fills the aggregates at startup and corrects what concurrent changes of the same rows or
+ * other nodes made them miss. Published as {@code app.stats.users}, {@code app.stats.books} and
+ * {@code app.stats.pages}.
+ */
+@Component
+public class LibraryStats implements WriteListener {
+
+    /**
+     * Decades of age, the last one open ended.
+     */
+    public static final int AGE_GROUPS = 10;
+
+    private final boolean enabled;
+    private final int topAuthors;
+    private final LongAdder users = new LongAdder();
+    private final LongAdder books = new LongAdder();
+    private final LongAdder pages = new LongAdder();
+    private final LongAdder[] usersByAgeGroup = new LongAdder[AGE_GROUPS];
+    private final HeavyHitters authors;
+    /**
+     * Writes running per epoch parity, see {@link #awaitWrites(Duration)}.
+     */
+    private final LongAdder[] writesInFlight = {new LongAdder(), new LongAdder()};
+    private volatile int writeEpoch;
+
+    public LibraryStats(StatsProperties properties, MeterRegistry meterRegistry) {
+        this.enabled = properties.isEnabled();
+        this.topAuthors = properties.getTopAuthors();
+        this.authors = new HeavyHitters(properties.getAuthorCapacity());
+        for (int i = 0; i < AGE_GROUPS; i++) {
+            usersByAgeGroup[i] = new LongAdder();
+        }
+        Gauge.builder("app.stats.users", users, LongAdder::sum).register(meterRegistry);
+        Gauge.builder("app.stats.books", books, LongAdder::sum).register(meterRegistry);
+        Gauge.builder("app.stats.pages", pages, LongAdder::sum).register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Runs a write that changes the aggregates once it succeeded, so the reconciliation can wait for the writes that
+     * were running while it counted.
+     */
+    public <T> T recording(Supplier<T> write) {
+        LongAdder inFlight = enterWrite();
+        try {
+            return write.get();
+        } finally {
+            inFlight.decrement();
+        }
+    }
+
+    /**
+     * A write that raced with a new epoch counts in the new one, so the wait for the old epoch never misses it.
+     */
+    private LongAdder enterWrite() {
+        while (true) {
+            int epoch = writeEpoch;
+            LongAdder inFlight = writesInFlight[epoch & 1];
+            inFlight.increment();
+            if (writeEpoch == epoch) {
+                return inFlight;
+            }
+            inFlight.decrement();
+        }
+    }
+
+    @Override
+    public void userWritten(UserDto before, UserDto after) {
+        if (!enabled) {
+            return;
+        }
+        afterCommit(() -> {
+            if (before == null) {
+                userCreated(after);
+            } else if (after == null) {
+                userDeleted(before);
+            } else {
+                userUpdated(before, after);
+            }
+        });
+    }
+
+    @Override
+    public void bookWritten(BookDto before, BookDto after) {
+        if (!enabled) {
+            return;
+        }
+        afterCommit(() -> {
+            if (before == null) {
+                booksCreated(List.of(after));
+            } else if (after == null) {
+                bookDeleted(before);
+            } else {
+                bookUpdated(before, after);
+            }
+        });
+    }
+
+    /**
+     * A rolled back write, such as a retried attempt, leaves the aggregates alone.
+     */
+    private static void afterCommit(Runnable change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            change.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                change.run();
+            }
+        });
+    }
+
+    public void userCreated(UserDto user) {
+        users.increment();
+        usersByAgeGroup[ageGroup(user.getAge())].increment();
+    }
+
+    public void userWithBooksCreated(UserDto user) {
+        userCreated(user);
+        if (user.getBooks() != null) {
+            booksCreated(user.getBooks());
+        }
+    }
+
+    private void userUpdated(UserDto before, UserDto after) {
+        if (ageGroup(before.getAge()) != ageGroup(after.getAge())) {
+            usersByAgeGroup[ageGroup(before.getAge())].decrement();
+            usersByAgeGroup[ageGroup(after.getAge())].increment();
+        }
+    }
+
+    private void userDeleted(UserDto user) {
+        users.decrement();
+        usersByAgeGroup[ageGroup(user.getAge())].decrement();
+    }
+
+    public void booksCreated(Collection<BookDto> created) {
+        for (BookDto book : created) {
+            if (book != null) {
+                books.increment();
+                pages.add(book.getPageCount());
+                authors.add(book.getAuthor(), 1);
+            }
+        }
+    }
+
+    private void bookUpdated(BookDto before, BookDto after) {
+        pages.add(after.getPageCount() - before.getPageCount());
+        if (!Objects.equals(before.getAuthor(), after.getAuthor())) {
+            authors.add(before.getAuthor(), -1);
+            authors.add(after.getAuthor(), 1);
+        }
+    }
+
+    private void bookDeleted(BookDto book) {
+        books.decrement();
+        pages.add(-book.getPageCount());
+        authors.add(book.getAuthor(), -1);
+    }
+
+    public Snapshot snapshot() {
+        Totals totals = totals();
+        List<AuthorCount> top = authors.top(topAuthors)
+                .stream()
+                .map(entry -> new AuthorCount(entry.key(), entry.count()))
+                .toList();
+        return new Snapshot(totals.users(), totals.books(), totals.pages(), totals.usersByAgeGroup(), top);
+    }
+
+    Totals totals() {
+        long[] ageGroups = new long[AGE_GROUPS];
+        for (int i = 0; i < AGE_GROUPS; i++) {
+            ageGroups[i] = usersByAgeGroup[i].sum();
+        }
+        return new Totals(users.sum(), books.sum(), pages.sum(), ageGroups, authors.counts());
+    }
+
+    /**
+     * Waits until the writes started before the call are applied, the writes started after it are not waited for.
+     * Called by one thread at a time.
+     *
+     * @return whether they finished within {@code timeout}
+     */
+    boolean awaitWrites(Duration timeout) throws InterruptedException {
+        int epoch = writeEpoch;
+        writeEpoch = epoch + 1;
+        LongAdder inFlight = writesInFlight[epoch & 1];
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (inFlight.sum() > 0) {
+            if (System.nanoTime() - deadline > 0) {
+                return false;
+            }
+            Thread.sleep(1);
+        }
+        return true;
+    }
+
+    /**
+     * Moves the aggregates towards the database counts. {@code before} and {@code after} are the aggregates around
+     * the count, the writes in between may or may not be in it: every aggregate moves by the part of the difference
+     * both agree on and stays when they disagree in sign. The rest is corrected by a later run. The books of an
+     * author move the same way, an author missing from a count is taken as counted 0.
+     *
+     * @return the correction applied
+     */
+    Totals correct(Totals before, Totals after, Totals actual) {
+        long[] ageGroups = new long[AGE_GROUPS];
+        for (int i = 0; i < AGE_GROUPS; i++) {
+            ageGroups[i] = agreed(actual.usersByAgeGroup()[i] - before.usersByAgeGroup()[i],
+                    actual.usersByAgeGroup()[i] - after.usersByAgeGroup()[i]);
+            usersByAgeGroup[i].add(ageGroups[i]);
+        }
+        Set<String> authorKeys = new HashSet<>(actual.authors().keySet());
+        authorKeys.addAll(before.authors().keySet());
+        authorKeys.addAll(after.authors().keySet());
+        Map<String, Long> authorBooks = new HashMap<>();
+        for (String author : authorKeys) {
+            long counted = actual.authors().getOrDefault(author, 0L);
+            long delta = agreed(counted - before.authors().getOrDefault(author, 0L),
+                    counted - after.authors().getOrDefault(author, 0L));
+            if (delta != 0) {
+                authorBooks.put(author, delta);
+            }
+        }
+        Totals correction = new Totals(
+                agreed(actual.users() - before.users(), actual.users() - after.users()),
+                agreed(actual.books() - before.books(), actual.books() - after.books()),
+                agreed(actual.pages() - before.pages(), actual.pages() - after.pages()),
+                ageGroups,
+                authorBooks);
+        users.add(correction.users());
+        books.add(correction.books());
+        pages.add(correction.pages());
+        authors.correct(authorBooks);
+        return correction;
+    }
+
+    private static long agreed(long first, long second) {
+        if (first > 0 && second > 0) {
+            return Math.min(first, second);
+        }
+        if (first < 0 && second < 0) {
+            return Math.max(first, second);
+        }
+        return 0;
+    }
+
+    static int ageGroup(int age) {
+        return Math.min(AGE_GROUPS - 1, Math.max(0, age / 10));
+    }
+
+    /**
+     * @param usersByAgeGroup users per decade of age, see {@link #AGE_GROUPS}
+     */
+    public record Snapshot(long users, long books, long pages, long[] usersByAgeGroup, List<AuthorCount> topAuthors) {
+    }
+
+    /**
+     * @param books may be too high by books of authors that lost their counter to this one
+     */
+    public record AuthorCount(String author, long books) {
+    }
+
+    /**
+     * @param authors books by author, the tracked authors only
+     */
+    record Totals(long users, long books, long pages, long[] usersByAgeGroup, Map<String, Long> authors) {
+
+        boolean isZero() {
+            return users == 0 && books == 0 && pages == 0 && Arrays.stream(usersByAgeGroup).allMatch(count -> count == 0)
+                    && authors.values().stream().allMatch(count -> count == 0);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.edu.ulab.app.stats;
+
+import com.edu.ulab.app.config.BackendProperties;
+import com.edu.ulab.app.config.StatsProperties;
+import com.edu.ulab.app.service.backend.Backend;
+import com.edu.ulab.app.shard.Sharding;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts users, books, pages, ages and authors of every shard on the primary and sets the {@link LibraryStats} to
+ * them: once at startup before the web server takes requests, then every {@code app.stats.reconcile-interval}.
+ * <p>
+ * The aggregates are taken before the count and again once the writes running during it are applied, the writes
+ * of this node in between may or may not be in the count. Only the part of the difference that holds either way is
+ * corrected, so a busy node still converges while a run never takes a write twice. Writes of other nodes are not
+ * seen and are corrected by a later run. The memory backend has no database to count, its aggregates start empty
+ * like its data. Runs are counted as {@code app.stats.reconciliations{result}}: {@code in_sync}, {@code corrected}
+ * or {@code failed}.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "app.stats", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class StatsReconciler implements SmartInitializingSingleton, DisposableBean {
+
+    private static final Duration WRITES_TIMEOUT = Duration.ofSeconds(30);
+    private static final String COUNT_USERS_SQL = "SELECT AGE, COUNT(*) AS USERS FROM PERSON GROUP BY AGE";
+    private static final String COUNT_BOOKS_SQL =
+            "SELECT COUNT(*) AS BOOKS, COALESCE(SUM(PAGE_COUNT), 0) AS PAGES FROM BOOK";
+    private static final String COUNT_AUTHORS_SQL = "SELECT AUTHOR, COUNT(*) AS BOOKS FROM BOOK "
+            + "WHERE AUTHOR IS NOT NULL GROUP BY AUTHOR ORDER BY BOOKS DESC LIMIT ?";
+
+    private final LibraryStats libraryStats;
+    private final StatsProperties properties;
+    private final BackendProperties backendProperties;
+    private final JdbcTemplate jdbcTemplate;
+    private final Sharding sharding;
+    private final MeterRegistry meterRegistry;
+    private ScheduledExecutorService executor;
+
+    public StatsReconciler(LibraryStats libraryStats, StatsProperties properties, BackendProperties backendProperties,
+                           JdbcTemplate jdbcTemplate, Sharding sharding, MeterRegistry meterRegistry) {
+        this.libraryStats = libraryStats;
+        this.properties = properties;
+        this.backendProperties = backendProperties;
+        this.jdbcTemplate = jdbcTemplate;
+        this.sharding = sharding;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (backendProperties.getActive() == Backend.MEMORY) {
+            return;
+        }
+        reconcile();
+        long period = properties.getReconcileInterval().toNanos();
+        executor = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("stats-reconcile-"));
+        executor.scheduleWithFixedDelay(this::reconcile, period, period, TimeUnit.NANOSECONDS);
+    }
+
+    void reconcile() {
+        String result;
+        try {
+            result = reconcileQuietly();
+        } catch (RuntimeException e) {
+            log.warn("Stats reconciliation failed : {}", e.getMessage());
+            result = "failed";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result = "failed";
+        }
+        meterRegistry.counter("app.stats.reconciliations", "result", result).increment();
+    }
+
+    private String reconcileQuietly() throws InterruptedException {
+        long start = System.nanoTime();
+        LibraryStats.Totals before = libraryStats.totals();
+        long[] usersByAgeGroup = new long[LibraryStats.AGE_GROUPS];
+        long[] bookTotals = new long[2];
+        Map<String, Long> authorCounts = new HashMap<>();
+        for (int shard = 0; shard < sharding.shardCount(); shard++) {
+            sharding.onShard(shard, () -> {
+                jdbcTemplate.query(COUNT_USERS_SQL, rs -> {
+                    usersByAgeGroup[LibraryStats.ageGroup(rs.getInt("AGE"))] += rs.getLong("USERS");
+                });
+                jdbcTemplate.query(COUNT_BOOKS_SQL, rs -> {
+                    bookTotals[0] += rs.getLong("BOOKS");
+                    bookTotals[1] += rs.getLong("PAGES");
+                });
+                // The top of every shard, an author spread over shards may miss books of the shards it is not top in.
+                jdbcTemplate.query(COUNT_AUTHORS_SQL, rs -> {
+                    authorCounts.merge(rs.getString("AUTHOR"), rs.getLong("BOOKS"), Long::sum);
+                }, properties.getAuthorCapacity());
+                return null;
+            });
+        }
+        long users = 0;
+        for (long ageGroupUsers : usersByAgeGroup) {
+            users += ageGroupUsers;
+        }
+        LibraryStats.Totals actual = new LibraryStats.Totals(users, bookTotals[0], bookTotals[1], usersByAgeGroup, authorCounts);
+
+        if (!libraryStats.awaitWrites(WRITES_TIMEOUT)) {
+            log.warn("Stats reconciliation goes on without writes still running after {}", WRITES_TIMEOUT);
+        }
+        LibraryStats.Totals after = libraryStats.totals();
+        LibraryStats.Totals correction = libraryStats.correct(before, after, actual);
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        if (correction.isZero()) {
+            log.debug("Stats in sync with the database, counted in {} ms", millis);
+            return "in_sync";
+        }
+        log.info("Stats corrected by {} users, {} books, {} pages, {} authors, counted in {} ms", correction.users(),
+                correction.books(), correction.pages(), correction.authors().size(), millis);
+        return "corrected";
+    }
+
+    @Override
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -1,11 +1,448 @@
 package com.edu.ulab.app.storage;
 
-public class Storage {
-    //todo создать хранилище в котором будут содержаться данные
-    // сделать абстракции через которые можно будет производить операции с хранилищем
-    // продумать логику поиска и сохранения
-    // продумать возможные ошибки
-    // учесть, что при сохранеии юзера или книги, должен генерироваться идентификатор
-    // продумать что у узера может быть много книг и нужно создать эту связь
-    // так же учесть, что методы хранилища принимают друго тип данных - учесть это в абстракции
+import com.edu.ulab.app.dto.BookDto;
+import com.edu.ulab.app.dto.UserDto;
+import com.edu.ulab.app.entity.Book;
+import com.edu.ulab.app.entity.Person;
+import com.edu.ulab.app.mapper.BookMapper;
+import com.edu.ulab.app.mapper.UserMapper;
+import com.edu.ulab.app.metrics.Monitored;
+import com.edu.ulab.app.service.BookDiff;
+import com.edu.ulab.app.service.BookService;
+import com.edu.ulab.app.service.UserService;
+import com.edu.ulab.app.service.WriteListener;
+import com.edu.ulab.app.utility.ExceptionUtility;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory backend for {@link UserService} and {@link BookService} without any database round-trip.
+ * <p>
+ * Persons and books are kept in {@link StripedLongMap}s. The books of a user are found through a
+ * userId -> bookIds index whose values are immutable arrays replaced atomically, so
+ * {@link #getBookByUserId(Long)} costs O(books of the user). A book and its index entry change together under the
+ * stripe lock of the book id, so concurrent moves of one book leave it with exactly one owner. Identifiers are
+ * assigned by the storage itself.
+ * Change versions are bumped after the change, a reader that sees a version sees at least its change.
+ * Row versions are checked and bumped under the stripe lock of the row, there is no attempt to retry.
+ */
+@Slf4j
+@Component
+@Monitored(layer = Monitored.SERVICE, backend = Monitored.MEMORY)
+public class Storage implements UserService, BookService {
+
+    private static final long START_SEQUENCE = 1;
+    private static final long[] NO_BOOKS = new long[0];
+
+    private final StripedLongMap<Person> persons = new StripedLongMap<>();
+    private final StripedLongMap<Book> books = new StripedLongMap<>();
+    private final StripedLongMap<long[]> bookIdsByUserId = new StripedLongMap<>();
+    private final StripedLongMap<Long> changeVersions = new StripedLongMap<>();
+    private final AtomicLong userIdSequence = new AtomicLong(START_SEQUENCE);
+    private final AtomicLong bookIdSequence = new AtomicLong(START_SEQUENCE);
+
+    private final UserMapper userMapper;
+    private final BookMapper bookMapper;
+    private final ExceptionUtility exceptionUtility;
+    private final WriteListener writeListener;
+
+    public Storage(UserMapper userMapper, BookMapper bookMapper, ExceptionUtility exceptionUtility,
+                   WriteListener writeListener) {
+        this.userMapper = userMapper;
+        this.bookMapper = bookMapper;
+        this.exceptionUtility = exceptionUtility;
+        this.writeListener = writeListener;
+    }
+
+    @Override
+    public UserDto createUser(UserDto userDto) {
+        exceptionUtility.throwServiceExceptionIfNull(userDto, "Create user failed : userDto is null");
+
+        Person person = userMapper.userDtoToPerson(userDto);
+        person.setId(userIdSequence.getAndIncrement());
+        persons.put(person.getId(), person);
+        UserDto created = userMapper.personToUserDto(person);
+        writeListener.userWritten(null, created);
+
+        log.info("Create user successfully {}", person);
+        return created;
+    }
+
+    @Override
+    public UserDto updateUser(UserDto userDto) {
+        exceptionUtility.throwServiceExceptionIfNull(userDto, "Update user failed : userDto is null");
+        exceptionUtility.throwServiceExceptionIfNull(userDto.getId(), "Update user failed : userDto.getId() returns null");
+
+        Person person = userMapper.userDtoToPerson(userDto);
+        Person[] replaced = new Person[1];
+        persons.compute(person.getId(), current -> {
+            replaced[0] = current;
+            if (current == null) {
+                return null;
+            }
+            exceptionUtility.throwConflictIfStale(userDto.getVersion(), current.getVersion(),
+                    String.format("Update user failed : user with id = %s is at version %s, not %s", userDto.getId(), current.getVersion(), userDto.getVersion()));
+            person.setVersion(current.getVersion() + 1);
+            return person;
+        });
+        Person previous = replaced[0];
+        if (previous == null) {
+            exceptionUtility.throwNotFoundException(String.format("Update user failed : user with id = %s not exist", userDto.getId()));
+        }
+        bumpChangeVersion(person.getId());
+        UserDto updated = userMapper.personToUserDto(person);
+        writeListener.userWritten(userMapper.personToUserDto(previous), updated);
+
+        log.info("Update user successfully {}", person);
+        return updated;
+    }
+
+    @Override
+    public UserDto getUserById(Long id) {
+        exceptionUtility.throwServiceExceptionIfNull(id, "Get user failed : id is null");
+
+        Person person = persons.get(id);
+        exceptionUtility.throwNotFoundExceptionIfNull(person, String.format("Get user failed : user with id = %s not exist", id));
+        log.info("Get user successfully {}", person);
+        return userMapper.personToUserDto(person);
+    }
+
+    @Override
+    public Long getChangeVersion(Long id) {
+        exceptionUtility.throwServiceExceptionIfNull(id, "Get change version failed : id is null");
+
+        Long changeVersion = changeVersions.get(id);
+        if (!persons.containsKey(id)) {
+            return null;
+        }
+        return changeVersion == null ? 0L : changeVersion;
+    }
+
+    @Override
+    public void deleteUserById(Long id) {
+        exceptionUtility.throwServiceExceptionIfNull(id, "Delete user failed : id is null");
+
+        Person removed = persons.remove(id);
+        if (removed == null) {
+            exceptionUtility.throwServiceException(String.format("Delete user with id = %s failed", id));
+        }
+        changeVersions.remove(id);
+        writeListener.userWritten(userMapper.personToUserDto(removed), null);
+        log.info("Delete user with id = {} successfully", id);
+    }
+
+    @Override
+    public BookDto createBook(BookDto bookDto) {
+        exceptionUtility.throwServiceExceptionIfNull(bookDto, "Create book failed : bookDto is null");
+        exceptionUtility.throwServiceExceptionIfNull(bookDto.getUserId(), "Create book failed : bind userId is null");
+
+        if (!persons.containsKey(bookDto.getUserId())) {
+            exceptionUtility.throwNotFoundException(String.format("Create book failed : bind user with id = %s not exist", bookDto.getUserId()));
+        }
+
+        Book book = insertBook(bookDto);
+        bumpChangeVersion(book.getUserId());
+        BookDto created = bookMapper.bookToBookDto(book);
+        writeListener.bookWritten(null, created);
+        log.info("Create book successfully {}", book);
+        return created;
+    }
+
+    @Override
+    public List<BookDto> createBooks(List<BookDto> bookDtoList) {
+        exceptionUtility.throwServiceExceptionIfNull(bookDtoList, "Create books failed : bookDtoList is null");
+        bookDtoList.forEach(bookDto -> exceptionUtility.throwServiceExceptionIfNull(bookDto.getUserId(), "Create books failed : bind userId is null"));
+
+        bookDtoList.stream()
+                .map(BookDto::getUserId)
+                .distinct()
+                .filter(userId -> !persons.containsKey(userId))
+                .findFirst()
+                .ifPresent(userId -> exceptionUtility.throwNotFoundException(String.format("Create books failed : bind user with id = %s not exist", userId)));
+
+        List<BookDto> created = new ArrayList<>(bookDtoList.size());
+        for (BookDto bookDto : bookDtoList) {
+            created.add(bookMapper.bookToBookDto(insertBook(bookDto)));
+        }
+        bookDtoList.stream().map(BookDto::getUserId).distinct().forEach(this::bumpChangeVersion);
+        created.forEach(bookDto -> writeListener.bookWritten(null, bookDto));
+        log.info("Create {} books successfully", created.size());
+        return created;
+    }
+
+    @Override
+    public BookDto updateBook(BookDto bookDto) {
+        exceptionUtility.throwServiceExceptionIfNull(bookDto, "Update book failed : bookDto is null");
+        exceptionUtility.throwServiceExceptionIfNull(bookDto.getId(), "Update book failed : bookDto.getId() returns null");
+
+        Book book = bookMapper.bookDtoToBook(bookDto);
+        Book previous = replaceBook(book, bookDto.getVersion());
+        if (previous == null) {
+            exceptionUtility.throwNotFoundException(String.format("Update book failed : book with id = %s not exist", bookDto.getId()));
+        }
+        if (!Objects.equals(previous.getUserId(), book.getUserId())) {
+            bumpChangeVersion(previous.getUserId());
+        }
+        bumpChangeVersion(book.getUserId());
+        BookDto updated = bookMapper.bookToBookDto(book);
+        writeListener.bookWritten(bookMapper.bookToBookDto(previous), updated);
+
+        log.info("Update book successfully {}", book);
+        return updated;
+    }
+
+    @Override
+    public List<BookDto> updateBooks(Long userId, List<BookDto> bookDtoList) {
+        exceptionUtility.throwServiceExceptionIfNull(userId, "Update books failed : userId is null");
+        exceptionUtility.throwServiceExceptionIfNull(bookDtoList, "Update books failed : bookDtoList is null");
+
+        long[] bookIds = bookIdsByUserId.get(userId);
+        Map<Long, Book> current = new HashMap<>();
+        for (long bookId : bookIds == null ? NO_BOOKS : bookIds) {
+            Book book = books.get(bookId);
+            if (book != null) {
+                current.put(bookId, book);
+            }
+        }
+        BookDiff diff = BookDiff.of(current, bookDtoList);
+        if (!diff.getUnknownIds().isEmpty()) {
+            exceptionUtility.throwNotFoundException(String.format("Update books failed : books with id = %s not exist for user with id = %s", diff.getUnknownIds(), userId));
+        }
+        if (!diff.getStaleIds().isEmpty()) {
+            exceptionUtility.throwConflictException(String.format("Update books failed : books with id = %s changed since they were read", diff.getStaleIds()));
+        }
+
+        for (BookDto bookDto : diff.getChanged()) {
+            bookDto.setUserId(userId);
+            Book book = bookMapper.bookDtoToBook(bookDto);
+            Book previous = replaceBook(book, bookDto.getVersion());
+            bookDto.setVersion(book.getVersion());
+            writeListener.bookWritten(previous == null ? null : bookMapper.bookToBookDto(previous), bookDto);
+        }
+        for (BookDto bookDto : diff.getCreated()) {
+            bookDto.setUserId(userId);
+            Book book = insertBook(bookDto);
+            bookDto.setId(book.getId());
+            bookDto.setVersion(book.getVersion());
+            writeListener.bookWritten(null, bookDto);
+        }
+        if (!diff.getChanged().isEmpty() || !diff.getCreated().isEmpty()) {
+            bumpChangeVersion(userId);
+        }
+
+        log.info("Update books of user {} successfully : {} created, {} changed, {} unchanged",
+                userId, diff.getCreated().size(), diff.getChanged().size(), diff.getUnchanged());
+        return bookDtoList;
+    }
+
+    @Override
+    public BookDto getBookById(Long id) {
+        exceptionUtility.throwServiceExceptionIfNull(id, "Get book failed : id is null");
+
+        Book book = books.get(id);
+        exceptionUtility.throwNotFoundExceptionIfNull(book, String.format("Get book failed : book with id = %s not exist", id));
+        log.info("Get book successfully {}", book);
+        return bookMapper.bookToBookDto(book);
+    }
+
+    @Override
+    public void deleteBookById(Long id) {
+        exceptionUtility.throwServiceExceptionIfNull(id, "Delete book failed : id is null");
+
+        Book[] removed = new Book[1];
+        books.compute(id, current -> {
+            removed[0] = current;
+            if (current != null) {
+                unbindBook(current.getUserId(), id);
+            }
+            return null;
+        });
+        if (removed[0] == null) {
+            exceptionUtility.throwServiceException(String.format("Delete book with id = %s failed", id));
+        }
+        bumpChangeVersion(removed[0].getUserId());
+        writeListener.bookWritten(bookMapper.bookToBookDto(removed[0]), null);
+        log.info("Delete book successfully with id{}", id);
+    }
+
+    @Override
+    public List<BookDto> deleteBooksByUserId(Long userId) {
+        exceptionUtility.throwServiceExceptionIfNull(userId, "Delete books failed : userId is null");
+
+        long[] bookIds = bookIdsByUserId.get(userId);
+        List<BookDto> deleted = new ArrayList<>();
+        for (long bookId : bookIds == null ? NO_BOOKS : bookIds) {
+            // A concurrent move may have taken the book to another user since the index was read.
+            Book[] removed = new Book[1];
+            books.compute(bookId, current -> {
+                if (current == null || !userId.equals(current.getUserId())) {
+                    return current;
+                }
+                removed[0] = current;
+                unbindBook(userId, bookId);
+                return null;
+            });
+            if (removed[0] != null) {
+                BookDto book = bookMapper.bookToBookDto(removed[0]);
+                writeListener.bookWritten(book, null);
+                deleted.add(book);
+            }
+        }
+        log.info("Delete {} books of user with id = {} successfully", deleted.size(), userId);
+        return deleted;
+    }
+
+    @Override
+    public List<BookDto> getBookByUserId(Long userId) {
+        exceptionUtility.throwServiceExceptionIfNull(userId, "Get book by userId failed : userId is null");
+
+        long[] bookIds = bookIdsByUserId.get(userId);
+        if (bookIds == null) {
+            bookIds = NO_BOOKS;
+        }
+        List<BookDto> bookDtoList = new ArrayList<>(bookIds.length);
+        for (long bookId : bookIds) {
+            // A concurrent delete may already have removed the book but not yet its index entry.
+            Book book = books.get(bookId);
+            if (book != null) {
+                bookDtoList.add(bookMapper.bookToBookDto(book));
+            }
+        }
+
+        log.info("Get book by userId = {} successfully", userId);
+        return bookDtoList;
+    }
+
+    @Override
+    public List<BookDto> getBookPageByUserId(Long userId, long afterId, int limit) {
+        exceptionUtility.throwServiceExceptionIfNull(userId, "Get book page by userId failed : userId is null");
+
+        List<BookDto> bookDtoList = new ArrayList<>(limit);
+        for (long bookId : sortedBookIds(userId)) {
+            if (bookDtoList.size() == limit) {
+                break;
+            }
+            Book book = bookId > afterId ? books.get(bookId) : null;
+            if (book != null) {
+                bookDtoList.add(bookMapper.bookToBookDto(book));
+            }
+        }
+
+        log.info("Get book page by userId = {} after id = {} successfully", userId, afterId);
+        return bookDtoList;
+    }
+
+    @Override
+    public void streamBookByUserId(Long userId, Consumer<BookDto> consumer) {
+        exceptionUtility.throwServiceExceptionIfNull(userId, "Stream book by userId failed : userId is null");
+
+        for (long bookId : sortedBookIds(userId)) {
+            Book book = books.get(bookId);
+            if (book != null) {
+                consumer.accept(bookMapper.bookToBookDto(book));
+            }
+        }
+        log.info("Stream book by userId = {} successfully", userId);
+    }
+
+    /**
+     * Index arrays are in insertion order, which is not the id order once a book moved between users.
+     */
+    private long[] sortedBookIds(long userId) {
+        long[] bookIds = bookIdsByUserId.get(userId);
+        if (bookIds == null) {
+            return NO_BOOKS;
+        }
+        long[] sorted = bookIds.clone();
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    private void bumpChangeVersion(Long userId) {
+        if (userId != null) {
+            changeVersions.compute(userId, changeVersion -> changeVersion == null ? 1L : changeVersion + 1);
+        }
+    }
+
+    private Book insertBook(BookDto bookDto) {
+        Book book = bookMapper.bookDtoToBook(bookDto);
+        book.setId(bookIdSequence.getAndIncrement());
+        books.compute(book.getId(), current -> {
+            bindBook(book.getUserId(), book.getId());
+            return book;
+        });
+        return book;
+    }
+
+    /**
+     * Replaces a present book and moves its index entry when the owner changed, both under the book's stripe lock.
+     * The index is another map, its stripe locks are only ever taken inside a book stripe lock.
+     *
+     * @param expectedVersion version the update is based on, {@code null} for any; the book gets the next one
+     * @return the replaced book or {@code null} if the book does not exist
+     */
+    private Book replaceBook(Book book, Long expectedVersion) {
+        Book[] previous = new Book[1];
+        books.compute(book.getId(), current -> {
+            previous[0] = current;
+            if (current == null) {
+                return null;
+            }
+            exceptionUtility.throwConflictIfStale(expectedVersion, current.getVersion(),
+                    String.format("Update book failed : book with id = %s is at version %s, not %s", book.getId(), current.getVersion(), expectedVersion));
+            book.setVersion(current.getVersion() + 1);
+            if (!Objects.equals(current.getUserId(), book.getUserId())) {
+                unbindBook(current.getUserId(), book.getId());
+                bindBook(book.getUserId(), book.getId());
+            }
+            return book;
+        });
+        return previous[0];
+    }
+
+    private void bindBook(Long userId, long bookId) {
+        if (userId == null) {
+            return;
+        }
+        bookIdsByUserId.compute(userId, bookIds -> {
+            if (bookIds == null) {
+                return new long[]{bookId};
+            }
+            long[] extended = Arrays.copyOf(bookIds, bookIds.length + 1);
+            extended[bookIds.length] = bookId;
+            return extended;
+        });
+    }
+
+    private void unbindBook(Long userId, long bookId) {
+        if (userId == null) {
+            return;
+        }
+        bookIdsByUserId.compute(userId, bookIds -> {
+            if (bookIds == null) {
+                return null;
+            }
+            for (int i = 0; i < bookIds.length; i++) {
+                if (bookIds[i] == bookId) {
+                    if (bookIds.length == 1) {
+                        return null;
+                    }
+                    long[] reduced = new long[bookIds.length - 1];
+                    System.arraycopy(bookIds, 0, reduced, 0, i);
+                    System.arraycopy(bookIds, i + 1, reduced, i, bookIds.length - i - 1);
+                    return reduced;
+                }
+            }
+            return bookIds;
+        });
+    }
 }
@@ -0,0 +1,295 @@
+package com.edu.ulab.app.storage;
+
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Concurrent hash map with primitive {@code long} keys.
+ * <p>
+ * Keys are spread over a fixed number of stripes, each one an open addressing table guarded by its own
+ * {@link StampedLock}. Reads are optimistic and only fall back to the read lock when a writer raced them,
+ * writes take the write lock of a single stripe. Null values are not supported.
+ */
+public class StripedLongMap<V> {
+
+    private static final int DEFAULT_CONCURRENCY_LEVEL = 64;
+    private static final int INITIAL_STRIPE_CAPACITY = 16;
+
+    private final Stripe[] stripes;
+    private final int stripeMask;
+
+    public StripedLongMap() {
+        this(DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    public StripedLongMap(int concurrencyLevel) {
+        int size = Integer.highestOneBit(Math.max(1, concurrencyLevel - 1)) << 1;
+        stripes = new Stripe[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new Stripe();
+        }
+        stripeMask = size - 1;
+    }
+
+    public V get(long key) {
+        long hash = hash(key);
+        Stripe stripe = stripeFor(hash);
+        long stamp = stripe.tryOptimisticRead();
+        Object value = stripe.table.find(key, hash);
+        if (!stripe.validate(stamp)) {
+            stamp = stripe.readLock();
+            try {
+                value = stripe.table.find(key, hash);
+            } finally {
+                stripe.unlockRead(stamp);
+            }
+        }
+        return cast(value);
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * @return the previous value or {@code null}
+     */
+    public V put(long key, V value) {
+        long hash = hash(key);
+        Stripe stripe = stripeFor(hash);
+        long stamp = stripe.writeLock();
+        try {
+            return cast(stripe.put(key, hash, value));
+        } finally {
+            stripe.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Replaces the value only if the key is already mapped.
+     *
+     * @return the previous value or {@code null} if nothing was replaced
+     */
+    public V replace(long key, V value) {
+        long hash = hash(key);
+        Stripe stripe = stripeFor(hash);
+        long stamp = stripe.writeLock();
+        try {
+            return stripe.table.find(key, hash) == null ? null : cast(stripe.put(key, hash, value));
+        } finally {
+            stripe.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return the removed value or {@code null}
+     */
+    public V remove(long key) {
+        long hash = hash(key);
+        Stripe stripe = stripeFor(hash);
+        long stamp = stripe.writeLock();
+        try {
+            return cast(stripe.remove(key, hash));
+        } finally {
+            stripe.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Atomically recomputes the value of the key. Returning {@code null} from the function removes the mapping.
+     * The function runs under the stripe write lock and must not touch this map.
+     */
+    public V compute(long key, UnaryOperator<V> remappingFunction) {
+        long hash = hash(key);
+        Stripe stripe = stripeFor(hash);
+        long stamp = stripe.writeLock();
+        try {
+            V current = cast(stripe.table.find(key, hash));
+            V updated = remappingFunction.apply(current);
+            if (updated == null) {
+                if (current != null) {
+                    stripe.remove(key, hash);
+                }
+            } else {
+                stripe.put(key, hash, updated);
+            }
+            return updated;
+        } finally {
+            stripe.unlockWrite(stamp);
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            long stamp = stripe.readLock();
+            try {
+                size += stripe.size;
+            } finally {
+                stripe.unlockRead(stamp);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Weakly consistent iteration: every stripe is visited under its read lock, one stripe at a time.
+     */
+    public void forEachValue(Consumer<? super V> action) {
+        for (Stripe stripe : stripes) {
+            long stamp = stripe.readLock();
+            try {
+                for (Object value : stripe.table.values) {
+                    if (value != null) {
+                        action.accept(cast(value));
+                    }
+                }
+            } finally {
+                stripe.unlockRead(stamp);
+            }
+        }
+    }
+
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            long stamp = stripe.writeLock();
+            try {
+                stripe.table = new Table(INITIAL_STRIPE_CAPACITY);
+                stripe.size = 0;
+            } finally {
+                stripe.unlockWrite(stamp);
+            }
+        }
+    }
+
+    private Stripe stripeFor(long hash) {
+        return stripes[(int) hash & stripeMask];
+    }
+
+    @SuppressWarnings("unchecked")
+    private V cast(Object value) {
+        return (V) value;
+    }
+
+    /**
+     * MurmurHash3 finalizer. The low bits select the stripe, the high bits the slot inside it.
+     */
+    private static long hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    private static int slot(long hash, int mask) {
+        return (int) (hash >>> 32) & mask;
+    }
+
+    @SuppressWarnings("serial")
+    private static final class Stripe extends StampedLock {
+        volatile Table table = new Table(INITIAL_STRIPE_CAPACITY);
+        int size;
+
+        Object put(long key, long hash, Object value) {
+            Table t = table;
+            int mask = t.keys.length - 1;
+            int i = slot(hash, mask);
+            while (t.values[i] != null) {
+                if (t.keys[i] == key) {
+                    Object previous = t.values[i];
+                    t.values[i] = value;
+                    return previous;
+                }
+                i = (i + 1) & mask;
+            }
+            t.keys[i] = key;
+            t.values[i] = value;
+            if (++size > t.keys.length >> 1) {
+                table = t.resize();
+            }
+            return null;
+        }
+
+        Object remove(long key, long hash) {
+            Table t = table;
+            long[] keys = t.keys;
+            Object[] values = t.values;
+            int mask = keys.length - 1;
+            int i = slot(hash, mask);
+            while (values[i] != null && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            Object removed = values[i];
+            if (removed == null) {
+                return null;
+            }
+            values[i] = null;
+            size--;
+
+            // Backward shift deletion keeps probe sequences intact without tombstones.
+            int j = i;
+            while (true) {
+                j = (j + 1) & mask;
+                if (values[j] == null) {
+                    return removed;
+                }
+                int k = slot(hash(keys[j]), mask);
+                boolean movable = i <= j ? (k <= i || k > j) : (k <= i && k > j);
+                if (movable) {
+                    keys[i] = keys[j];
+                    values[i] = values[j];
+                    values[j] = null;
+                    i = j;
+                }
+            }
+        }
+    }
+
+    private static final class Table {
+        final long[] keys;
+        final Object[] values;
+
+        Table(int capacity) {
+            keys = new long[capacity];
+            values = new Object[capacity];
+        }
+
+        /**
+         * Probing is bounded by the table length so an optimistic reader racing a writer always terminates.
+         */
+        Object find(long key, long hash) {
+            int mask = keys.length - 1;
+            int i = slot(hash, mask);
+            for (int probes = 0; probes <= mask; probes++) {
+                Object value = values[i];
+                if (value == null) {
+                    return null;
+                }
+                if (keys[i] == key) {
+                    return value;
+                }
+                i = (i + 1) & mask;
+            }
+            return null;
+        }
+
+        Table resize() {
+            Table resized = new Table(keys.length << 1);
+            int mask = resized.keys.length - 1;
+            for (int i = 0; i < keys.length; i++) {
+                if (values[i] != null) {
+                    int j = slot(hash(keys[i]), mask);
+                    while (resized.values[j] != null) {
+                        j = (j + 1) & mask;
+                    }
+                    resized.keys[j] = keys[i];
+                    resized.values[j] = values[i];
+                }
+            }
+            return resized;
+        }
+    }
+}
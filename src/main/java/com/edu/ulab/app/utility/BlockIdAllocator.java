@@ -0,0 +1,62 @@
+package com.edu.ulab.app.utility;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Hands out ids from blocks reserved in a database sequence that increments by the block size, the pooled-lo
+ * scheme: a sequence value {@code v} reserves {@code [v, v + blockSize)} for this node only.
+ * Ids inside a block are taken with a single atomic increment, only the thread that finds the block exhausted
+ * goes back to the database.
+ */
+public class BlockIdAllocator {
+
+    private final int blockSize;
+    private final ReentrantLock refillLock = new ReentrantLock();
+    private volatile Block block = new Block(0, 0);
+
+    public BlockIdAllocator(int blockSize) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("blockSize must be positive : " + blockSize);
+        }
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * @param nextBlockStart reads the next sequence value, called only when the current block is exhausted
+     */
+    public long next(LongSupplier nextBlockStart) {
+        while (true) {
+            Block current = block;
+            long id = current.next.getAndIncrement();
+            if (id < current.end) {
+                return id;
+            }
+            refill(current, nextBlockStart);
+        }
+    }
+
+    private void refill(Block exhausted, LongSupplier nextBlockStart) {
+        refillLock.lock();
+        try {
+            // Another thread may have refilled while this one waited.
+            if (block == exhausted) {
+                long start = nextBlockStart.getAsLong();
+                block = new Block(start, start + blockSize);
+            }
+        } finally {
+            refillLock.unlock();
+        }
+    }
+
+    private static final class Block {
+        private final AtomicLong next;
+        private final long end;
+
+        private Block(long start, long end) {
+            this.next = new AtomicLong(start);
+            this.end = end;
+        }
+    }
+}
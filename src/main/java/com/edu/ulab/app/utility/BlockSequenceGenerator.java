@@ -0,0 +1,63 @@
+package com.edu.ulab.app.utility;
+
+import org.hibernate.HibernateException;
+import org.hibernate.MappingException;
+import org.hibernate.engine.jdbc.spi.JdbcCoordinator;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.io.Serializable;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Properties;
+
+/**
+ * Hibernate side of {@link IdGenerator}: assigns ids from {@link BlockIdAllocator} blocks of a database sequence,
+ * per shard like {@link ShardedBlockIds}.
+ * Unlike {@code IDENTITY} the id is known before the INSERT, so Hibernate can batch the inserts.
+ */
+public class BlockSequenceGenerator implements IdentifierGenerator {
+
+    public static final String SEQUENCE = "sequence";
+    public static final String BLOCK_SIZE = "block_size";
+
+    private String nextValueSql;
+    private ShardedBlockIds allocator;
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        String sequence = ConfigurationHelper.getString(SEQUENCE, params);
+        if (sequence == null) {
+            throw new MappingException("BlockSequenceGenerator requires the '" + SEQUENCE + "' parameter");
+        }
+        this.nextValueSql = "SELECT NEXT VALUE FOR " + sequence;
+        this.allocator = new ShardedBlockIds(ConfigurationHelper.getInt(BLOCK_SIZE, params, IdGenerator.BLOCK_SIZE));
+    }
+
+    @Override
+    public Serializable generate(SharedSessionContractImplementor session, Object object) throws HibernateException {
+        return allocator.next(() -> nextValue(session));
+    }
+
+    /**
+     * Runs on the connection of the session, the same way Hibernate's own sequence structures do.
+     */
+    private long nextValue(SharedSessionContractImplementor session) {
+        JdbcCoordinator jdbcCoordinator = session.getJdbcCoordinator();
+        PreparedStatement ps = jdbcCoordinator.getStatementPreparer().prepareStatement(nextValueSql);
+        try {
+            ResultSet rs = jdbcCoordinator.getResultSetReturn().extract(ps);
+            rs.next();
+            return rs.getLong(1);
+        } catch (SQLException e) {
+            throw session.getJdbcServices().getSqlExceptionHelper().convert(e, "Could not read next value", nextValueSql);
+        } finally {
+            jdbcCoordinator.getLogicalConnection().getResourceRegistry().release(ps);
+            jdbcCoordinator.afterStatementExecution();
+        }
+    }
+}
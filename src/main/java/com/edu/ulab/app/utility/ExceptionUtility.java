@@ -43,6 +43,20 @@ public class ExceptionUtility {
     }
 
 
+    /**
+     * For a client that based its update on {@code expectedVersion} of a row now at {@code version}. Unlike the
+     * optimistic failures of the attempts, not retried by {@code ConcurrentUpdates}.
+     */
+    public void throwConflictIfStale(Long expectedVersion, long version, String msg) {
+        if (expectedVersion != null && expectedVersion != version) {
+            throwConflictException(msg);
+        }
+    }
+
+    public void throwConflictException(String msg) {
+        throw new ServiceException(msg, HttpStatus.CONFLICT);
+    }
+
     public void throwNotFoundException(String msg) {
         throw new NotFoundException(msg);
     }
@@ -1,23 +1,41 @@
 package com.edu.ulab.app.utility;
 
-import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
 
+/**
+ * Ids for the {@code JdbcTemplate} services, reserved in blocks from the {@code PERSON_SEQ} and {@code BOOK_SEQ}
+ * sequences, so every node hands out its own ranges. The JPA entities draw from the same sequences through
+ * {@link BlockSequenceGenerator}. With sharding the sequences of the shard are used, see {@link ShardedBlockIds}.
+ */
+@Component
 public class IdGenerator {
 
-    private static final long START_SEQUENCE = 100_000;
-    private static AtomicLong USER_ID = new AtomicLong(START_SEQUENCE);
-    private static AtomicLong BOOK_ID = new AtomicLong(START_SEQUENCE);
-    private static AtomicLong USER_BOOK_ID = new AtomicLong(START_SEQUENCE);
+    public static final String PERSON_SEQUENCE = "PERSON_SEQ";
+    public static final String BOOK_SEQUENCE = "BOOK_SEQ";
+    /**
+     * Must match {@code INCREMENT BY} of the sequences in schema.sql.
+     */
+    public static final int BLOCK_SIZE = 50;
 
-    public static Long nextUserId() {
-        return USER_ID.getAndIncrement();
+    private final JdbcTemplate jdbcTemplate;
+    private final ShardedBlockIds userIds = new ShardedBlockIds(BLOCK_SIZE);
+    private final ShardedBlockIds bookIds = new ShardedBlockIds(BLOCK_SIZE);
+
+    public IdGenerator(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public Long nextUserId() {
+        return userIds.next(() -> nextValue(PERSON_SEQUENCE));
     }
 
-    public static Long nextBookId() {
-        return BOOK_ID.getAndIncrement();
+    public Long nextBookId() {
+        return bookIds.next(() -> nextValue(BOOK_SEQUENCE));
     }
 
-    public static Long nextUserBookId() {
-        return USER_BOOK_ID.getAndIncrement();
+    private long nextValue(String sequence) {
+        final String NEXT_VALUE_SQL = "SELECT NEXT VALUE FOR " + sequence;
+        return jdbcTemplate.queryForObject(NEXT_VALUE_SQL, Long.class);
     }
 }
@@ -0,0 +1,36 @@
+package com.edu.ulab.app.utility;
+
+import com.edu.ulab.app.shard.ShardRouting;
+import com.edu.ulab.app.shard.Sharding;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.LongSupplier;
+
+/**
+ * The {@link BlockIdAllocator}s of one sequence. Inside a {@link ShardRouting} scope the sequence is the one of the
+ * shard database, so every shard has its own blocks, and the logical shard of the scope is encoded into the id.
+ */
+public class ShardedBlockIds {
+
+    private final int blockSize;
+    private final BlockIdAllocator unsharded;
+    private final ConcurrentMap<Integer, BlockIdAllocator> byShard = new ConcurrentHashMap<>();
+
+    public ShardedBlockIds(int blockSize) {
+        this.blockSize = blockSize;
+        this.unsharded = new BlockIdAllocator(blockSize);
+    }
+
+    /**
+     * @param nextBlockStart reads the next value of the sequence on the connection of the current scope
+     */
+    public long next(LongSupplier nextBlockStart) {
+        ShardRouting.Scope scope = ShardRouting.current();
+        if (scope == null) {
+            return unsharded.next(nextBlockStart);
+        }
+        long localId = byShard.computeIfAbsent(scope.shard(), shard -> new BlockIdAllocator(blockSize)).next(nextBlockStart);
+        return Sharding.encode(localId, scope.bucket());
+    }
+}
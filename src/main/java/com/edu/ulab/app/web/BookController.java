@@ -0,0 +1,48 @@
+package com.edu.ulab.app.web;
+
+import com.edu.ulab.app.facade.UserDataFacade;
+import com.edu.ulab.app.web.constant.WebConstant;
+import com.edu.ulab.app.web.response.BookSearchResponse;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@Slf4j
+@RestController
+@RequestMapping(value = WebConstant.VERSION_URL + "/book",
+        produces = MediaType.APPLICATION_JSON_VALUE)
+public class BookController {
+    private final UserDataFacade userDataFacade;
+
+    public BookController(UserDataFacade userDataFacade) {
+        this.userDataFacade = userDataFacade;
+    }
+
+    /**
+     * Served from memory, unlike the user endpoints not handed to the facade executor.
+     */
+    @GetMapping(value = "/search")
+    @Operation(summary = "Search books by the words of their title and author.",
+            description = "Every word has to match a word of the title or the author, as a whole, as its start "
+                    + "or, from three characters on, inside it.",
+            responses = {
+                    @ApiResponse(description = "Best matching books first",
+                            content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = BookSearchResponse.class)))})
+    public BookSearchResponse searchBooks(@Parameter(name = "query", description = "Words to search for", example = "default book")
+                                          @RequestParam String query,
+                                          @Parameter(name = "limit", description = "Maximum number of books")
+                                          @RequestParam(required = false) Integer limit) {
+        BookSearchResponse response = userDataFacade.searchBooks(query, limit);
+        log.info("Response with {} books found for '{}'", response.getBooks().size(), query);
+        return response;
+    }
+}
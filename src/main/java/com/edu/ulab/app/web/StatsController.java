@@ -0,0 +1,43 @@
+package com.edu.ulab.app.web;
+
+import com.edu.ulab.app.facade.UserDataFacade;
+import com.edu.ulab.app.web.constant.WebConstant;
+import com.edu.ulab.app.web.response.StatsResponse;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@Slf4j
+@RestController
+@RequestMapping(value = WebConstant.VERSION_URL + "/stats",
+        produces = MediaType.APPLICATION_JSON_VALUE)
+public class StatsController {
+    private final UserDataFacade userDataFacade;
+
+    public StatsController(UserDataFacade userDataFacade) {
+        this.userDataFacade = userDataFacade;
+    }
+
+    /**
+     * Read from counters in memory, answered on the request thread.
+     */
+    @GetMapping
+    @Operation(summary = "Users, books, pages, top authors and users by age.",
+            description = "Kept up to date by the writes and checked against the database in the background, "
+                    + "so a write of another node may show up late.",
+            responses = {
+                    @ApiResponse(description = "Library stats",
+                            content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = StatsResponse.class)))})
+    public StatsResponse getStats() {
+        StatsResponse response = userDataFacade.getLibraryStats();
+        log.info("Response with stats of {} users and {} books", response.getUsers(), response.getBooks());
+        return response;
+    }
+}
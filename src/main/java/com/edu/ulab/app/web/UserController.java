@@ -1,20 +1,37 @@
 package com.edu.ulab.app.web;
 
+import com.edu.ulab.app.config.BackendProperties;
+import com.edu.ulab.app.config.BookQueryProperties;
+import com.edu.ulab.app.export.ExportFormat;
 import com.edu.ulab.app.facade.UserDataFacade;
+import com.edu.ulab.app.service.backend.Backend;
+import com.edu.ulab.app.web.async.AsyncFacadeExecutor;
 import com.edu.ulab.app.web.constant.WebConstant;
 import com.edu.ulab.app.web.request.UserBookRequest;
+import com.edu.ulab.app.web.response.BookPageResponse;
+import com.edu.ulab.app.web.response.BookResponse;
+import com.edu.ulab.app.web.response.ImportResponse;
 import com.edu.ulab.app.web.response.UserBookResponse;
+import com.edu.ulab.app.web.stream.NdJsonWriter;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.constraints.Pattern;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
 
 import static com.edu.ulab.app.web.constant.WebConstant.REQUEST_ID_PATTERN;
 import static com.edu.ulab.app.web.constant.WebConstant.RQID;
@@ -25,9 +42,17 @@ import static com.edu.ulab.app.web.constant.WebConstant.RQID;
         produces = MediaType.APPLICATION_JSON_VALUE)
 public class UserController {
     private final UserDataFacade userDataFacade;
+    private final ObjectMapper objectMapper;
+    private final AsyncFacadeExecutor asyncFacadeExecutor;
+    private final boolean directJson;
 
-    public UserController(UserDataFacade userDataFacade) {
+    public UserController(UserDataFacade userDataFacade, ObjectMapper objectMapper, AsyncFacadeExecutor asyncFacadeExecutor,
+                          BookQueryProperties bookQueryProperties, BackendProperties backendProperties) {
         this.userDataFacade = userDataFacade;
+        this.objectMapper = objectMapper;
+        this.asyncFacadeExecutor = asyncFacadeExecutor;
+        // The direct reads query the database, the memory backend keeps its data elsewhere.
+        this.directJson = bookQueryProperties.isDirectJson() && backendProperties.getActive() != Backend.MEMORY;
     }
 
     @PostMapping(value = "/create")
@@ -36,10 +61,26 @@ public class UserController {
                     @ApiResponse(description = "User id and array book id",
                             content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
                                     schema = @Schema(implementation = UserBookResponse.class)))})
-    public UserBookResponse createUserWithBooks(@RequestBody UserBookRequest request,
-                                                @RequestHeader(RQID) @Pattern(regexp = REQUEST_ID_PATTERN) final String requestId) {
-        UserBookResponse response = userDataFacade.createUserWithBooks(request);
-        log.info("Response with created user and his books: {}", response);
+    public CompletableFuture<UserBookResponse> createUserWithBooks(@RequestBody UserBookRequest request,
+                                                                   @RequestHeader(RQID) @Pattern(regexp = REQUEST_ID_PATTERN) final String requestId) {
+        return asyncFacadeExecutor.supply(() -> {
+            UserBookResponse response = userDataFacade.createUserWithBooks(request);
+            log.info("Response with created user {} and his {} books", response.getUserId(), response.getBooksIdList().size());
+            return response;
+        });
+    }
+
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Bulk import of users and books, one UserBookRequest JSON object per line.",
+            responses = {
+                    @ApiResponse(description = "Per batch created user ids and failures",
+                            content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = ImportResponse.class)))})
+    public ImportResponse importUsersWithBooks(HttpServletRequest request) throws IOException {
+        // The body is read straight from the request stream, @RequestBody would buffer all of it.
+        ImportResponse response = userDataFacade.importUsersWithBooks(request.getInputStream());
+        log.info("Response with import summary: {} records, {} users, {} books, {} failures",
+                response.getRecords(), response.getCreatedUsers(), response.getCreatedBooks(), response.getFailures());
         return response;
     }
 
@@ -49,32 +90,157 @@ public class UserController {
                     @ApiResponse(description = "User id and array book id",
                             content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
                                     schema = @Schema(implementation = UserBookResponse.class)))})
-    public UserBookResponse updateUserWithBooks(@RequestBody UserBookRequest request) {
-        UserBookResponse response = userDataFacade.updateUserWithBooks(request);
-        log.info("Response with updated user and his books: {}", response);
-        return response;
+    public CompletableFuture<UserBookResponse> updateUserWithBooks(@RequestBody UserBookRequest request) {
+        return asyncFacadeExecutor.supply(() -> {
+            UserBookResponse response = userDataFacade.updateUserWithBooks(request);
+            log.info("Response with updated user {} and his {} books", response.getUserId(), response.getBooksIdList().size());
+            return response;
+        });
     }
 
     @GetMapping(value = "/get/{userId}")
     @Operation(summary = "Get user and his books.",
+            description = "Answers 304 without a body when If-None-Match holds the current ETag of the user, "
+                    + "which only reads the user row.",
             responses = {
                     @ApiResponse(description = "User id and array book id",
                             content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
                                     schema = @Schema(implementation = UserBookResponse.class)))})
-    public UserBookResponse getUserWithBooks(@Parameter(name = "userId", description = "Get user by id", example = "100000")
-                                             @PathVariable Long userId) {
-        UserBookResponse response = userDataFacade.getUserWithBooks(userId);
-        log.info("Response with user and his books: {}", response);
-        return response;
+    public CompletableFuture<ResponseEntity<StreamingResponseBody>> getUserWithBooks(@Parameter(name = "userId", description = "Get user by id", example = "100000")
+                                                                                     @PathVariable Long userId,
+                                                                                                         @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return asyncFacadeExecutor.supply(() -> {
+            // An unknown user has no version and falls through to the error of the read.
+            Long changeVersion = ifNoneMatch == null && !directJson ? null : userDataFacade.getUserChangeVersion(userId);
+            if (changeVersion != null && ifNoneMatch != null && matchesETag(ifNoneMatch, eTag(changeVersion))) {
+                log.info("User {} not modified since change version {}", userId, changeVersion);
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag(changeVersion)).build();
+            }
+            if (directJson && changeVersion != null) {
+                // Read after the version, the body is at least as new as the ETag.
+                StreamingResponseBody body = asyncFacadeExecutor.stream(
+                        outputStream -> userDataFacade.writeUserWithBooks(userId, outputStream));
+                log.info("Response with user {} and his books written from the result set", userId);
+                return ResponseEntity.ok()
+                        .eTag(eTag(changeVersion))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(body);
+            }
+            UserBookResponse response = changeVersion == null
+                    ? userDataFacade.getUserWithBooks(userId)
+                    : userDataFacade.getUserWithBooks(userId, changeVersion);
+            log.info("Response with user {} and his {} books", response.getUserId(), response.getBooksIdList().size());
+            ResponseEntity.BodyBuilder ok = ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON);
+            if (response.getChangeVersion() != null) {
+                ok.eTag(eTag(response.getChangeVersion()));
+            }
+            return ok.body(json(response));
+        });
+    }
+
+    @GetMapping(value = "/get/{userId}/books")
+    @Operation(summary = "Get a page of user books ordered by id.",
+            responses = {
+                    @ApiResponse(description = "Books and the afterId of the next page",
+                            content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = BookPageResponse.class)))})
+    public CompletableFuture<ResponseEntity<StreamingResponseBody>> getUserBooksPage(@Parameter(name = "userId", description = "Get books by user id", example = "100000")
+                                                                                     @PathVariable Long userId,
+                                                                                     @Parameter(name = "afterId", description = "Return books with id greater than this one")
+                                                                                     @RequestParam(required = false) Long afterId,
+                                                                                     @Parameter(name = "limit", description = "Page size")
+                                                                                     @RequestParam(required = false) Integer limit) {
+        if (directJson) {
+            StreamingResponseBody body = asyncFacadeExecutor.stream(
+                    outputStream -> userDataFacade.writeUserBooksPage(userId, afterId, limit, outputStream));
+            log.info("Response with page of user {} books written from the result set", userId);
+            return CompletableFuture.completedFuture(ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(body));
+        }
+        return asyncFacadeExecutor.supply(() -> {
+            BookPageResponse response = userDataFacade.getUserBooksPage(userId, afterId, limit);
+            log.info("Response with page of user {} books: {} books, next afterId {}",
+                    userId, response.getBooks().size(), response.getNextAfterId());
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(json(response));
+        });
+    }
+
+    @GetMapping(value = "/get/{userId}/books/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Stream all user books ordered by id, one JSON object per line.",
+            responses = {
+                    @ApiResponse(description = "Books as newline delimited JSON",
+                            content = @Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE,
+                                    schema = @Schema(implementation = BookResponse.class)))})
+    public ResponseEntity<StreamingResponseBody> streamUserBooks(@Parameter(name = "userId", description = "Stream books by user id", example = "100000")
+                                                                 @PathVariable Long userId) {
+        StreamingResponseBody body = outputStream -> {
+            try (NdJsonWriter writer = new NdJsonWriter(objectMapper, outputStream)) {
+                userDataFacade.streamUserBooks(userId, writer::write);
+            }
+        };
+        log.info("Response with stream of user {} books", userId);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.ALL_VALUE)
+    @Operation(summary = "Export all users with their books as NDJSON or CSV, optionally gzipped.")
+    public ResponseEntity<StreamingResponseBody> exportUsersWithBooks(@Parameter(name = "format", description = "NDJSON or CSV")
+                                                                      @RequestParam(defaultValue = "NDJSON") ExportFormat format,
+                                                                      @Parameter(name = "gzip", description = "Compress the file")
+                                                                      @RequestParam(defaultValue = "false") boolean gzip) {
+        StreamingResponseBody body = outputStream -> userDataFacade.exportUsersWithBooks(format, gzip, outputStream);
+        String fileName = "users." + format.getExtension() + (gzip ? ".gz" : "");
+        log.info("Response with export of users and books to {}", fileName);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + fileName)
+                .contentType(MediaType.parseMediaType(gzip ? "application/gzip" : format.getContentType()))
+                .body(body);
     }
 
     @DeleteMapping(value = "/delete/{userId}")
-    @Operation(summary = "Delete user and bindings user books.")
-    @ResponseStatus(value = HttpStatus.OK,
-            reason = "Successfully deleting a user by id")
-    public void deleteUserWithBooks(@Parameter(name = "userId", description = "Delete user by id", example = "100000")
-                                    @PathVariable Long userId) {
+    @Operation(summary = "Delete user and bindings user books.",
+            responses = {@ApiResponse(responseCode = "200", description = "Successfully deleting a user by id")})
+    // A reason would make Spring send the response before the async delete completes.
+    @ResponseStatus(value = HttpStatus.OK)
+    public CompletableFuture<Void> deleteUserWithBooks(@Parameter(name = "userId", description = "Delete user by id", example = "100000")
+                                                       @PathVariable Long userId) {
         log.info("Delete user and his books:  userId {}", userId);
-        userDataFacade.deleteUserWithBooks(userId);
+        return asyncFacadeExecutor.run(() -> userDataFacade.deleteUserWithBooks(userId));
+    }
+
+    /**
+     * Weak: the same books may be written in another order or layout.
+     */
+    private static String eTag(long changeVersion) {
+        return "W/\"" + changeVersion + "\"";
+    }
+
+    /**
+     * Weak comparison against every tag of the header, as If-None-Match asks for.
+     */
+    private static boolean matchesETag(String ifNoneMatch, String eTag) {
+        String opaqueTag = eTag.substring(2);
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.equals("*") || (tag.startsWith("W/") ? tag.substring(2) : tag).equals(opaqueTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The endpoints that may answer straight from the result set return a {@link StreamingResponseBody} either way,
+     * their other responses are written with the same {@link ObjectMapper} Spring would use.
+     */
+    private StreamingResponseBody json(Object value) {
+        return outputStream -> objectMapper.writer()
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .writeValue(outputStream, value);
     }
 }
@@ -0,0 +1,96 @@
+package com.edu.ulab.app.web.async;
+
+import com.edu.ulab.app.config.AsyncConfig;
+import com.edu.ulab.app.config.AsyncProperties;
+import com.edu.ulab.app.jdbc.QueryProfile;
+import com.edu.ulab.app.jdbc.QueryProfiler;
+import com.edu.ulab.app.recorder.RequestRecorder;
+import com.edu.ulab.app.recorder.RequestRecording;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
+
+/**
+ * Moves facade calls off the Tomcat worker thread so a slow database fills the facade pool instead of the
+ * connector pool. The MDC of the calling thread, with the requestId, the request recording and the query profile
+ * are carried over to the facade thread, and from there to the bodies it streams.
+ */
+@Component
+public class AsyncFacadeExecutor {
+
+    private final ExecutorService executor;
+    private final boolean enabled;
+
+    public AsyncFacadeExecutor(@Qualifier(AsyncConfig.FACADE_EXECUTOR) ExecutorService executor,
+                               AsyncProperties properties) {
+        this.executor = executor;
+        this.enabled = properties.isEnabled();
+    }
+
+    /**
+     * @throws java.util.concurrent.RejectedExecutionException when the executor is saturated
+     */
+    public <T> CompletableFuture<T> supply(Supplier<T> task) {
+        if (!enabled) {
+            return CompletableFuture.completedFuture(task.get());
+        }
+        RequestContext context = RequestContext.capture();
+        return CompletableFuture.supplyAsync(() -> {
+            context.attach();
+            try {
+                return task.get();
+            } finally {
+                RequestContext.detach();
+            }
+        }, executor);
+    }
+
+    /**
+     * The body is written later on the MVC task executor, it keeps the context of the thread that built it.
+     */
+    public StreamingResponseBody stream(StreamingResponseBody body) {
+        RequestContext context = RequestContext.capture();
+        return outputStream -> {
+            context.attach();
+            try {
+                body.writeTo(outputStream);
+            } finally {
+                RequestContext.detach();
+            }
+        };
+    }
+
+    public CompletableFuture<Void> run(Runnable task) {
+        return supply(() -> {
+            task.run();
+            return null;
+        });
+    }
+
+    private record RequestContext(Map<String, String> mdc, RequestRecording recording, QueryProfile queries) {
+
+        static RequestContext capture() {
+            return new RequestContext(MDC.getCopyOfContextMap(), RequestRecorder.current(), QueryProfiler.current());
+        }
+
+        void attach() {
+            if (mdc != null) {
+                MDC.setContextMap(mdc);
+            }
+            RequestRecorder.attach(recording);
+            QueryProfiler.attach(queries);
+        }
+
+        static void detach() {
+            MDC.clear();
+            RequestRecorder.attach(null);
+            QueryProfiler.attach(null);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.edu.ulab.app.web.filter;
+
+import com.edu.ulab.app.config.RateLimitProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token buckets per client and quota, without locks.
+ * <p>
+ * A bucket is a single {@code long}, the time at which it is full again, advanced by one emission
+ * interval per request with a compare-and-set (the generic cell rate algorithm, equivalent to a token bucket
+ * refilled continuously). A request is let through while that time is at most {@code burst} intervals ahead, so a
+ * check costs one map lookup, one clock read and one CAS, and a throttled request learns when to come back.
+ * <p>
+ * Clients with a full bucket for {@code app.rate-limit.idle-timeout} are evicted in the background. While a quota
+ * tracks {@code app.rate-limit.max-clients} clients, new ones share one overflow bucket.
+ * Throttled requests are counted as {@code app.ratelimit.throttled{endpoint}}, tracked clients published as
+ * {@code app.ratelimit.clients{endpoint}}.
+ */
+@Slf4j
+@Component
+public class ClientRateLimiter implements DisposableBean {
+
+    public static final String ANONYMOUS = "anonymous";
+    private static final String DEFAULT_ENDPOINT = "default";
+
+    private final List<Limit> endpointLimits = new ArrayList<>();
+    private final Limit defaultLimit;
+    private final int maxClients;
+    private final long idleNanos;
+    private final ScheduledExecutorService sweeper;
+
+    public ClientRateLimiter(RateLimitProperties properties, MeterRegistry meterRegistry) {
+        this.maxClients = properties.getMaxClients();
+        this.idleNanos = properties.getIdleTimeout().toNanos();
+        this.defaultLimit = properties.getDefaultQuota().getPermitsPerSecond() > 0
+                ? new Limit(DEFAULT_ENDPOINT, properties.getDefaultQuota(), meterRegistry)
+                : null;
+        for (RateLimitProperties.Quota quota : properties.getEndpoints()) {
+            if (quota.getPath() == null || quota.getPath().isEmpty()) {
+                throw new IllegalStateException("Rate limit of an endpoint needs a path");
+            }
+            endpointLimits.add(new Limit(quota.getPath(), quota, meterRegistry));
+        }
+        endpointLimits.sort(Comparator.comparingInt((Limit limit) -> limit.path.length()).reversed());
+        if (!properties.isEnabled()) {
+            this.sweeper = null;
+            return;
+        }
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("rate-limit-sweeper-"));
+        long period = Math.max(TimeUnit.SECONDS.toNanos(1), idleNanos / 4);
+        sweeper.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Takes a permit of the client for the quota of the path.
+     *
+     * @return 0 when the request may pass, otherwise the nanoseconds until it would
+     */
+    public long acquire(String clientId, String path) {
+        Limit limit = limitOf(path);
+        if (limit == null) {
+            return 0;
+        }
+        long waitNanos = limit.bucket(clientId).acquire(System.nanoTime(), limit.intervalNanos, limit.toleranceNanos);
+        if (waitNanos > 0) {
+            limit.throttled.increment();
+        }
+        return waitNanos;
+    }
+
+    private Limit limitOf(String path) {
+        for (Limit limit : endpointLimits) {
+            if (path.startsWith(limit.path)) {
+                return limit;
+            }
+        }
+        return defaultLimit;
+    }
+
+    void evictIdle() {
+        long now = System.nanoTime();
+        int evicted = 0;
+        for (Limit limit : allLimits()) {
+            int before = limit.buckets.size();
+            // A request racing the removal may refill an evicted bucket, the client just gets a fresh one.
+            limit.buckets.values().removeIf(bucket -> bucket.get() + idleNanos <= now);
+            evicted += before - limit.buckets.size();
+        }
+        if (evicted > 0) {
+            log.debug("Evicted {} idle rate limit clients", evicted);
+        }
+    }
+
+    private List<Limit> allLimits() {
+        List<Limit> limits = new ArrayList<>(endpointLimits);
+        if (defaultLimit != null) {
+            limits.add(defaultLimit);
+        }
+        return limits;
+    }
+
+    @Override
+    public void destroy() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+    }
+
+    private final class Limit {
+
+        private final String path;
+        private final long intervalNanos;
+        private final long toleranceNanos;
+        private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+        private final Bucket overflow = new Bucket(System.nanoTime());
+        private final Counter throttled;
+
+        private Limit(String endpoint, RateLimitProperties.Quota quota, MeterRegistry meterRegistry) {
+            if (quota.getPermitsPerSecond() <= 0 || quota.getBurst() < 1) {
+                throw new IllegalStateException(String.format("Rate limit of %s needs a positive rate and burst", endpoint));
+            }
+            this.path = endpoint;
+            this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / quota.getPermitsPerSecond()));
+            this.toleranceNanos = intervalNanos * quota.getBurst();
+            this.throttled = Counter.builder("app.ratelimit.throttled")
+                    .tag("endpoint", endpoint)
+                    .register(meterRegistry);
+            Gauge.builder("app.ratelimit.clients", buckets, Map::size)
+                    .tag("endpoint", endpoint)
+                    .register(meterRegistry);
+        }
+
+        private Bucket bucket(String clientId) {
+            Bucket bucket = buckets.get(clientId);
+            if (bucket != null) {
+                return bucket;
+            }
+            if (buckets.size() >= maxClients) {
+                return overflow;
+            }
+            return buckets.computeIfAbsent(clientId, id -> new Bucket(System.nanoTime()));
+        }
+    }
+
+    /**
+     * Holds the time at which the bucket is full again, a time in the past is a full bucket.
+     */
+    private static final class Bucket extends AtomicLong {
+
+        private Bucket(long fullAt) {
+            super(fullAt);
+        }
+
+        private long acquire(long now, long intervalNanos, long toleranceNanos) {
+            while (true) {
+                long fullAt = get();
+                long next = Math.max(fullAt, now) + intervalNanos;
+                long waitNanos = next - now - toleranceNanos;
+                if (waitNanos > 0) {
+                    return waitNanos;
+                }
+                if (compareAndSet(fullAt, next)) {
+                    return 0;
+                }
+            }
+        }
+    }
+}
@@ -1,10 +1,17 @@
 package com.edu.ulab.app.web.filter;
 
+import com.edu.ulab.app.jdbc.QueryProfile;
+import com.edu.ulab.app.jdbc.QueryProfiler;
+import com.edu.ulab.app.recorder.RequestRecorder;
+import com.edu.ulab.app.recorder.RequestRecording;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.MDC;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
 
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
@@ -14,17 +21,93 @@ import java.io.IOException;
 @Slf4j
 @Component
 public class HttpRequestFilter extends OncePerRequestFilter {
+
+    private static final String ACTUATOR_PATH = "/actuator";
+
+    private final RequestRecorder recorder;
+    private final QueryProfiler queryProfiler;
+
+    public HttpRequestFilter(RequestRecorder recorder, QueryProfiler queryProfiler) {
+        this.recorder = recorder;
+        this.queryProfiler = queryProfiler;
+    }
+
     @Override
     protected void doFilterInternal(final HttpServletRequest request,
                                     final HttpServletResponse response,
                                     final FilterChain filterChain) throws ServletException, IOException {
         String requestId = request.getHeader("rqid");
         MDC.put("requestId", requestId);
-        log.info("RequestId : {}", requestId);
+        log.debug("RequestId : {}", requestId);
+        boolean tracked = !request.getServletPath().startsWith(ACTUATOR_PATH);
+        RequestRecording recording = tracked && recorder.isEnabled()
+                ? recorder.start(requestId, request.getMethod(), request.getRequestURI())
+                : null;
+        QueryProfile queries = tracked && queryProfiler.isEnabled() ? queryProfiler.start() : null;
         try {
             filterChain.doFilter(request, response);
         } finally {
             MDC.remove("requestId");
+            if (recording != null || queries != null) {
+                RequestRecorder.attach(null);
+                QueryProfiler.attach(null);
+                finish(request, response, recording, queries);
+            }
         }
     }
+
+    /**
+     * Async requests are finished when the response is complete, not when the Tomcat thread is released. A body
+     * streamed after an async result starts async processing again, which drops the listeners registered so far.
+     */
+    private void finish(HttpServletRequest request, HttpServletResponse response,
+                        RequestRecording recording, QueryProfile queries) {
+        if (!request.isAsyncStarted()) {
+            complete(request, response, recording, queries);
+            return;
+        }
+        request.getAsyncContext().addListener(new AsyncListener() {
+            @Override
+            public void onComplete(AsyncEvent event) {
+                complete(request, response, recording, queries);
+            }
+
+            @Override
+            public void onTimeout(AsyncEvent event) {
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+                event.getAsyncContext().addListener(this);
+            }
+        });
+    }
+
+    private void complete(HttpServletRequest request, HttpServletResponse response,
+                          RequestRecording recording, QueryProfile queries) {
+        if (queries != null) {
+            // The completion may run on another thread, the N+1 warning still carries the requestId.
+            MDC.put("requestId", request.getHeader("rqid"));
+            try {
+                queryProfiler.finish(queries, endpoint(request));
+            } finally {
+                MDC.remove("requestId");
+            }
+        }
+        if (recording != null) {
+            recorder.finish(recording, response.getStatus(), queries);
+        }
+    }
+
+    /**
+     * The matched path pattern keeps the metric tags bounded, {@code /get/{userId}} rather than every user id.
+     */
+    private static String endpoint(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return request.getMethod() + " " + (pattern != null ? pattern : "unmapped");
+    }
 }
@@ -0,0 +1,77 @@
+package com.edu.ulab.app.web.filter;
+
+import com.edu.ulab.app.config.RateLimitProperties;
+import com.edu.ulab.app.web.constant.WebConstant;
+import com.edu.ulab.app.web.response.BaseWebResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Answers 429 with {@code Retry-After} once a client used up its quota for the endpoint, see
+ * {@link ClientRateLimiter}. Runs ahead of {@link HttpRequestFilter}, a throttled request is not recorded.
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final String ACTUATOR_PATH = "/actuator";
+
+    private final RateLimitProperties properties;
+    private final ClientRateLimiter rateLimiter;
+    private final ObjectMapper objectMapper;
+
+    public RateLimitFilter(RateLimitProperties properties, ClientRateLimiter rateLimiter, ObjectMapper objectMapper) {
+        this.properties = properties;
+        this.rateLimiter = rateLimiter;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !properties.isEnabled() || request.getServletPath().startsWith(ACTUATOR_PATH);
+    }
+
+    @Override
+    protected void doFilterInternal(final HttpServletRequest request,
+                                    final HttpServletResponse response,
+                                    final FilterChain filterChain) throws ServletException, IOException {
+        String clientId = clientId(request);
+        long waitNanos = rateLimiter.acquire(clientId, request.getServletPath());
+        if (waitNanos == 0) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        long retryAfterSeconds = Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+        log.debug("Client {} throttled on {}, retry after {}s", clientId, request.getServletPath(), retryAfterSeconds);
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(),
+                new BaseWebResponse(String.format("Too many requests of client %s, retry after %s s", clientId, retryAfterSeconds)));
+    }
+
+    private String clientId(HttpServletRequest request) {
+        if (!properties.getClientHeader().isEmpty()) {
+            String client = request.getHeader(properties.getClientHeader());
+            return client == null || client.isEmpty() ? ClientRateLimiter.ANONYMOUS : client;
+        }
+        String requestId = request.getHeader(WebConstant.RQID);
+        int end = requestId == null ? -1 : requestId.indexOf(properties.getRqidSeparator());
+        return end > 0 ? requestId.substring(0, end) : ClientRateLimiter.ANONYMOUS;
+    }
+}
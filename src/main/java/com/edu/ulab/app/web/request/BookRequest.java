@@ -8,4 +8,9 @@ public class BookRequest {
     private String title;
     private String author;
     private long pageCount;
+    /**
+     * Version of the book the update is based on, as answered by the book reads. A book at another version is not
+     * updated, the request fails with 409. Without it the update applies to any version.
+     */
+    private Long version;
 }
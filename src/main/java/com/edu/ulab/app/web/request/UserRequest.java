@@ -8,4 +8,9 @@ public class UserRequest {
     private String fullName;
     private String title;
     private int age;
+    /**
+     * Version of the user the update is based on, as answered by the last read or write. A user at another version
+     * is not updated, the request fails with 409. Without it the update applies to any version.
+     */
+    private Long version;
 }
@@ -0,0 +1,15 @@
+package com.edu.ulab.app.web.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class AgeGroupResponse {
+    private int fromAge;
+    /**
+     * Exclusive, {@code null} for the oldest group.
+     */
+    private Integer toAge;
+    private long users;
+}
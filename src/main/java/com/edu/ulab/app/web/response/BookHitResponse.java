@@ -0,0 +1,17 @@
+package com.edu.ulab.app.web.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class BookHitResponse {
+    private Long id;
+    private Long userId;
+    private String title;
+    private String author;
+    /**
+     * Relevance of the book for the query, only comparable within one response.
+     */
+    private double score;
+}
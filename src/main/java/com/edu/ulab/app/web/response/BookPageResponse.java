@@ -0,0 +1,17 @@
+package com.edu.ulab.app.web.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class BookPageResponse {
+    private Long userId;
+    private List<BookResponse> books;
+    /**
+     * Value for the next {@code afterId} request parameter, {@code null} on the last page.
+     */
+    private Long nextAfterId;
+}
@@ -0,0 +1,16 @@
+package com.edu.ulab.app.web.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class BookSearchResponse {
+    private String query;
+    /**
+     * Best match first.
+     */
+    private List<BookHitResponse> books;
+}
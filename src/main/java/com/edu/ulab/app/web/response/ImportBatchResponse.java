@@ -0,0 +1,20 @@
+package com.edu.ulab.app.web.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class ImportBatchResponse {
+    private int batch;
+    /**
+     * 1-based number of the first record of the batch in the uploaded stream.
+     */
+    private long firstRecord;
+    private int records;
+    private long[] userIds;
+    private int createdBooks;
+    private List<String> failures;
+}
@@ -0,0 +1,16 @@
+package com.edu.ulab.app.web.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class ImportResponse {
+    private long records;
+    private long createdUsers;
+    private long createdBooks;
+    private long failures;
+    private List<ImportBatchResponse> batches;
+}
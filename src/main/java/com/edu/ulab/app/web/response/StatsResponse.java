@@ -0,0 +1,21 @@
+package com.edu.ulab.app.web.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class StatsResponse {
+    private long users;
+    private long books;
+    private long pages;
+    private double booksPerUser;
+    private double pagesPerUser;
+    /**
+     * Most books first. Counts are approximate beyond the authors tracked, see {@code app.stats.author-capacity}.
+     */
+    private List<AuthorStatsResponse> topAuthors;
+    private List<AgeGroupResponse> usersByAge;
+}
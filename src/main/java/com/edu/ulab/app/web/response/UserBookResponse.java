@@ -1,5 +1,6 @@
 package com.edu.ulab.app.web.response;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Builder;
 import lombok.Data;
 
@@ -9,5 +10,14 @@ import java.util.List;
 @Builder
 public class UserBookResponse {
     private Long userId;
+    /**
+     * Version of the user, sent back with the next update of the user.
+     */
+    private Long version;
     private List<Long> booksIdList;
+    /**
+     * Change version of the user the view was read at, the books are at least that new. Sent as the ETag.
+     */
+    @JsonIgnore
+    private Long changeVersion;
 }
@@ -1,18 +1,31 @@
 DROP TABLE IF EXISTS PERSON;
 CREATE TABLE IF NOT EXISTS PERSON
 (
-    ID BIGINT AUTO_INCREMENT PRIMARY KEY,
+    ID BIGINT PRIMARY KEY,
     FULL_NAME VARCHAR (255),
     TITLE VARCHAR (255),
-    AGE INTEGER
+    AGE INTEGER,
+    VERSION BIGINT DEFAULT 0 NOT NULL,
+    -- Bumped by every write of the user or the user books, unlike VERSION not by Hibernate.
+    CHANGE_VERSION BIGINT DEFAULT 0 NOT NULL
 );
 
 DROP TABLE IF EXISTS BOOK;
 CREATE TABLE IF NOT EXISTS BOOK
 (
-    ID BIGINT AUTO_INCREMENT PRIMARY KEY,
+    ID BIGINT PRIMARY KEY,
     TITLE VARCHAR (255),
     AUTHOR VARCHAR (255),
     PAGE_COUNT INTEGER,
-    USER_ID BIGINT
+    USER_ID BIGINT,
+    VERSION BIGINT DEFAULT 0 NOT NULL
 );
+
+CREATE INDEX IF NOT EXISTS IDX_BOOK_USER_ID ON BOOK (USER_ID, ID);
+
+-- Every value reserves a block of 50 ids for one node, INCREMENT BY must match IdGenerator.BLOCK_SIZE.
+DROP SEQUENCE IF EXISTS PERSON_SEQ;
+CREATE SEQUENCE IF NOT EXISTS PERSON_SEQ START WITH 100000 INCREMENT BY 50;
+
+DROP SEQUENCE IF EXISTS BOOK_SEQ;
+CREATE SEQUENCE IF NOT EXISTS BOOK_SEQ START WITH 100000 INCREMENT BY 50;
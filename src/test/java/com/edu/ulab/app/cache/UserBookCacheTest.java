@@ -0,0 +1,165 @@
+package com.edu.ulab.app.cache;
+
+import com.edu.ulab.app.config.UserBookCacheProperties;
+import com.edu.ulab.app.jdbc.ReplicaRouting;
+import com.edu.ulab.app.web.response.UserBookResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserBookCacheTest {
+
+    private UserBookCache cache;
+    private final AtomicInteger loads = new AtomicInteger();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    void setUp() {
+        UserBookCacheProperties properties = new UserBookCacheProperties();
+        properties.setCoalesce(false);
+        cache = new UserBookCache(properties, meterRegistry);
+    }
+
+    @Test
+    void cachesLoadDespiteWriteOfAnotherUser() {
+        cache.get(1L, loader(1L, List.of(10L), () -> cache.invalidate(2L, List.of(20L))));
+        cache.get(1L, loader(1L, List.of(10L), () -> { }));
+
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void doesNotCacheLoadRacingWriteOfTheUser() {
+        cache.get(1L, loader(1L, List.of(10L), () -> cache.invalidate(1L, List.of())));
+        cache.get(1L, loader(1L, List.of(10L), () -> { }));
+
+        assertThat(loads).hasValue(2);
+    }
+
+    /**
+     * The previous owner is loading while its book moves to another user, it is not cached yet, so only the stamp
+     * of the book keeps the stale list out.
+     */
+    @Test
+    void doesNotCacheLoadRacingMoveOfItsBook() {
+        cache.get(1L, loader(1L, List.of(10L), () -> cache.invalidate(2L, List.of(10L))));
+        cache.get(1L, loader(1L, List.of(), () -> { }));
+
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void moveEvictsCachedPreviousOwner() {
+        cache.get(1L, loader(1L, List.of(10L), () -> { }));
+        cache.invalidate(2L, List.of(10L));
+        cache.get(1L, loader(1L, List.of(), () -> { }));
+
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void doesNotCacheReplicaLoadBehindThePrimary() {
+        ReplicaRouting.onReplica(() -> cache.get(1L, Long.MIN_VALUE, versionedLoader(1L, 4L), () -> 5L));
+        ReplicaRouting.onReplica(() -> cache.get(1L, Long.MIN_VALUE, versionedLoader(1L, 5L), () -> 5L));
+        cache.get(1L, versionedLoader(1L, 5L));
+
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void writeOfAnotherUserKeepsLoadInFlightJoinable() throws Exception {
+        UserBookCache coalescing = coalescingCache();
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<UserBookResponse> leader = CompletableFuture.supplyAsync(
+                () -> coalescing.get(1L, loader(1L, List.of(10L), () -> await(release))));
+        awaitLoads(1);
+
+        coalescing.invalidate(2L, List.of(20L));
+        CompletableFuture<UserBookResponse> joined = CompletableFuture.supplyAsync(
+                () -> coalescing.get(1L, loader(1L, List.of(10L), () -> { })));
+        awaitCalls("coalesced", 1);
+        release.countDown();
+
+        assertThat(joined.get(10, TimeUnit.SECONDS)).isSameAs(leader.get(10, TimeUnit.SECONDS));
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void writeOfTheUserStartsFreshLoad() throws Exception {
+        UserBookCache coalescing = coalescingCache();
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<UserBookResponse> leader = CompletableFuture.supplyAsync(
+                () -> coalescing.get(1L, loader(1L, List.of(10L), () -> await(release))));
+        awaitLoads(1);
+
+        coalescing.invalidate(1L, List.of());
+        coalescing.get(1L, loader(1L, List.of(10L), () -> { }));
+        release.countDown();
+        leader.get(10, TimeUnit.SECONDS);
+
+        assertThat(loads).hasValue(2);
+    }
+
+    private UserBookCache coalescingCache() {
+        return new UserBookCache(new UserBookCacheProperties(), meterRegistry);
+    }
+
+    private void awaitLoads(int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (loads.get() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertThat(loads).hasValue(expected);
+    }
+
+    private void awaitCalls(String result, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (calls(result) < expected && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertThat(calls(result)).isEqualTo(expected);
+    }
+
+    private double calls(String result) {
+        return meterRegistry.get("singleflight.calls").tag("result", result).counter().count();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Supplier<UserBookResponse> versionedLoader(Long userId, long changeVersion) {
+        return () -> {
+            loads.incrementAndGet();
+            return UserBookResponse.builder()
+                    .userId(userId)
+                    .booksIdList(List.of())
+                    .changeVersion(changeVersion)
+                    .build();
+        };
+    }
+
+    private Supplier<UserBookResponse> loader(Long userId, List<Long> bookIds, Runnable whileLoading) {
+        return () -> {
+            loads.incrementAndGet();
+            whileLoading.run();
+            return UserBookResponse.builder()
+                    .userId(userId)
+                    .booksIdList(bookIds)
+                    .build();
+        };
+    }
+}
@@ -0,0 +1,61 @@
+package com.edu.ulab.app.facade;
+
+import com.edu.ulab.app.search.BookSearchIndex;
+import com.edu.ulab.app.web.response.ImportResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.doThrow;
+
+@SpringBootTest(properties = "app.import.batch-size=1")
+class UserDataFacadeImportTest {
+
+    private static final String RECORD = "{\"userRequest\":{\"fullName\":\"Import User\",\"title\":\"reader\",\"age\":30},"
+            + "\"bookRequests\":[{\"title\":\"Imported\",\"author\":\"Author\",\"pageCount\":10}]}\n";
+
+    @Autowired
+    private UserDataFacade userDataFacade;
+
+    @SpyBean
+    private BookSearchIndex bookSearchIndex;
+
+    @Test
+    void failureAfterCommitOfOneBatchDoesNotStopTheImport() {
+        doThrow(new IllegalStateException("index broken"))
+                .doCallRealMethod()
+                .when(bookSearchIndex).putAll(anyCollection());
+
+        ImportResponse response = userDataFacade.importUsersWithBooks(ndjson(RECORD + RECORD + RECORD));
+
+        assertThat(response.getRecords()).isEqualTo(3);
+        assertThat(response.getCreatedUsers()).isEqualTo(3);
+        assertThat(response.getBatches()).hasSize(3);
+        assertThat(response.getFailures()).isZero();
+    }
+
+    @Test
+    void malformedRecordStopsTheImportAfterTheBatchesBeforeIt() {
+        doCallRealMethod().when(bookSearchIndex).putAll(anyCollection());
+
+        ImportResponse response = userDataFacade.importUsersWithBooks(ndjson(RECORD + "{\"userRequest\": [\n" + RECORD));
+
+        assertThat(response.getCreatedUsers()).isEqualTo(1);
+        assertThat(response.getFailures()).isEqualTo(1);
+        assertThat(response.getBatches().get(response.getBatches().size() - 1).getFailures())
+                .singleElement()
+                .asString()
+                .contains("Record 2", "import stopped");
+    }
+
+    private static ByteArrayInputStream ndjson(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
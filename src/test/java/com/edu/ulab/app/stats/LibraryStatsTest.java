@@ -0,0 +1,122 @@
+package com.edu.ulab.app.stats;
+
+import com.edu.ulab.app.config.StatsProperties;
+import com.edu.ulab.app.dto.BookDto;
+import com.edu.ulab.app.dto.UserDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LibraryStatsTest {
+
+    private final LibraryStats libraryStats = new LibraryStats(new StatsProperties(), new SimpleMeterRegistry());
+
+    @Test
+    void correctsByTheDifferenceToTheCount() {
+        LibraryStats.Totals counted = libraryStats.totals();
+
+        LibraryStats.Totals correction = libraryStats.correct(counted, counted, totals(5, 7));
+
+        assertThat(correction.users()).isEqualTo(5);
+        assertThat(libraryStats.totals().users()).isEqualTo(5);
+        assertThat(libraryStats.totals().books()).isEqualTo(7);
+    }
+
+    @Test
+    void correctsOnlyWhatHoldsWhetherTheCountSawTheWritesOrNot() {
+        LibraryStats.Totals before = libraryStats.totals();
+        createUser(30);
+        createUser(40);
+        LibraryStats.Totals after = libraryStats.totals();
+
+        // Two users created while counting, the count saw one of them and 3 users were missing before.
+        LibraryStats.Totals correction = libraryStats.correct(before, after, totals(4, 0));
+
+        assertThat(correction.users()).isEqualTo(2);
+        assertThat(libraryStats.totals().users()).isEqualTo(4);
+    }
+
+    @Test
+    void leavesAggregatesWhenTheWritesMayExplainTheDifference() {
+        LibraryStats.Totals before = libraryStats.totals();
+        createUser(30);
+        LibraryStats.Totals after = libraryStats.totals();
+
+        LibraryStats.Totals correction = libraryStats.correct(before, after, totals(0, 0));
+
+        assertThat(correction.isZero()).isTrue();
+        assertThat(libraryStats.totals().users()).isEqualTo(1);
+    }
+
+    @Test
+    void keepsTheBooksOfAnAuthorWrittenWhileCounting() {
+        createBooks("Known", 2);
+        LibraryStats.Totals before = libraryStats.totals();
+        createBooks("Known", 1);
+        LibraryStats.Totals after = libraryStats.totals();
+
+        // The count saw the 2 books of before and 5 of an author written on another node.
+        libraryStats.correct(before, after, new LibraryStats.Totals(0, 0, 0, new long[LibraryStats.AGE_GROUPS],
+                Map.of("Known", 2L, "Other", 5L)));
+
+        assertThat(libraryStats.snapshot().topAuthors()).containsExactly(
+                new LibraryStats.AuthorCount("Other", 5), new LibraryStats.AuthorCount("Known", 3));
+    }
+
+    @Test
+    void awaitsWritesRunningWhenCalled() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<Void> running = CompletableFuture.runAsync(() -> libraryStats.recording(() -> {
+            started.countDown();
+            await(release);
+            return null;
+        }));
+        started.await(10, TimeUnit.SECONDS);
+
+        assertThat(libraryStats.awaitWrites(Duration.ofMillis(50))).isFalse();
+
+        release.countDown();
+        running.get(10, TimeUnit.SECONDS);
+        assertThat(libraryStats.awaitWrites(Duration.ofSeconds(10))).isTrue();
+    }
+
+    private void createUser(int age) {
+        UserDto user = new UserDto();
+        user.setAge(age);
+        libraryStats.userCreated(user);
+    }
+
+    private void createBooks(String author, int count) {
+        List<BookDto> books = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            BookDto book = new BookDto();
+            book.setAuthor(author);
+            books.add(book);
+        }
+        libraryStats.booksCreated(books);
+    }
+
+    private static LibraryStats.Totals totals(long users, long books) {
+        long[] usersByAgeGroup = new long[LibraryStats.AGE_GROUPS];
+        usersByAgeGroup[3] = users;
+        return new LibraryStats.Totals(users, books, 0, usersByAgeGroup, Map.of());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.edu.ulab.app.storage;
+
+import com.edu.ulab.app.config.StatsProperties;
+import com.edu.ulab.app.dto.BookDto;
+import com.edu.ulab.app.dto.UserDto;
+import com.edu.ulab.app.exception.ServiceException;
+import com.edu.ulab.app.mapper.BookMapperImpl;
+import com.edu.ulab.app.mapper.UserMapperImpl;
+import com.edu.ulab.app.stats.LibraryStats;
+import com.edu.ulab.app.utility.ExceptionUtility;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.edu.ulab.app.storage.StripedLongMapTest.runConcurrently;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StorageTest {
+
+    private Storage storage;
+
+    @BeforeEach
+    void setUp() {
+        storage = new Storage(new UserMapperImpl(), new BookMapperImpl(), new ExceptionUtility(),
+                new LibraryStats(new StatsProperties(), new SimpleMeterRegistry()));
+    }
+
+    /**
+     * Concurrent moves of the same books between users: afterwards every book is listed under exactly the user it
+     * names.
+     */
+    @Test
+    void concurrentMovesLeaveEveryBookWithOneOwner() throws Exception {
+        List<Long> userIds = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            userIds.add(storage.createUser(user("user " + i)).getId());
+        }
+        List<BookDto> created = storage.createBooks(List.of(book(userIds.get(0)), book(userIds.get(0)), book(userIds.get(1))));
+
+        runConcurrently(thread -> {
+            Random random = new Random(thread);
+            for (int i = 0; i < 20_000; i++) {
+                BookDto move = created.get(random.nextInt(created.size()));
+                BookDto book = book(userIds.get(random.nextInt(userIds.size())));
+                book.setId(move.getId());
+                storage.updateBook(book);
+            }
+        });
+
+        int listed = 0;
+        for (Long userId : userIds) {
+            for (BookDto book : storage.getBookByUserId(userId)) {
+                assertThat(book.getUserId()).isEqualTo(userId);
+                listed++;
+            }
+        }
+        assertThat(listed).isEqualTo(created.size());
+    }
+
+    @Test
+    void concurrentDeletesAndMovesLeaveNoStaleIndexEntry() throws Exception {
+        Long first = storage.createUser(user("first")).getId();
+        Long second = storage.createUser(user("second")).getId();
+        List<BookDto> books = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            books.add(book(first));
+        }
+        List<BookDto> created = storage.createBooks(books);
+
+        runConcurrently(thread -> {
+            for (int i = thread; i < created.size(); i += 8) {
+                BookDto book = book(thread % 2 == 0 ? second : first);
+                book.setId(created.get(i).getId());
+                storage.updateBook(book);
+                if (i % 3 == 0) {
+                    storage.deleteBookById(book.getId());
+                }
+            }
+        });
+
+        long expected = created.size() - created.stream().filter(book -> created.indexOf(book) % 3 == 0).count();
+        List<BookDto> listed = new ArrayList<>(storage.getBookByUserId(first));
+        listed.addAll(storage.getBookByUserId(second));
+        assertThat(listed).hasSize((int) expected);
+        assertThat(storage.getBookPageByUserId(first, 0, 1_000).size()
+                + storage.getBookPageByUserId(second, 0, 1_000).size()).isEqualTo(expected);
+    }
+
+    /**
+     * Concurrent updates based on the same read version: one of them applies, the others conflict.
+     */
+    @Test
+    void updatesBasedOnOneVersionApplyOnce() throws Exception {
+        Long userId = storage.createUser(user("reader")).getId();
+        BookDto created = storage.createBook(book(userId));
+        AtomicInteger applied = new AtomicInteger();
+
+        runConcurrently(thread -> {
+            BookDto book = book(userId);
+            book.setId(created.getId());
+            book.setTitle("title " + thread);
+            book.setVersion(created.getVersion());
+            try {
+                storage.updateBook(book);
+                applied.incrementAndGet();
+            } catch (ServiceException e) {
+                assertThat(e.getHttpStatus()).isEqualTo(HttpStatus.CONFLICT);
+            }
+        });
+
+        assertThat(applied).hasValue(1);
+        assertThat(storage.getBookById(created.getId()).getVersion()).isEqualTo(created.getVersion() + 1);
+    }
+
+    private static UserDto user(String fullName) {
+        UserDto user = new UserDto();
+        user.setFullName(fullName);
+        user.setTitle("reader");
+        user.setAge(30);
+        return user;
+    }
+
+    private static BookDto book(Long userId) {
+        BookDto book = new BookDto();
+        book.setUserId(userId);
+        book.setTitle("title");
+        book.setAuthor("author");
+        book.setPageCount(100);
+        return book;
+    }
+}
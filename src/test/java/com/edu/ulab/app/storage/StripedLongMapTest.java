@@ -0,0 +1,176 @@
+package com.edu.ulab.app.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StripedLongMapTest {
+
+    private static final int THREADS = 8;
+
+    @Test
+    void putReplaceRemoveAndCompute() {
+        StripedLongMap<String> map = new StripedLongMap<>();
+
+        assertThat(map.put(1, "a")).isNull();
+        assertThat(map.put(1, "b")).isEqualTo("a");
+        assertThat(map.replace(2, "x")).isNull();
+        assertThat(map.containsKey(2)).isFalse();
+        assertThat(map.replace(1, "c")).isEqualTo("b");
+        assertThat(map.compute(1, value -> value + "d")).isEqualTo("cd");
+        assertThat(map.compute(1, value -> null)).isNull();
+        assertThat(map.containsKey(1)).isFalse();
+        assertThat(map.remove(1)).isNull();
+        assertThat(map.size()).isZero();
+    }
+
+    /**
+     * One stripe and keys removed out of the middle of long probe chains, through several resizes: every key left
+     * has to stay reachable after the backward shifts.
+     */
+    @Test
+    void removalKeepsProbeChainsReachable() {
+        StripedLongMap<Long> map = new StripedLongMap<>(1);
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(7);
+        for (int round = 0; round < 20_000; round++) {
+            long key = random.nextInt(2_000);
+            if (random.nextInt(3) == 0) {
+                assertThat(map.remove(key)).isEqualTo(expected.remove(key));
+            } else {
+                assertThat(map.put(key, (long) round)).isEqualTo(expected.put(key, (long) round));
+            }
+            if (round % 1_000 == 0) {
+                assertContent(map, expected);
+            }
+        }
+        assertContent(map, expected);
+
+        List<Long> keys = new ArrayList<>(expected.keySet());
+        for (Long key : keys) {
+            assertThat(map.remove(key)).isEqualTo(expected.remove(key));
+            assertContent(map, expected);
+        }
+        assertThat(map.size()).isZero();
+    }
+
+    @Test
+    void concurrentWritersOfDisjointKeys() throws Exception {
+        StripedLongMap<Long> map = new StripedLongMap<>(4);
+        int keysPerThread = 5_000;
+        runConcurrently(thread -> {
+            long first = (long) thread * keysPerThread;
+            for (long key = first; key < first + keysPerThread; key++) {
+                map.put(key, key);
+            }
+            // Every other key goes again, the neighbours stay reachable.
+            for (long key = first; key < first + keysPerThread; key += 2) {
+                map.remove(key);
+            }
+        });
+
+        assertThat(map.size()).isEqualTo(THREADS * keysPerThread / 2);
+        for (long key = 0; key < (long) THREADS * keysPerThread; key++) {
+            assertThat(map.get(key)).isEqualTo(key % 2 == 0 ? null : key);
+        }
+    }
+
+    @Test
+    void concurrentComputeLosesNoIncrement() throws Exception {
+        StripedLongMap<Long> map = new StripedLongMap<>(2);
+        int increments = 10_000;
+        runConcurrently(thread -> {
+            for (int i = 0; i < increments; i++) {
+                map.compute(i % 16, value -> value == null ? 1L : value + 1);
+            }
+        });
+
+        long total = 0;
+        for (long key = 0; key < 16; key++) {
+            total += map.get(key);
+        }
+        assertThat(total).isEqualTo((long) THREADS * increments);
+    }
+
+    /**
+     * Optimistic reads racing inserts, removals and resizes of the same stripes must still see the keys nobody
+     * touches.
+     */
+    @Test
+    void readersAlwaysSeeStableKeysWhileOthersChurn() throws Exception {
+        StripedLongMap<Long> map = new StripedLongMap<>(2);
+        for (long key = 0; key < 1_000; key++) {
+            map.put(key, key);
+        }
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger misses = new AtomicInteger();
+        runConcurrently(thread -> {
+            if (thread < THREADS / 2) {
+                Random random = new Random(thread);
+                for (int i = 0; i < 200_000; i++) {
+                    long key = 1_000 + random.nextInt(5_000);
+                    if (random.nextBoolean()) {
+                        map.put(key, key);
+                    } else {
+                        map.remove(key);
+                    }
+                }
+                running.set(false);
+            } else {
+                while (running.get()) {
+                    for (long key = 0; key < 1_000; key++) {
+                        if (!Long.valueOf(key).equals(map.get(key))) {
+                            misses.incrementAndGet();
+                        }
+                    }
+                }
+            }
+        });
+
+        assertThat(misses).hasValue(0);
+    }
+
+    private static void assertContent(StripedLongMap<Long> map, Map<Long, Long> expected) {
+        assertThat(map.size()).isEqualTo(expected.size());
+        expected.forEach((key, value) -> assertThat(map.get(key)).isEqualTo(value));
+    }
+
+    static void runConcurrently(ThreadTask task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < THREADS; thread++) {
+                int index = thread;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    task.run(index);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    interface ThreadTask {
+        void run(int thread) throws Exception;
+    }
+}
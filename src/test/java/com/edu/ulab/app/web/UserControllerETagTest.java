@@ -0,0 +1,129 @@
+package com.edu.ulab.app.web;
+
+import com.edu.ulab.app.jdbc.QueryCapture;
+import com.edu.ulab.app.jdbc.QueryProfile;
+import com.edu.ulab.app.jdbc.QueryProfiler;
+import com.edu.ulab.app.web.constant.WebConstant;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Conditional reads of a user: the ETag holds until the user or one of its books changes, and a 304 only reads the
+ * user row.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class UserControllerETagTest {
+
+    private static final String USER_URL = WebConstant.VERSION_URL + "/user";
+    private static final Pattern BOOK_TABLE = Pattern.compile("(?i)\\bbook\\b");
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private QueryProfiler queryProfiler;
+
+    @Test
+    void notModifiedReadsNoBook() {
+        long userId = create().get("userId").asLong();
+        String eTag = get(userId, null).getHeaders().getETag();
+
+        AtomicReference<ResponseEntity<JsonNode>> response = new AtomicReference<>();
+        QueryProfile profile = profile(() -> response.set(get(userId, eTag)));
+
+        assertThat(response.get().getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(response.get().getHeaders().getETag()).isEqualTo(eTag);
+        profile.assertAtMost(1);
+        assertThat(profile.shapes()).noneMatch(shape -> BOOK_TABLE.matcher(shape.getSql()).find());
+    }
+
+    @Test
+    void userUpdateChangesTheETag() {
+        long userId = create().get("userId").asLong();
+        String eTag = get(userId, null).getHeaders().getETag();
+        assertThat(get(userId, eTag).getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+
+        exchange(HttpMethod.PUT, "/update", """
+                {"userRequest":{"id":%s,"fullName":"Renamed User","title":"reader","age":30},"bookRequests":[]}"""
+                .formatted(userId));
+
+        ResponseEntity<JsonNode> changed = get(userId, eTag);
+        assertThat(changed.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(changed.getHeaders().getETag()).isNotEqualTo(eTag);
+        assertThat(get(userId, changed.getHeaders().getETag()).getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+    }
+
+    @Test
+    void bookUpdateChangesTheETag() {
+        JsonNode created = create();
+        long userId = created.get("userId").asLong();
+        long bookId = created.get("booksIdList").get(0).asLong();
+        String eTag = get(userId, null).getHeaders().getETag();
+        assertThat(get(userId, eTag).getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+
+        exchange(HttpMethod.PUT, "/update", """
+                {"userRequest":{"id":%s,"fullName":"ETag User","title":"reader","age":30},
+                 "bookRequests":[{"id":%s,"title":"Retitled","author":"Author","pageCount":100}]}"""
+                .formatted(userId, bookId));
+
+        ResponseEntity<JsonNode> changed = get(userId, eTag);
+        assertThat(changed.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(changed.getHeaders().getETag()).isNotEqualTo(eTag);
+        assertThat(changed.getBody().get("booksIdList").get(0).asLong()).isEqualTo(bookId);
+        assertThat(get(userId, changed.getHeaders().getETag()).getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+    }
+
+    /**
+     * The profile of an async request is finished when its response completes, which may be just after the client
+     * got the response.
+     */
+    private QueryProfile profile(Runnable request) {
+        try (QueryCapture capture = queryProfiler.capture()) {
+            request.run();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (capture.profiles().isEmpty() && System.nanoTime() < deadline) {
+                Thread.onSpinWait();
+            }
+            return capture.last();
+        }
+    }
+
+    private JsonNode create() {
+        return exchange(HttpMethod.POST, "/create", """
+                {"userRequest":{"fullName":"ETag User","title":"reader","age":30},
+                 "bookRequests":[{"title":"Book","author":"Author","pageCount":100}]}""").getBody();
+    }
+
+    private ResponseEntity<JsonNode> get(long userId, String ifNoneMatch) {
+        HttpHeaders headers = new HttpHeaders();
+        if (ifNoneMatch != null) {
+            headers.setIfNoneMatch(ifNoneMatch);
+        }
+        return restTemplate.exchange(USER_URL + "/get/" + userId, HttpMethod.GET, new HttpEntity<>(headers), JsonNode.class);
+    }
+
+    private ResponseEntity<JsonNode> exchange(HttpMethod method, String path, String body) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set("rqid", "etag-1");
+        ResponseEntity<JsonNode> response = restTemplate.exchange(USER_URL + path, method,
+                new HttpEntity<>(body, headers), JsonNode.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        return response;
+    }
+}
@@ -0,0 +1,144 @@
+package com.edu.ulab.app.web;
+
+import com.edu.ulab.app.jdbc.QueryCapture;
+import com.edu.ulab.app.jdbc.QueryProfile;
+import com.edu.ulab.app.jdbc.QueryProfiler;
+import com.edu.ulab.app.web.constant.WebConstant;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Pins the JDBC statements of the user endpoints, as profiled by {@link QueryProfiler}. Every request runs for a
+ * user with one book and for a user with ten, a statement repeated per book shows up as the difference.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class UserControllerStatementsTest {
+
+    private static final String USER_URL = WebConstant.VERSION_URL + "/user";
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private QueryProfiler queryProfiler;
+
+    @Test
+    void createDoesNotRepeatStatementsPerBook() {
+        QueryProfile one = profile(() -> create(1));
+        QueryProfile ten = profile(() -> create(10));
+
+        one.assertAtMost(4);
+        ten.assertAtMost(one.statements());
+    }
+
+    @Test
+    void getDoesNotRepeatStatementsPerBook() {
+        JsonNode one = create(1);
+        JsonNode ten = create(10);
+
+        QueryProfile oneProfile = profile(() -> get(one.get("userId").asLong()));
+        QueryProfile tenProfile = profile(() -> get(ten.get("userId").asLong()));
+
+        oneProfile.assertAtMost(3);
+        tenProfile.assertAtMost(oneProfile.statements());
+    }
+
+    @Test
+    void updateDoesNotRepeatStatementsPerBook() {
+        JsonNode one = create(1);
+        JsonNode ten = create(10);
+
+        QueryProfile oneProfile = profile(() -> update(one));
+        QueryProfile tenProfile = profile(() -> update(ten));
+
+        oneProfile.assertAtMost(6);
+        tenProfile.assertAtMost(oneProfile.statements());
+    }
+
+    @Test
+    void deleteDoesNotRepeatStatementsPerBook() {
+        JsonNode one = create(1);
+        JsonNode ten = create(10);
+
+        QueryProfile oneProfile = profile(() -> delete(one.get("userId").asLong()));
+        QueryProfile tenProfile = profile(() -> delete(ten.get("userId").asLong()));
+
+        oneProfile.assertAtMost(4);
+        tenProfile.assertAtMost(oneProfile.statements());
+    }
+
+    /**
+     * The profile of an async request is finished when its response completes, which may be just after the client
+     * got the response.
+     */
+    private QueryProfile profile(Runnable request) {
+        try (QueryCapture capture = queryProfiler.capture()) {
+            request.run();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (capture.profiles().isEmpty() && System.nanoTime() < deadline) {
+                Thread.onSpinWait();
+            }
+            return capture.last();
+        }
+    }
+
+    private JsonNode create(int books) {
+        String body = """
+                {"userRequest":{"fullName":"Statements User","title":"reader","age":30},"bookRequests":[%s]}"""
+                .formatted(books(books, i -> "{\"title\":\"Book %s\",\"author\":\"Author\",\"pageCount\":100}".formatted(i)));
+        return exchange(HttpMethod.POST, "/create", body);
+    }
+
+    private JsonNode get(long userId) {
+        return exchange(HttpMethod.GET, "/get/" + userId, null);
+    }
+
+    /**
+     * Renames the user and changes every book.
+     */
+    private JsonNode update(JsonNode created) {
+        List<Long> bookIds = new ArrayList<>();
+        created.get("booksIdList").forEach(bookId -> bookIds.add(bookId.asLong()));
+        String body = """
+                {"userRequest":{"id":%s,"fullName":"Renamed User","title":"reader","age":31},"bookRequests":[%s]}"""
+                .formatted(created.get("userId").asLong(), books(bookIds.size(),
+                        i -> "{\"id\":%s,\"title\":\"Changed %s\",\"author\":\"Author\",\"pageCount\":200}".formatted(bookIds.get(i), i)));
+        return exchange(HttpMethod.PUT, "/update", body);
+    }
+
+    private void delete(long userId) {
+        exchange(HttpMethod.DELETE, "/delete/" + userId, null);
+    }
+
+    private static String books(int count, IntFunction<String> book) {
+        return IntStream.range(0, count).mapToObj(book).collect(Collectors.joining(","));
+    }
+
+    private JsonNode exchange(HttpMethod method, String path, String body) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set("rqid", "statements-1");
+        ResponseEntity<JsonNode> response = restTemplate.exchange(USER_URL + path, method,
+                new HttpEntity<>(body, headers), JsonNode.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        return response.getBody();
+    }
+}
@@ -0,0 +1,87 @@
+package com.edu.ulab.app.web;
+
+import com.edu.ulab.app.web.constant.WebConstant;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Updates based on the version of a read: the first one applies, one based on the same read afterwards is
+ * answered with 409 and changes nothing.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class UserControllerVersionTest {
+
+    private static final String USER_URL = WebConstant.VERSION_URL + "/user";
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Test
+    void userUpdateBasedOnAnOldVersionConflicts() {
+        JsonNode created = exchange(HttpMethod.POST, "/create", """
+                {"userRequest":{"fullName":"Version User","title":"reader","age":30},"bookRequests":[]}""").getBody();
+        long userId = created.get("userId").asLong();
+        long version = created.get("version").asLong();
+
+        ResponseEntity<JsonNode> first = exchange(HttpMethod.PUT, "/update", userUpdate(userId, "First Writer", version));
+        ResponseEntity<JsonNode> second = exchange(HttpMethod.PUT, "/update", userUpdate(userId, "Second Writer", version));
+
+        assertThat(first.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(first.getBody().get("version").asLong()).isEqualTo(version + 1);
+        assertThat(second.getStatusCode()).isEqualTo(HttpStatus.CONFLICT);
+        assertThat(exchange(HttpMethod.GET, "/get/" + userId, null).getBody().get("version").asLong())
+                .isEqualTo(version + 1);
+    }
+
+    @Test
+    void bookUpdateBasedOnAnOldVersionConflicts() {
+        JsonNode created = exchange(HttpMethod.POST, "/create", """
+                {"userRequest":{"fullName":"Version User","title":"reader","age":30},
+                 "bookRequests":[{"title":"Book","author":"Author","pageCount":100}]}""").getBody();
+        long userId = created.get("userId").asLong();
+        JsonNode book = exchange(HttpMethod.GET, "/get/" + userId + "/books", null).getBody().get("books").get(0);
+
+        ResponseEntity<JsonNode> first = exchange(HttpMethod.PUT, "/update", bookUpdate(userId, book, "First Title"));
+        ResponseEntity<JsonNode> second = exchange(HttpMethod.PUT, "/update", bookUpdate(userId, book, "Second Title"));
+
+        assertThat(first.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(second.getStatusCode()).isEqualTo(HttpStatus.CONFLICT);
+        JsonNode stored = exchange(HttpMethod.GET, "/get/" + userId + "/books", null).getBody().get("books").get(0);
+        assertThat(stored.get("title").asText()).isEqualTo("First Title");
+        assertThat(stored.get("version").asLong()).isEqualTo(book.get("version").asLong() + 1);
+    }
+
+    private static String userUpdate(long userId, String fullName, long version) {
+        return """
+                {"userRequest":{"id":%s,"fullName":"%s","title":"reader","age":30,"version":%s},"bookRequests":[]}"""
+                .formatted(userId, fullName, version);
+    }
+
+    /**
+     * Leaves the user as it is, without a version, and retitles the book based on the version it was read at.
+     */
+    private static String bookUpdate(long userId, JsonNode book, String title) {
+        return """
+                {"userRequest":{"id":%s,"fullName":"Version User","title":"reader","age":30},
+                 "bookRequests":[{"id":%s,"title":"%s","author":"Author","pageCount":100,"version":%s}]}"""
+                .formatted(userId, book.get("id").asLong(), title, book.get("version").asLong());
+    }
+
+    private ResponseEntity<JsonNode> exchange(HttpMethod method, String path, String body) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set("rqid", "version-1");
+        return restTemplate.exchange(USER_URL + path, method, new HttpEntity<>(body, headers), JsonNode.class);
+    }
+}